@@ -16,11 +16,16 @@
 
 package com.jfilegoodies;
 
+import com.jfilegoodies.cache.FileAttributeCache;
 import com.jfilegoodies.util.OsUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -36,6 +41,8 @@ import static com.jfilegoodies.util.StringLiterals.*;
  */
 public final class FileGoodies {
 
+    private static final Pattern DEPRECATED_FILE_NAME = Pattern.compile(".*_old\\d{1,5}\\.[^.]*");
+
     private FileGoodies() {
     }
 
@@ -128,9 +135,73 @@ public final class FileGoodies {
      * @since 1.0
      */
     public static boolean isOSExecutable(FormattedFile file) {
-        if (file == null || file.isDirectory() || file.hasNoExtension())
+        return isOSExecutable(file, null);
+    }
+
+    /**
+     * Calls the {@link #isOSExecutable(FormattedFile, FileAttributeCache)} with the given {@link File}
+     * wrapped into a {@link FormattedFile}.
+     *
+     * @see #isOSExecutable(FormattedFile, FileAttributeCache)
+     * @since 1.3
+     */
+    public static boolean isOSExecutable(File file, FileAttributeCache cache) {
+        return isOSExecutable(file == null ? null : file instanceof FormattedFile ? (FormattedFile) file : new FormattedFile(file), cache);
+    }
+
+    /**
+     * Checks that the file is an executable file on the current OS, like {@link #isOSExecutable(FormattedFile)},
+     * but the directory check is answered by the given {@link FileAttributeCache}.
+     *
+     * @param file  the {@link FormattedFile} object that separates the extension from it's name
+     * @param cache the cache of the file attributes; may be null (then the file system is queried directly)
+     * @return {@code true} if the file is an executable file; {@code false} otherwise
+     * @see #isOSExecutable(FormattedFile)
+     * @since 1.3
+     */
+    public static boolean isOSExecutable(FormattedFile file, FileAttributeCache cache) {
+        if (file == null || file.hasNoExtension() || isDirectory(file, cache))
             return false;
 
+        return isOSExecutableExtension(file.getExtension());
+    }
+
+    /**
+     * Checks that the file is an executable file on the current OS, like {@link #isOSExecutable(File)},
+     * but the path may belong to any {@link FileSystem} (for example to an in-memory one).
+     *
+     * @param path the path of the file; may be null
+     * @return {@code true} if the file is an executable file; {@code false} otherwise
+     * @see #isOSExecutable(File)
+     * @since 1.3
+     */
+    public static boolean isOSExecutablePath(Path path) {
+        return isOSExecutablePath(path, null);
+    }
+
+    /**
+     * Checks that the file is an executable file on the current OS, like {@link #isOSExecutablePath(Path)},
+     * but the directory check is answered by the given {@link FileAttributeCache}.
+     *
+     * @param path  the path of the file; may be null
+     * @param cache the cache of the file attributes; may be null (then the file system is queried directly)
+     * @return {@code true} if the file is an executable file; {@code false} otherwise
+     * @see #isOSExecutable(FormattedFile, FileAttributeCache)
+     * @since 1.3
+     */
+    public static boolean isOSExecutablePath(Path path, FileAttributeCache cache) {
+        Path fileName = path == null ? null : path.getFileName();
+        if (fileName == null)
+            return false;
+
+        FormattedFile formattedFile = new FormattedFile(fileName.toString());
+        if (formattedFile.hasNoExtension() || isDirectory(path, cache))
+            return false;
+
+        return isOSExecutableExtension(formattedFile.getExtension());
+    }
+
+    private static boolean isOSExecutableExtension(String extension) {
         //creating the regex that will match the file's extension if that's an executable type
         String regex;
         if (OsUtils.isWindows()) {
@@ -144,7 +215,7 @@ public final class FileGoodies {
         }
 
         Pattern compiledRegex = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-        return compiledRegex.matcher(file.getExtension()).matches();
+        return compiledRegex.matcher(extension).matches();
     }
 
     /**
@@ -181,6 +252,24 @@ public final class FileGoodies {
         }
     }
 
+    /**
+     * Checks that the given string is a valid path on the given {@link FileSystem}.
+     *
+     * @param fileSystem the file system; mustn't be null
+     * @param path       the path that we want to check; may be null
+     * @return {@code true} if the path is valid; {@code false} otherwise.
+     * @see #hasValidPath(File)
+     * @since 1.3
+     */
+    public static boolean hasValidPath(FileSystem fileSystem, String path) {
+        try {
+            fileSystem.getPath(path); //ignored result
+            return true;
+        } catch (InvalidPathException | NullPointerException e) {
+            return false;
+        }
+    }
+
     /**
      * Returns the negated value of {@link #hasValidPath(File)}.
      *
@@ -307,7 +396,24 @@ public final class FileGoodies {
      * @since 1.0
      */
     public static File deprecateFile(File file) {
-        if (file == null || file.isDirectory())
+        return deprecateFile(file, null);
+    }
+
+    /**
+     * Creates a deprecated version of the file like {@link #deprecateFile(File)}, but the
+     * file system checks are answered by the given {@link FileAttributeCache}.
+     *
+     * <p>
+     * <i>Note: the cache may not know about files created by others in the last
+     * TTL period; invalidate the cache entries of the files you create.</i>
+     *
+     * @param file  the file that we want to rename
+     * @param cache the cache of the file attributes; may be null (then the file system is queried directly)
+     * @see #deprecateFile(File)
+     * @since 1.3
+     */
+    public static File deprecateFile(File file, FileAttributeCache cache) {
+        if (file == null || isDirectory(file, cache))
             return null;
 
         File directoryOfFile = file.getParentFile();
@@ -319,11 +425,96 @@ public final class FileGoodies {
         do {
             int random = (int) (Math.random() * Math.pow(10, 5));
             generated = new File(directoryOfFile, String.format("%s_%s%d.%s", simpleName, "old", random, extension));
-        } while (generated.exists());
+        } while (exists(generated, cache));
 
         return generated;
     }
 
+    /**
+     * Creates a deprecated version of the file like {@link #deprecateFile(File)}, but the path
+     * may belong to any {@link FileSystem} (for example to an in-memory one).
+     *
+     * @param path the path of the file that we want to rename
+     * @return the path of the deprecated file that doesn't exist;
+     * {@code null} if the path is null, it has no file name or it's a directory
+     * @see #deprecateFile(File)
+     * @since 1.3
+     */
+    public static Path deprecatePath(Path path) {
+        return deprecatePath(path, null);
+    }
+
+    /**
+     * Creates a deprecated version of the file like {@link #deprecatePath(Path)}, but the
+     * file system checks are answered by the given {@link FileAttributeCache}.
+     *
+     * @param path  the path of the file that we want to rename
+     * @param cache the cache of the file attributes; may be null (then the file system is queried directly)
+     * @see #deprecateFile(File, FileAttributeCache)
+     * @since 1.3
+     */
+    public static Path deprecatePath(Path path, FileAttributeCache cache) {
+        Path fileName = path == null ? null : path.getFileName();
+        if (fileName == null || isDirectory(path, cache))
+            return null;
+
+        FormattedFile formattedFile = new FormattedFile(fileName.toString());
+        String simpleName = formattedFile.getSimpleName();
+        String extension = formattedFile.getExtension();
+
+        Path generated;
+        do {
+            int random = (int) (Math.random() * Math.pow(10, 5));
+            generated = path.resolveSibling(String.format("%s_%s%d.%s", simpleName, "old", random, extension));
+        } while (exists(generated, cache));
+
+        return generated;
+    }
+
+    /**
+     * Checks that the name of the file has the form produced by {@link #deprecateFile(File)}.
+     * <pre>
+     *     isDeprecatedFile(File("file_old3102.txt")) = true
+     *     isDeprecatedFile(File("file.txt")) = false
+     * </pre>
+     *
+     * @param file the file to check
+     * @return {@code true} if the file is a deprecated version of another file; {@code false} otherwise
+     * @since 1.3
+     */
+    public static boolean isDeprecatedFile(File file) {
+        return file != null && DEPRECATED_FILE_NAME.matcher(file.getName()).matches();
+    }
+
+    /**
+     * Checks that the file name of the path has the form produced by {@link #deprecatePath(Path)}.
+     *
+     * @param path the path to check
+     * @return {@code true} if the file is a deprecated version of another file; {@code false} otherwise
+     * @see #isDeprecatedFile(File)
+     * @since 1.3
+     */
+    public static boolean isDeprecatedPath(Path path) {
+        Path fileName = path == null ? null : path.getFileName();
+        return fileName != null && DEPRECATED_FILE_NAME.matcher(fileName.toString()).matches();
+    }
+
+    private static boolean exists(Path path, FileAttributeCache cache) {
+        return cache == null ? Files.exists(path) : cache.getAttributes(path).isPresent();
+    }
+
+    private static boolean isDirectory(Path path, FileAttributeCache cache) {
+        return cache == null ? Files.isDirectory(path) : cache.getAttributes(path).map(BasicFileAttributes::isDirectory).orElse(false);
+    }
+
+    private static boolean exists(File file, FileAttributeCache cache) {
+        return cache == null ? file.exists() : cache.exists(file);
+    }
+
+    private static boolean isDirectory(File file, FileAttributeCache cache) {
+        return cache == null ? file.isDirectory() : cache.isDirectory(file);
+    }
+
     @Deprecated
     public static boolean createFile(File file, FileType fileType) throws IOException {
         if (file == null)
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies;
+
+import com.jfilegoodies.util.FileStoreCapabilities;
+import com.jfilegoodies.util.OsUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+
+/**
+ * Turns arbitrary strings into valid file names; the counterpart of {@link FileGoodies#hasValidPath(java.io.File)}
+ * for the names that have to be fixed rather than rejected.
+ *
+ * <p>
+ * A name is rewritten in a single pass:
+ * <ul>
+ *     <li>the characters that are invalid on the target OS are replaced (by {@code '_'} by default)</li>
+ *     <li>on Windows the trailing dots and spaces are removed and the reserved device names
+ *     ({@code CON}, {@code NUL}, {@code COM1}, ...) are suffixed</li>
+ *     <li>the name is truncated to the maximum length (counted in UTF-8 bytes) on a character boundary,
+ *     keeping the extension (as a {@link FormattedFile} would split the name)</li>
+ * </ul>
+ * A name that needs none of these is returned as it is, so the valid names are not copied.
+ *
+ * <pre>{@code
+ * FileNameSanitizer sanitizer = FileNameSanitizer.forTarget(FileNameSanitizer.Target.WINDOWS);
+ * sanitizer.sanitize("what?.txt") = "what_.txt"
+ * sanitizer.sanitize("con.txt")   = "con_.txt"
+ * }</pre>
+ *
+ * <p>
+ * A {@link Batch} makes the names of a batch unique as well: the collisions are looked up in memory
+ * (not on the file system) and resolved by numbering the names ({@code name_1.txt}, {@code name_2.txt}, ...).
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class FileNameSanitizer {
+
+    /**
+     * The default maximum length of a name in UTF-8 bytes (the limit of the common file systems).
+     */
+    public static final int DEFAULT_MAX_LENGTH = 255;
+
+    private static final char DOT = '.';
+    private static final char SEPARATOR = '_';
+    private static final String[] WINDOWS_RESERVED_NAMES = {
+            "CON", "PRN", "AUX", "NUL",
+            "COM1", "COM2", "COM3", "COM4", "COM5", "COM6", "COM7", "COM8", "COM9",
+            "LPT1", "LPT2", "LPT3", "LPT4", "LPT5", "LPT6", "LPT7", "LPT8", "LPT9"
+    };
+    private static final List<String> WINDOWS_FILE_STORE_TYPES = Arrays.asList("ntfs", "vfat", "msdos", "fat", "fat32", "exfat");
+
+    /**
+     * The OS family whose file naming rules are followed.
+     */
+    public enum Target {
+        /**
+         * Forbids {@code < > : " / \ | ? *} and the control characters, the trailing dots and spaces and
+         * the reserved device names; compares the names case-insensitively.
+         */
+        WINDOWS("<>:\"/\\|?*", true, false),
+
+        /**
+         * Forbids {@code /} and {@code :} (which is shown as a slash by the Finder); compares the names
+         * case-insensitively.
+         */
+        MAC("/:", false, false),
+
+        /**
+         * Forbids only {@code /}; compares the names case-sensitively.
+         */
+        UNIX("/", false, true);
+
+        private final String invalidCharacters;
+        private final boolean invalidControlCharacters;
+        private final boolean caseSensitive;
+
+        Target(String invalidCharacters, boolean invalidControlCharacters, boolean caseSensitive) {
+            this.invalidCharacters = invalidCharacters;
+            this.invalidControlCharacters = invalidControlCharacters;
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * @return the target of the current OS
+         */
+        public static Target current() {
+            return OsUtils.isWindows() ? WINDOWS : OsUtils.isMac() ? MAC : UNIX;
+        }
+
+        private boolean isInvalid(char c) {
+            return c == '\0' || invalidControlCharacters && c < 32 || invalidCharacters.indexOf(c) >= 0;
+        }
+    }
+
+    private final Target target;
+    private final char replacement;
+    private final int maxLength;
+    private final boolean caseSensitive;
+
+    private FileNameSanitizer(Target target, char replacement, int maxLength, boolean caseSensitive) {
+        this.target = target;
+        this.replacement = replacement;
+        this.maxLength = maxLength;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * @return a sanitizer for the file names of the current OS
+     */
+    public static FileNameSanitizer forCurrentOs() {
+        return forTarget(Target.current());
+    }
+
+    /**
+     * @param target the OS family whose rules are followed
+     * @return a sanitizer for the file names of the target
+     */
+    public static FileNameSanitizer forTarget(Target target) {
+        return new FileNameSanitizer(target, SEPARATOR, DEFAULT_MAX_LENGTH, target.caseSensitive);
+    }
+
+    /**
+     * Creates a sanitizer for the names of the given directory, using the capabilities of its
+     * file store (see {@link OsUtils#getCapabilities(Path)}): the case sensitivity, the maximum
+     * name length, and the Windows rules for Windows file systems mounted on other OSes.
+     *
+     * @param directory the directory where the files are to be created
+     * @return a sanitizer for the file names of the directory
+     * @throws IOException if the file store of the directory can't be determined
+     * @since 1.3
+     */
+    public static FileNameSanitizer forDirectory(Path directory) throws IOException {
+        FileStoreCapabilities capabilities = OsUtils.getCapabilities(directory);
+        Target target = WINDOWS_FILE_STORE_TYPES.contains(capabilities.getType().toLowerCase(Locale.ROOT))
+                ? Target.WINDOWS
+                : Target.current();
+        return new FileNameSanitizer(target, SEPARATOR, Math.max(16, capabilities.getMaxNameLength()), capabilities.isCaseSensitive());
+    }
+
+    /**
+     * @param replacement the character that replaces the invalid ones
+     * @return a new sanitizer with the given replacement
+     * @throws IllegalArgumentException if the replacement itself is invalid on the target
+     */
+    public FileNameSanitizer withReplacement(char replacement) {
+        if (target.isInvalid(replacement) || replacement == DOT || replacement == ' ' || Character.isSurrogate(replacement))
+            throw new IllegalArgumentException("invalid replacement character: " + replacement);
+        return new FileNameSanitizer(target, replacement, maxLength, caseSensitive);
+    }
+
+    /**
+     * @param maxLength the maximum length of a name in UTF-8 bytes
+     * @return a new sanitizer with the given maximum length
+     * @throws IllegalArgumentException if the {@code maxLength} is too small to hold a numbered name
+     */
+    public FileNameSanitizer withMaxLength(int maxLength) {
+        if (maxLength < 16)
+            throw new IllegalArgumentException("maxLength must be at least 16");
+        return new FileNameSanitizer(target, replacement, maxLength, caseSensitive);
+    }
+
+    /**
+     * @param caseSensitive whether the names that differ only in case are different names
+     *                      (when a {@link Batch} looks for the collisions)
+     * @return a new sanitizer with the given case sensitivity
+     */
+    public FileNameSanitizer withCaseSensitivity(boolean caseSensitive) {
+        return new FileNameSanitizer(target, replacement, maxLength, caseSensitive);
+    }
+
+    /**
+     * Sanitizes a single name; the result is not checked for collisions.
+     *
+     * @param name the name to sanitize
+     * @return the valid name; the same instance if the name has been valid
+     */
+    public String sanitize(String name) {
+        char[] chars = new char[scratchSize(name)];
+        int length = sanitize(name, chars);
+        return asString(name, chars, length);
+    }
+
+    /**
+     * Sanitizes the names and makes them unique within the collection.
+     *
+     * @param names the names to sanitize
+     * @return the valid, unique names in the order of the given ones
+     */
+    public List<String> sanitizeAll(Collection<String> names) {
+        Batch batch = newBatch();
+        List<String> sanitized = new ArrayList<>(names.size());
+        for (String name : names)
+            sanitized.add(batch.sanitize(name));
+        return sanitized;
+    }
+
+    /**
+     * @return a new, empty batch that uses this sanitizer
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Sanitizes the name into the buffer.
+     *
+     * @return the length of the sanitized name
+     */
+    private int sanitize(String name, char[] chars) {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            chars[i] = target.isInvalid(c) ? replacement : c;
+        }
+
+        if (target == Target.WINDOWS) {
+            length = stripTrailing(chars, length);
+            length = escapeReservedName(chars, length);
+        }
+        if (length == 0 || isDots(chars, length)) {
+            for (int i = 0; i < length; i++)
+                chars[i] = replacement;
+            if (length == 0)
+                chars[length++] = replacement;
+        }
+
+        length = truncate(chars, length, maxLength);
+        if (target == Target.WINDOWS) {
+            length = stripTrailing(chars, length);
+            if (length == 0)
+                chars[length++] = replacement;
+        }
+        return length;
+    }
+
+    private static int stripTrailing(char[] chars, int length) {
+        while (length > 0 && (chars[length - 1] == DOT || chars[length - 1] == ' '))
+            length--;
+        return length;
+    }
+
+    private static boolean isDots(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != DOT)
+                return false;
+        }
+        return length <= 2;
+    }
+
+    /**
+     * Windows reserves the device names with any extension, e.g. {@code nul.tar.gz}.
+     */
+    private int escapeReservedName(char[] chars, int length) {
+        int stemLength = 0;
+        while (stemLength < length && chars[stemLength] != DOT)
+            stemLength++;
+        if (stemLength < 3 || stemLength > 4)
+            return length;
+
+        for (String reserved : WINDOWS_RESERVED_NAMES) {
+            if (reserved.length() == stemLength && equalsIgnoreCase(chars, reserved)) {
+                System.arraycopy(chars, stemLength, chars, stemLength + 1, length - stemLength);
+                chars[stemLength] = replacement;
+                return length + 1;
+            }
+        }
+        return length;
+    }
+
+    private static boolean equalsIgnoreCase(char[] chars, String reserved) {
+        for (int i = 0; i < reserved.length(); i++) {
+            if (Character.toUpperCase(chars[i]) != reserved.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Truncates the name to the given number of UTF-8 bytes, keeping the extension if it fits.
+     */
+    private static int truncate(char[] chars, int length, int maxBytes) {
+        if (utf8Length(chars, 0, length) <= maxBytes)
+            return length;
+
+        int dot = lastIndexOf(chars, length, DOT);
+        if (dot > 0) {
+            int extensionBytes = utf8Length(chars, dot, length);
+            if (extensionBytes < maxBytes) {
+                int kept = fittingPrefix(chars, 0, dot, maxBytes - extensionBytes);
+                System.arraycopy(chars, dot, chars, kept, length - dot);
+                return kept + length - dot;
+            }
+        }
+        return fittingPrefix(chars, 0, length, maxBytes);
+    }
+
+    private static int lastIndexOf(char[] chars, int length, char c) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chars[i] == c)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int utf8Length(char[] chars, int from, int to) {
+        int bytes = 0;
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(chars[i + 1])) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the end of the longest prefix of the range that fits into the bytes without splitting a character
+     */
+    private static int fittingPrefix(char[] chars, int from, int to, int maxBytes) {
+        int bytes = 0;
+        int i = from;
+        while (i < to) {
+            char c = chars[i];
+            int width;
+            int count = 1;
+            if (c < 0x80) {
+                width = 1;
+            } else if (c < 0x800) {
+                width = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(chars[i + 1])) {
+                width = 4;
+                count = 2;
+            } else {
+                width = 3;
+            }
+            if (bytes + width > maxBytes)
+                break;
+            bytes += width;
+            i += count;
+        }
+        return i;
+    }
+
+    private static int scratchSize(String name) {
+        //the reserved name escape adds a character, the numbering adds a separator and ten digits
+        return Math.max(name.length(), 1) + 16;
+    }
+
+    private static String asString(String original, char[] chars, int length) {
+        if (length == original.length()) {
+            boolean same = true;
+            for (int i = 0; i < length && same; i++)
+                same = chars[i] == original.charAt(i);
+            if (same)
+                return original;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Sanitizes the names of a batch (e.g. the names of the files that are saved into the same directory)
+     * and makes them unique. The names already present in the destination can be registered by
+     * {@link #reserve(String)}.
+     *
+     * <p>
+     * The scratch buffers are reused between the names, so a name that needs no numbering costs only its
+     * output string (if it has been changed) and its slot in the set. A batch is not thread-safe.
+     */
+    public final class Batch {
+
+        private final NameSet names = new NameSet(caseSensitive);
+        //the next number to try per colliding name, so k copies of a name cost O(k) probes, not O(k^2)
+        private final Map<String, Integer> nextNumbers = new HashMap<>();
+        private char[] chars = new char[64];
+        private char[] candidate = new char[64];
+
+        private Batch() {
+        }
+
+        /**
+         * Sanitizes the name and makes it unique within the batch.
+         *
+         * @param name the name to sanitize
+         * @return the valid name that differs from every previously returned or reserved name
+         */
+        public String sanitize(String name) {
+            int size = scratchSize(name);
+            if (chars.length < size) {
+                chars = new char[Math.max(size, chars.length * 2)];
+                candidate = new char[chars.length];
+            }
+
+            int length = FileNameSanitizer.this.sanitize(name, chars);
+            int slot = names.freeSlot(chars, length);
+            if (slot >= 0)
+                return names.put(slot, asString(name, chars, length));
+
+            String key = names.key(chars, length);
+            for (int number = nextNumbers.getOrDefault(key, 1); ; number++) {
+                int candidateLength = numbered(chars, length, number, candidate);
+                slot = names.freeSlot(candidate, candidateLength);
+                if (slot >= 0) {
+                    nextNumbers.put(key, number + 1);
+                    return names.put(slot, new String(candidate, 0, candidateLength));
+                }
+            }
+        }
+
+        /**
+         * Registers a name that must not be returned, e.g. the name of an existing file.
+         *
+         * @param name the name to reserve
+         * @return {@code false} if the name has already been reserved or returned
+         */
+        public boolean reserve(String name) {
+            if (chars.length < name.length()) {
+                chars = new char[Math.max(name.length(), chars.length * 2)];
+                candidate = new char[chars.length];
+            }
+            name.getChars(0, name.length(), chars, 0);
+            int slot = names.freeSlot(chars, name.length());
+            if (slot < 0)
+                return false;
+            names.put(slot, name);
+            return true;
+        }
+
+        /**
+         * @return the number of the returned and reserved names
+         */
+        public int size() {
+            return names.size;
+        }
+
+        /**
+         * Creates {@code simpleName_number.extension}, truncating the simple name if the numbered name
+         * would be too long.
+         */
+        private int numbered(char[] name, int length, int number, char[] target) {
+            int digits = number < 10 ? 1 : (int) Math.log10(number) + 1;
+            int suffixBytes = digits + 1;
+
+            int dot = lastIndexOf(name, length, DOT);
+            int stemEnd = dot > 0 ? dot : length;
+            int extensionBytes = dot > 0 ? utf8Length(name, dot, length) : 0;
+            if (extensionBytes + suffixBytes >= maxLength) {
+                stemEnd = length;
+                extensionBytes = 0;
+            }
+            int kept = fittingPrefix(name, 0, stemEnd, maxLength - extensionBytes - suffixBytes);
+
+            System.arraycopy(name, 0, target, 0, kept);
+            int position = kept;
+            target[position++] = SEPARATOR;
+            for (int i = digits - 1, value = number; i >= 0; i--, value /= 10)
+                target[position + i] = (char) ('0' + value % 10);
+            position += digits;
+            if (stemEnd < length) {
+                System.arraycopy(name, stemEnd, target, position, length - stemEnd);
+                position += length - stemEnd;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * An open addressing hash set of names that can be looked up by a {@code char} range,
+     * so a lookup doesn't need a {@link String}.
+     */
+    private static final class NameSet {
+
+        private final boolean caseSensitive;
+        private String[] table = new String[64];
+        private int size;
+
+        NameSet(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * Looks up the name.
+         *
+         * @return the slot where the name can be {@link #put(int, String)}; -1 if the name is present
+         */
+        int freeSlot(char[] chars, int length) {
+            if ((size + 1) * 2 > table.length)
+                resize();
+
+            int mask = table.length - 1;
+            int slot = hash(chars, length) & mask;
+            while (table[slot] != null) {
+                if (matches(table[slot], chars, length))
+                    return -1;
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Stores the name into the slot returned by the last {@link #freeSlot(char[], int)} call.
+         */
+        String put(int slot, String name) {
+            table[slot] = name;
+            size++;
+            return name;
+        }
+
+        private void resize() {
+            String[] old = table;
+            table = new String[old.length * 2];
+            int mask = table.length - 1;
+            for (String name : old) {
+                if (name == null)
+                    continue;
+                int slot = hash(name) & mask;
+                while (table[slot] != null)
+                    slot = (slot + 1) & mask;
+                table[slot] = name;
+            }
+        }
+
+        /**
+         * @return the name in the form that equals for the names that collide
+         */
+        private String key(char[] chars, int length) {
+            char[] key = new char[length];
+            for (int i = 0; i < length; i++)
+                key[i] = fold(chars[i]);
+            return new String(key);
+        }
+
+        private int hash(char[] chars, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++)
+                hash = 31 * hash + fold(chars[i]);
+            return spread(hash);
+        }
+
+        private int hash(String name) {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++)
+                hash = 31 * hash + fold(name.charAt(i));
+            return spread(hash);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean matches(String name, char[] chars, int length) {
+            if (name.length() != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (fold(name.charAt(i)) != fold(chars[i]))
+                    return false;
+            }
+            return true;
+        }
+
+        private char fold(char c) {
+            return caseSensitive ? c : Character.toLowerCase(Character.toUpperCase(c));
+        }
+    }
+}
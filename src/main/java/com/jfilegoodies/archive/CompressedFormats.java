@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.archive;
+
+import com.jfilegoodies.FormattedFile;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recognizes the files which are already compressed, so deflating them again would only waste CPU time.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class CompressedFormats {
+
+    /**
+     * The number of bytes that {@link #isCompressedContent(byte[], int)} needs at most.
+     */
+    static final int HEADER_LENGTH = 12;
+
+    private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList(
+            "zip", "jar", "war", "ear", "apk", "aar", "whl", "nupkg",
+            "gz", "tgz", "bz2", "tbz2", "xz", "txz", "lz", "lz4", "lzma", "zst", "7z", "rar", "cab",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif", "jxl",
+            "mp3", "aac", "m4a", "ogg", "opus", "flac",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi", "wmv",
+            "woff", "woff2"
+    ));
+
+    private CompressedFormats() {
+    }
+
+    /**
+     * @param fileName the name of the file
+     * @return {@code true} if the extension of the file belongs to a compressed format
+     */
+    static boolean isCompressedExtension(String fileName) {
+        String extension = new FormattedFile(fileName).getExtension();
+        return EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks the magic numbers of the compressed archive, image, audio and video formats.
+     *
+     * @param header the first bytes of the file
+     * @param length the number of valid bytes in the {@code header}
+     * @return {@code true} if the content belongs to a compressed format
+     */
+    static boolean isCompressedContent(byte[] header, int length) {
+        return startsWith(header, length, 'P', 'K', 3, 4)               //zip, jar, office documents
+                || startsWith(header, length, 0x1F, 0x8B)               //gzip
+                || startsWith(header, length, 'B', 'Z', 'h')            //bzip2
+                || startsWith(header, length, 0xFD, '7', 'z', 'X', 'Z') //xz
+                || startsWith(header, length, 0x28, 0xB5, 0x2F, 0xFD)   //zstd
+                || startsWith(header, length, '7', 'z', 0xBC, 0xAF)     //7z
+                || startsWith(header, length, 'R', 'a', 'r', '!')       //rar
+                || startsWith(header, length, 0xFF, 0xD8, 0xFF)         //jpeg
+                || startsWith(header, length, 0x89, 'P', 'N', 'G')      //png
+                || startsWith(header, length, 'G', 'I', 'F', '8')       //gif
+                || startsWith(header, length, 'O', 'g', 'g', 'S')       //ogg
+                || startsWith(header, length, 'f', 'L', 'a', 'C')       //flac
+                || startsWith(header, length, 'I', 'D', '3')            //mp3
+                || startsWith(header, length, 0x1A, 0x45, 0xDF, 0xA3)   //matroska, webm
+                || length >= 12 && header[4] == 'f' && header[5] == 'y' && header[6] == 't' && header[7] == 'p' //mp4, mov, heic
+                || startsWith(header, length, 'R', 'I', 'F', 'F')
+                && length >= 12 && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P';
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length)
+            return false;
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.archive;
+
+/**
+ * Combines the CRC-32 checksums of consecutive byte sequences, so the checksum of a file
+ * can be computed in parallel chunks (a port of zlib's {@code crc32_combine}).
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class Crc32Combiner {
+
+    private static final long POLYNOMIAL = 0xEDB88320L;
+
+    private Crc32Combiner() {
+    }
+
+    /**
+     * Returns the CRC-32 of the concatenation of two sequences.
+     *
+     * @param first        the CRC-32 of the first sequence
+     * @param second       the CRC-32 of the second sequence
+     * @param secondLength the length of the second sequence
+     * @return the combined checksum
+     */
+    static long combine(long first, long second, long secondLength) {
+        if (secondLength <= 0)
+            return first;
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        //the operator for one zero bit
+        odd[0] = POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); //two zero bits
+        square(odd, even); //four zero bits
+
+        //applying len2 zero bytes to the first checksum
+        long length = secondLength;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0)
+                first = times(even, first);
+            length >>= 1;
+            if (length == 0)
+                break;
+
+            square(odd, even);
+            if ((length & 1) != 0)
+                first = times(odd, first);
+            length >>= 1;
+        } while (length != 0);
+
+        return first ^ second;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0)
+                sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++)
+            square[n] = times(matrix, matrix[n]);
+    }
+}
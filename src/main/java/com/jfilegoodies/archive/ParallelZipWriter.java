@@ -0,0 +1,758 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.archive;
+
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive while the entries are compressed in parallel.
+ *
+ * <p>
+ * Every added file is split into chunks (of {@link #DEFAULT_CHUNK_SIZE} by default) which are deflated
+ * independently by a pool of worker threads; a chunk is primed with the last 32 KiB of the previous chunk
+ * as the preset dictionary and ends on a byte boundary, so the chunks are concatenated into one valid
+ * deflate stream (like {@code pigz} does) and the checksums of the chunks are combined. A single writer
+ * thread streams the finished chunks into the output in the order of the {@link #addFile(Path, String)} calls,
+ * so the archive is never buffered in memory as a whole: at most a few chunks per worker are held at a time,
+ * and the adding thread blocks while the writer catches up.
+ *
+ * <p>
+ * The files which are already compressed, recognized by their extension (via {@link com.jfilegoodies.FormattedFile})
+ * or by their header bytes, are stored without deflating them. A small file is also stored if the deflated form
+ * wouldn't be smaller. Archives larger than 4 GiB or with more than 65535 entries are written in the ZIP64 format.
+ *
+ * <pre>{@code
+ * try (ParallelZipWriter zip = new ParallelZipWriter(Paths.get("backup.zip"))) {
+ *     zip.addDirectory(Paths.get("documents"));
+ *     zip.addFiles(deprecatedFiles);
+ * }
+ * }</pre>
+ *
+ * <p>
+ * <i>Note: the files must not be modified while they are archived; a file that has been truncated in
+ * the meantime fails the archive.</i>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ParallelZipWriter implements AutoCloseable {
+
+    /**
+     * The default size of the independently deflated chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+
+    private static final PendingEntry END = new PendingEntry(null, null, 0, 0, false, 0);
+    private static final Future<Chunk> ABORTED = failedFuture(new InterruptedIOException("archiving has been interrupted"));
+
+    private final CountingOutputStream output;
+    private final int level;
+    private final int chunkSize;
+    private final ExecutorService workers;
+    private final Semaphore chunkPermits;
+    private final BlockingQueue<PendingEntry> entries = new LinkedBlockingQueue<>();
+    private final Set<String> names = new HashSet<>();
+    private final List<CentralRecord> records = new ArrayList<>();
+    private final Thread writer;
+
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Creates (or overwrites) the ZIP file and compresses the entries on all available processors.
+     *
+     * @param zipFile the archive to write
+     * @throws IOException if the file can't be created
+     */
+    public ParallelZipWriter(Path zipFile) throws IOException {
+        this(Files.newOutputStream(zipFile));
+    }
+
+    /**
+     * Writes the archive into the stream and compresses the entries on all available processors
+     * with the default compression level.
+     *
+     * @param output the destination of the archive; closed by {@link #close()}
+     */
+    public ParallelZipWriter(OutputStream output) {
+        this(output, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param output      the destination of the archive; closed by {@link #close()}
+     * @param parallelism the number of the compressing threads
+     * @param level       the compression level (0-9), or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param chunkSize   the size of the independently deflated chunks; must be at least 64 KiB
+     *                    (the files are not split below this size)
+     * @throws IllegalArgumentException if an argument is out of its range
+     */
+    public ParallelZipWriter(OutputStream output, int parallelism, int level, int chunkSize) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive");
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        if (chunkSize < 2 * DICTIONARY_SIZE)
+            throw new IllegalArgumentException("chunkSize must be at least " + 2 * DICTIONARY_SIZE);
+
+        this.output = new CountingOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        this.level = level;
+        this.chunkSize = chunkSize;
+        this.workers = Executors.newFixedThreadPool(parallelism, IoExecutors.daemonThreadFactory("jfilegoodies-zip-deflater"));
+        this.chunkPermits = new Semaphore(parallelism * CHUNKS_PER_WORKER);
+        this.writer = IoExecutors.daemonThreadFactory("jfilegoodies-zip-writer").newThread(this::runWriter);
+        this.writer.start();
+    }
+
+    /**
+     * Adds the directory and everything below it; the names of the entries start with the
+     * name of the directory (like {@code zip -r} does). Symbolic links are not followed.
+     *
+     * @param directory the directory to archive
+     * @throws IOException if the directory can't be walked or the archive has failed
+     */
+    public void addDirectory(Path directory) throws IOException {
+        Path name = directory.toAbsolutePath().normalize().getFileName();
+        addDirectory(directory, name == null ? "" : name.toString());
+    }
+
+    /**
+     * Adds the content of the directory under the given prefix. Symbolic links are not followed.
+     *
+     * @param directory the directory to archive
+     * @param prefix    the directory of the entries in the archive; an empty string puts them into the root
+     * @throws IOException if the directory can't be walked or the archive has failed
+     */
+    public void addDirectory(Path directory, String prefix) throws IOException {
+        String base = normalizeName(prefix);
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String name = entryName(base, directory.relativize(dir));
+                if (!name.isEmpty())
+                    addDirectoryEntry(name, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile())
+                    addFileEntry(file, entryName(base, directory.relativize(file)), attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Adds the files into the root of the archive under their own names, e.g. a batch of
+     * deprecated backups (see {@link com.jfilegoodies.FileGoodies#isDeprecatedFile(File)}).
+     *
+     * @param files the files to archive
+     * @throws IOException if a file can't be read or the archive has failed
+     */
+    public void addFiles(Collection<? extends File> files) throws IOException {
+        for (File file : files)
+            addFile(file.toPath(), file.getName());
+    }
+
+    /**
+     * Adds a file (or an empty directory) to the archive.
+     *
+     * @param file      the file to archive
+     * @param entryName the name of the entry; {@code '\'} separators are converted to {@code '/'}
+     * @throws ZipException if an entry with the same name has already been added
+     * @throws IOException  if the file can't be read or the archive has failed
+     */
+    public void addFile(Path file, String entryName) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.isDirectory())
+            addDirectoryEntry(normalizeName(entryName), attributes);
+        else
+            addFileEntry(file, normalizeName(entryName), attributes);
+    }
+
+    private void addDirectoryEntry(String name, BasicFileAttributes attributes) throws IOException {
+        ensureOpen();
+        String directoryName = name.endsWith("/") ? name : name + "/";
+        reserveName(directoryName);
+        entries.add(new PendingEntry(directoryName, null, 0, dosTime(attributes.lastModifiedTime().toMillis()), false, 0));
+    }
+
+    private void addFileEntry(Path file, String name, BasicFileAttributes attributes) throws IOException {
+        ensureOpen();
+        if (name.isEmpty() || name.endsWith("/"))
+            throw new ZipException("invalid entry name for a file: " + name);
+        reserveName(name);
+
+        long size = attributes.size();
+        int chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        //the header bytes of a single chunk are examined by its worker; larger files are examined here once
+        boolean stored = hasCompressedExtension(file) || chunkCount > 1 && hasCompressedHeader(file);
+        PendingEntry entry = new PendingEntry(name, file, size, dosTime(attributes.lastModifiedTime().toMillis()), stored, chunkCount);
+        entries.add(entry);
+
+        for (int i = 0; i < chunkCount; i++) {
+            try {
+                chunkPermits.acquire();
+            } catch (InterruptedException e) {
+                entry.chunks.add(ABORTED);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("archiving has been interrupted");
+            }
+            long offset = (long) i * chunkSize;
+            int length = (int) Math.min(chunkSize, size - offset);
+            boolean last = i == chunkCount - 1;
+            entry.chunks.add(workers.submit(() -> stored
+                    ? readChunk(file, offset, length, chunkCount == 1)
+                    : deflateChunk(file, offset, length, last, chunkCount == 1)));
+        }
+    }
+
+    private static boolean hasCompressedExtension(Path file) {
+        Path fileName = file.getFileName();
+        return fileName != null && CompressedFormats.isCompressedExtension(fileName.toString());
+    }
+
+    private static boolean hasCompressedHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(CompressedFormats.HEADER_LENGTH);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            return CompressedFormats.isCompressedContent(header.array(), header.position());
+        }
+    }
+
+    private Chunk readChunk(Path file, long offset, int length, boolean keepData) throws IOException {
+        byte[] data = new byte[length];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel, file, offset, data);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return new Chunk(true, keepData ? data : null, length, crc.getValue(), length);
+    }
+
+    private Chunk deflateChunk(Path file, long offset, int length, boolean last, boolean mayStore) throws IOException {
+        byte[] dictionary = null;
+        byte[] data = new byte[length];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (offset > 0) {
+                dictionary = new byte[(int) Math.min(DICTIONARY_SIZE, offset)];
+                read(channel, file, offset - dictionary.length, dictionary);
+            }
+            read(channel, file, offset, data);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        if (mayStore && CompressedFormats.isCompressedContent(data, length))
+            return new Chunk(true, data, length, crc.getValue(), length);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null)
+                deflater.setDictionary(dictionary);
+            deflater.setInput(data, 0, length);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished())
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+            } else {
+                //a sync flush ends the chunk on a byte boundary without ending the deflate stream
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, written);
+                } while (written == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        if (mayStore && compressed.size() >= length)
+            return new Chunk(true, data, length, crc.getValue(), length);
+        return new Chunk(false, compressed.toByteArray(), compressed.size(), crc.getValue(), length);
+    }
+
+    private static void read(FileChannel channel, Path file, long position, byte[] target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(target);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("the file has been truncated while archiving: " + file);
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                PendingEntry entry = entries.take();
+                if (entry == END)
+                    break;
+                if (failure == null) {
+                    try {
+                        write(entry);
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (RuntimeException e) {
+                        failure = new IOException(e);
+                    }
+                }
+                discard(entry);
+            }
+            if (failure == null)
+                writeCentralDirectory();
+            output.flush();
+        } catch (IOException e) {
+            if (failure == null)
+                failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("archiving has been interrupted");
+        }
+    }
+
+    private void write(PendingEntry entry) throws IOException, InterruptedException {
+        long offset = output.getCount();
+        if (entry.path == null) {
+            writeLocalHeader(entry, STORED, 0, 0, 0, 0, false);
+            records.add(new CentralRecord(entry, STORED, 0, 0, 0, 0, offset, true));
+            return;
+        }
+
+        if (entry.chunkCount == 1) {
+            //the sizes are known before the data: no data descriptor is needed
+            Chunk chunk = take(entry);
+            int method = chunk.stored ? STORED : DEFLATED;
+            writeLocalHeader(entry, method, 0, chunk.crc, chunk.dataLength, chunk.length, false);
+            output.write(chunk.data, 0, chunk.dataLength);
+            records.add(new CentralRecord(entry, method, 0, chunk.crc, chunk.dataLength, chunk.length, offset, false));
+        } else if (entry.stored) {
+            //the checksums have been computed in parallel, the data is copied from the file
+            long crc = 0;
+            for (int i = 0; i < entry.chunkCount; i++) {
+                Chunk chunk = take(entry);
+                crc = Crc32Combiner.combine(crc, chunk.crc, chunk.length);
+            }
+            boolean zip64 = entry.size >= ZIP64_MAGIC;
+            writeLocalHeader(entry, STORED, 0, crc, entry.size, entry.size, zip64);
+            copy(entry.path, entry.size);
+            records.add(new CentralRecord(entry, STORED, 0, crc, entry.size, entry.size, offset, false));
+        } else {
+            //the deflated size is known only at the end: it goes into the data descriptor
+            //(reserving ZIP64 for the files that may exceed 4 GiB with the deflate overhead)
+            boolean zip64 = entry.size + (entry.size >>> 10) + 1024 >= ZIP64_MAGIC;
+            writeLocalHeader(entry, DEFLATED, FLAG_DATA_DESCRIPTOR, 0, 0, 0, zip64);
+            long crc = 0;
+            long compressedSize = 0;
+            for (int i = 0; i < entry.chunkCount; i++) {
+                Chunk chunk = take(entry);
+                output.write(chunk.data, 0, chunk.dataLength);
+                crc = Crc32Combiner.combine(crc, chunk.crc, chunk.length);
+                compressedSize += chunk.dataLength;
+            }
+            if (!zip64 && compressedSize >= ZIP64_MAGIC)
+                throw new ZipException("the deflated size of the entry exceeds 4 GiB: " + entry.name);
+
+            ByteBuffer descriptor = littleEndian(24);
+            descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE).putInt((int) crc);
+            if (zip64)
+                descriptor.putLong(compressedSize).putLong(entry.size);
+            else
+                descriptor.putInt((int) compressedSize).putInt((int) entry.size);
+            write(descriptor);
+            records.add(new CentralRecord(entry, DEFLATED, FLAG_DATA_DESCRIPTOR, crc, compressedSize, entry.size, offset, false));
+        }
+    }
+
+    private Chunk take(PendingEntry entry) throws IOException, InterruptedException {
+        Future<Chunk> future = entry.chunks.take();
+        entry.taken++;
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        } finally {
+            if (future != ABORTED)
+                chunkPermits.release();
+        }
+    }
+
+    private void discard(PendingEntry entry) throws InterruptedException {
+        while (entry.taken < entry.chunkCount) {
+            Future<Chunk> future = entry.chunks.take();
+            entry.taken++;
+            if (future == ABORTED)
+                return;
+            future.cancel(false);
+            chunkPermits.release();
+        }
+    }
+
+    private void copy(Path file, long size) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                ByteBuffer window = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, size - position));
+                int read = channel.read(window, position);
+                if (read < 0)
+                    throw new EOFException("the file has been truncated while archiving: " + file);
+                output.write(buffer, 0, read);
+                position += read;
+            }
+        }
+    }
+
+    private void writeLocalHeader(PendingEntry entry, int method, int flags, long crc,
+                                  long compressedSize, long size, boolean zip64) throws IOException {
+        ByteBuffer header = littleEndian(30 + entry.name.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION))
+                .putShort((short) (flags | FLAG_UTF8))
+                .putShort((short) method)
+                .putInt((int) entry.dosTime)
+                .putInt((int) crc)
+                .putInt(zip64 ? (int) ZIP64_MAGIC : (int) compressedSize)
+                .putInt(zip64 ? (int) ZIP64_MAGIC : (int) size)
+                .putShort((short) entry.name.length)
+                .putShort((short) (zip64 ? 20 : 0))
+                .put(entry.name);
+        if (zip64)
+            header.putShort((short) ZIP64_EXTRA_ID).putShort((short) 16).putLong(size).putLong(compressedSize);
+        write(header);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = output.getCount();
+        for (CentralRecord record : records) {
+            boolean largeSize = record.size >= ZIP64_MAGIC;
+            boolean largeCompressedSize = record.compressedSize >= ZIP64_MAGIC;
+            boolean largeOffset = record.offset >= ZIP64_MAGIC;
+            int extraLength = (largeSize ? 8 : 0) + (largeCompressedSize ? 8 : 0) + (largeOffset ? 8 : 0);
+            if (extraLength > 0)
+                extraLength += 4;
+            int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+
+            ByteBuffer header = littleEndian(46 + record.name.length + extraLength);
+            header.putInt(CENTRAL_HEADER_SIGNATURE)
+                    .putShort((short) version)
+                    .putShort((short) version)
+                    .putShort((short) (record.flags | FLAG_UTF8))
+                    .putShort((short) record.method)
+                    .putInt((int) record.dosTime)
+                    .putInt((int) record.crc)
+                    .putInt((int) Math.min(record.compressedSize, ZIP64_MAGIC))
+                    .putInt((int) Math.min(record.size, ZIP64_MAGIC))
+                    .putShort((short) record.name.length)
+                    .putShort((short) extraLength)
+                    .putShort((short) 0)  //comment length
+                    .putShort((short) 0)  //disk number
+                    .putShort((short) 0)  //internal attributes
+                    .putInt(record.directory ? DIRECTORY_ATTRIBUTE : 0)
+                    .putInt((int) Math.min(record.offset, ZIP64_MAGIC))
+                    .put(record.name);
+            if (extraLength > 0) {
+                header.putShort((short) ZIP64_EXTRA_ID).putShort((short) (extraLength - 4));
+                if (largeSize)
+                    header.putLong(record.size);
+                if (largeCompressedSize)
+                    header.putLong(record.compressedSize);
+                if (largeOffset)
+                    header.putLong(record.offset);
+            }
+            write(header);
+        }
+
+        long end = output.getCount();
+        long directorySize = end - start;
+        int count = records.size();
+        if (count >= ZIP64_MAGIC_COUNT || start >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC) {
+            ByteBuffer zip64End = littleEndian(56 + 20);
+            zip64End.putInt(ZIP64_END_SIGNATURE)
+                    .putLong(44)
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(count)
+                    .putLong(count)
+                    .putLong(directorySize)
+                    .putLong(start);
+            zip64End.putInt(ZIP64_LOCATOR_SIGNATURE)
+                    .putInt(0)
+                    .putLong(end)
+                    .putInt(1);
+            write(zip64End);
+        }
+
+        ByteBuffer endRecord = littleEndian(22);
+        endRecord.putInt(END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) Math.min(count, ZIP64_MAGIC_COUNT))
+                .putShort((short) Math.min(count, ZIP64_MAGIC_COUNT))
+                .putInt((int) Math.min(directorySize, ZIP64_MAGIC))
+                .putInt((int) Math.min(start, ZIP64_MAGIC))
+                .putShort((short) 0);
+        write(endRecord);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        output.write(buffer.array(), 0, buffer.position());
+    }
+
+    private static ByteBuffer littleEndian(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("the archive has been closed");
+        IOException failed = failure;
+        if (failed != null)
+            throw new IOException("writing the archive has failed", failed);
+    }
+
+    private void reserveName(String name) throws ZipException {
+        if (!names.add(name))
+            throw new ZipException("duplicate entry: " + name);
+    }
+
+    private static String normalizeName(String name) {
+        String normalized = name.replace('\\', '/');
+        while (normalized.startsWith("/"))
+            normalized = normalized.substring(1);
+        return normalized;
+    }
+
+    private static String entryName(String base, Path relative) {
+        StringBuilder name = new StringBuilder(base);
+        for (Path part : relative) {
+            String segment = part.toString();
+            if (segment.isEmpty())
+                continue;
+            if (name.length() > 0 && name.charAt(name.length() - 1) != '/')
+                name.append('/');
+            name.append(segment);
+        }
+        return name.toString();
+    }
+
+    private static long dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980)
+            return (1 << 21) | (1 << 16);
+        return (long) (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    private static Future<Chunk> failedFuture(Throwable cause) {
+        CompletableFuture<Chunk> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Waits until every added entry is written, then finishes the archive with the central directory
+     * and closes the output.
+     *
+     * @throws IOException if writing the archive has failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        entries.add(END);
+        boolean interrupted = false;
+        try {
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        IOException failed = failure;
+        try {
+            output.close();
+        } catch (IOException e) {
+            if (failed == null)
+                failed = e;
+        }
+        if (failed != null)
+            throw failed;
+    }
+
+    private static final class PendingEntry {
+        final byte[] name;
+        final Path path;
+        final long size;
+        final long dosTime;
+        final boolean stored;
+        final int chunkCount;
+        final BlockingQueue<Future<Chunk>> chunks = new LinkedBlockingQueue<>();
+        int taken;
+
+        PendingEntry(String name, Path path, long size, long dosTime, boolean stored, int chunkCount) {
+            this.name = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+            this.path = path;
+            this.size = size;
+            this.dosTime = dosTime;
+            this.stored = stored;
+            this.chunkCount = chunkCount;
+        }
+    }
+
+    private static final class Chunk {
+        final boolean stored;
+        final byte[] data;
+        final int dataLength;
+        final long crc;
+        final int length;
+
+        Chunk(boolean stored, byte[] data, int dataLength, long crc, int length) {
+            this.stored = stored;
+            this.data = data;
+            this.dataLength = dataLength;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    private static final class CentralRecord {
+        final byte[] name;
+        final int method;
+        final int flags;
+        final long dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+        final boolean directory;
+
+        CentralRecord(PendingEntry entry, int method, int flags, long crc,
+                      long compressedSize, long size, long offset, boolean directory) {
+            this.name = entry.name;
+            this.method = method;
+            this.flags = flags;
+            this.dosTime = entry.dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+            this.directory = directory;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.bulk;
+
+import com.jfilegoodies.FileGoodies;
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Performs file operations on many files concurrently.
+ *
+ * <p>
+ * Metadata operations (renaming, deleting, creating) are I/O bound, so instead of
+ * running them one by one, a {@link BulkFileOperations} object overlaps them:
+ * on Java 21+ every operation runs on a virtual thread, on older runtimes on a bounded
+ * pool of platform threads (see {@link IoExecutors}).
+ *
+ * <p>
+ * The number of concurrent operations is limited per file store (volume), so a slow
+ * network mount can't be flooded. The operations over the limit wait in a queue of their
+ * store instead of occupying the workers, and on a platform thread pool a store gets at most
+ * one worker less than the pool, so the other volumes are never stalled. A bulk operation doesn't stop at the first error; the
+ * results and the failures are aggregated into a {@link BulkResult}.
+ *
+ * <pre>{@code
+ * try (BulkFileOperations operations = new BulkFileOperations()) {
+ *     BulkResult<File> result = operations.deprecateAll(filesToReplace);
+ *     result.getSucceeded().forEach((original, renamed) -> ...);
+ *     result.throwIfFailed();
+ * }
+ * }</pre>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class BulkFileOperations implements AutoCloseable {
+
+    /**
+     * The default number of concurrent operations allowed on one file store.
+     */
+    public static final int DEFAULT_CONCURRENCY_PER_STORE = 32;
+
+    private static final int MAX_DEPRECATE_ATTEMPTS = 16;
+
+    /**
+     * An operation that is performed on one file of a bulk operation.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface FileOperation<T> {
+        T apply(File file) throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final FileStoreLimiter limiter;
+    private final ExecutorService deleteExecutor;
+    private final TreeDeleter treeDeleter;
+
+    /**
+     * Creates a {@link BulkFileOperations} object that allows {@link #DEFAULT_CONCURRENCY_PER_STORE}
+     * concurrent operations per file store.
+     */
+    public BulkFileOperations() {
+        this(DEFAULT_CONCURRENCY_PER_STORE);
+    }
+
+    /**
+     * Creates a {@link BulkFileOperations} object with the default platform thread pool size
+     * (used only if virtual threads are not available).
+     *
+     * @param concurrencyPerStore the maximum number of concurrent operations on one file store
+     */
+    public BulkFileOperations(int concurrencyPerStore) {
+        this(concurrencyPerStore, IoExecutors.defaultPlatformThreads());
+    }
+
+    /**
+     * @param concurrencyPerStore the maximum number of concurrent operations on one file store
+     * @param platformThreads     the size of the platform thread pool that is used if virtual threads
+     *                            are not available
+     * @throws IllegalArgumentException if any of the arguments is not positive
+     */
+    public BulkFileOperations(int concurrencyPerStore, int platformThreads) {
+        if (concurrencyPerStore <= 0)
+            throw new IllegalArgumentException("concurrencyPerStore must be positive");
+        this.executor = IoExecutors.newIoExecutor(platformThreads, "jfilegoodies-bulk");
+        //a slow store must leave a platform worker for the others
+        this.limiter = new FileStoreLimiter(executor, IoExecutors.isVirtualThreadsAvailable() ? concurrencyPerStore
+                : Math.min(concurrencyPerStore, Math.max(1, platformThreads - 1)));
+        //the trees are deleted on an executor of their own: the bulk workers wait for them
+        this.deleteExecutor = IoExecutors.newIoExecutor(platformThreads, "jfilegoodies-bulk-delete");
+        this.treeDeleter = new TreeDeleter(deleteExecutor, concurrencyPerStore, 0);
+    }
+
+    /**
+     * Renames every file to a deprecated name generated by {@link FileGoodies#deprecateFile(File)}.
+     *
+     * <p>
+     * Directories are reported as failures. If another process takes the generated name
+     * before the rename happens, a new name is generated.
+     *
+     * @param files the files to rename; null elements are ignored
+     * @return the result that maps the original files to their new names
+     */
+    public BulkResult<File> deprecateAll(Collection<? extends File> files) {
+        return execute(files, BulkFileOperations::deprecate);
+    }
+
+    /**
+     * Deletes every file; directories are deleted recursively by a {@link TreeDeleter}.
+     * Symbolic links are deleted, never followed. If some entries of a tree can't be deleted,
+     * the failure of the tree carries their errors as suppressed exceptions.
+     *
+     * @param files the files to delete; null elements are ignored
+     * @return the result that maps the files to the number of deleted entries
+     *         (0 if the file didn't exist)
+     */
+    public BulkResult<Integer> deleteAll(Collection<? extends File> files) {
+        return execute(files, this::deleteRecursively);
+    }
+
+    /**
+     * Creates every directory, including the missing parent directories.
+     * Already existing directories are not reported as failures.
+     *
+     * <p>
+     * It's a concurrent replacement of the deprecated {@link FileGoodies#createFile(File, FileGoodies.FileType)}
+     * when used with {@link FileGoodies.FileType#DIRECTORY}.
+     *
+     * @param directories the directories to create; null elements are ignored
+     * @return the result that maps the files to their created directories
+     */
+    public BulkResult<File> createDirectories(Collection<? extends File> directories) {
+        return execute(directories, directory -> Files.createDirectories(directory.toPath()).toFile());
+    }
+
+    /**
+     * Creates every file that doesn't exist and updates the last-modified time of
+     * the ones that do, like the unix {@code touch} command.
+     *
+     * @param files the files to touch; null elements are ignored
+     * @return the result that maps the files to whether they have been created ({@code true})
+     *         or only updated ({@code false})
+     */
+    public BulkResult<Boolean> touchAll(Collection<? extends File> files) {
+        return execute(files, BulkFileOperations::touch);
+    }
+
+    /**
+     * Performs a custom operation on every file concurrently, respecting the
+     * per-file-store concurrency limit.
+     *
+     * @param files     the files; null elements and duplicates are ignored
+     * @param operation the operation to perform on each file
+     * @param <T>       the type of the results
+     * @return the aggregated results and failures
+     */
+    public <T> BulkResult<T> execute(Collection<? extends File> files, FileOperation<T> operation) {
+        Objects.requireNonNull(operation, "The operation mustn't be null");
+
+        List<File> distinctFiles = new ArrayList<>(new LinkedHashSet<>(files));
+        distinctFiles.removeIf(Objects::isNull);
+
+        List<Future<T>> futures = new ArrayList<>(distinctFiles.size());
+        for (File file : distinctFiles) {
+            FutureTask<T> task = new FutureTask<>(() -> operation.apply(file));
+            limiter.execute(file.toPath(), task);
+            futures.add(task);
+        }
+
+        Map<File, T> succeeded = new LinkedHashMap<>();
+        Map<File, IOException> failures = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            File file = distinctFiles.get(i);
+            Future<T> future = futures.get(i);
+            if (interrupted) {
+                future.cancel(true);
+                failures.put(file, new InterruptedIOException("The bulk operation has been interrupted"));
+                continue;
+            }
+
+            try {
+                succeeded.put(file, future.get());
+            } catch (ExecutionException e) {
+                failures.put(file, asIOException(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+                future.cancel(true);
+                failures.put(file, new InterruptedIOException("The bulk operation has been interrupted"));
+            }
+        }
+
+        return new BulkResult<>(succeeded, failures);
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    private static File deprecate(File file) throws IOException {
+        if (file.isDirectory())
+            throw new IOException(String.format("'%s' is a directory", file));
+
+        Path source = file.toPath();
+        for (int attempt = 1; ; attempt++) {
+            File target = FileGoodies.deprecateFile(file);
+            try {
+                Files.move(source, target.toPath());
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                //someone else has taken the generated name in the meantime
+                if (attempt >= MAX_DEPRECATE_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    private int deleteRecursively(File file) throws IOException {
+        DeleteReport report = treeDeleter.delete(file.toPath()).throwIfFailed();
+        return (int) report.getDeletedEntries();
+    }
+
+    private static boolean touch(File file) throws IOException {
+        Path path = file.toPath();
+        try {
+            Files.createFile(path);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return false;
+        }
+    }
+
+    /**
+     * Shuts down the underlying executor. Operations that are already running are completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        deleteExecutor.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.bulk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The aggregated outcome of a bulk file operation.
+ *
+ * <p>
+ * A bulk operation never stops at the first error: every file is processed and
+ * the failures are collected together with the results of the successful operations.
+ *
+ * @param <T> the type of the results of the successful operations
+ * @author Daniel Gyorffy
+ * @see BulkFileOperations
+ * @since 1.3
+ */
+public final class BulkResult<T> {
+
+    private final Map<File, T> succeeded;
+    private final Map<File, IOException> failures;
+
+    BulkResult(Map<File, T> succeeded, Map<File, IOException> failures) {
+        this.succeeded = Collections.unmodifiableMap(succeeded);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the results of the successful operations keyed by the files they were
+     * performed on, in the order the files were given.
+     */
+    public Map<File, T> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the errors of the failed operations keyed by the files they were
+     * performed on, in the order the files were given.
+     */
+    public Map<File, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the failed files, in the order they were given.
+     */
+    public List<File> getFailedFiles() {
+        return Collections.unmodifiableList(new ArrayList<>(failures.keySet()));
+    }
+
+    /**
+     * @return {@code true} if none of the operations failed; {@code false} otherwise
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Throws an {@link IOException} if any of the operations failed.
+     * The individual errors are attached to it as suppressed exceptions.
+     *
+     * @return this object, if all operations succeeded
+     * @throws IOException if at least one operation failed
+     */
+    public BulkResult<T> throwIfFailed() throws IOException {
+        if (isSuccessful())
+            return this;
+
+        IOException exception = new IOException(String.format(
+                "%d of %d operations failed", failures.size(), failures.size() + succeeded.size()));
+        failures.values().forEach(exception::addSuppressed);
+        throw exception;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkResult{succeeded=%d, failed=%d}", succeeded.size(), failures.size());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.bulk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link TreeDeleter} run.
+ *
+ * <p>
+ * A deletion never stops at the first error: the failed entries are collected, and only the
+ * directories on their paths are kept.
+ *
+ * @author Daniel Gyorffy
+ * @see TreeDeleter
+ * @since 1.3
+ */
+public final class DeleteReport {
+
+    private final long deletedEntries;
+    private final Map<Path, IOException> failures;
+
+    DeleteReport(long deletedEntries, Map<Path, IOException> failures) {
+        this.deletedEntries = deletedEntries;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the number of deleted files, symbolic links and directories.
+     */
+    public long getDeletedEntries() {
+        return deletedEntries;
+    }
+
+    /**
+     * Returns the errors keyed by the entries that couldn't be deleted or listed, ordered by the paths.
+     */
+    public Map<Path, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the entries that couldn't be deleted or listed, ordered by the paths.
+     */
+    public List<Path> getFailedPaths() {
+        return Collections.unmodifiableList(new ArrayList<>(failures.keySet()));
+    }
+
+    /**
+     * @return {@code true} if every entry has been deleted; {@code false} otherwise
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Throws an {@link IOException} if any entry couldn't be deleted.
+     * The individual errors are attached to it as suppressed exceptions.
+     *
+     * @return this object, if every entry has been deleted
+     * @throws IOException if at least one entry couldn't be deleted
+     */
+    public DeleteReport throwIfFailed() throws IOException {
+        if (isSuccessful())
+            return this;
+
+        IOException exception = new IOException(String.format(
+                "%d entries couldn't be deleted (%d deleted)", failures.size(), deletedEntries));
+        failures.values().forEach(exception::addSuppressed);
+        throw exception;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeleteReport{deleted=%d, failed=%d}", deletedEntries, failures.size());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.bulk;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of concurrent operations per {@link FileStore},
+ * so a slow volume can't occupy all the workers of a bulk operation.
+ *
+ * <p>
+ * The tasks over the limit wait in the queue of their file store, not on a worker; a finished task
+ * hands its permit to the next task of its store by submitting it to the end of the executor's queue,
+ * so the tasks of the other stores get their turn in between.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class FileStoreLimiter {
+
+    private static final int MAX_CACHED_DIRECTORIES = 4096;
+
+    private final Executor executor;
+    private final int permitsPerStore;
+    private final ConcurrentMap<Object, StoreQueue> queues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, Object> storeKeysByDirectory = new ConcurrentHashMap<>();
+
+    FileStoreLimiter(Executor executor, int permitsPerStore) {
+        if (permitsPerStore <= 0)
+            throw new IllegalArgumentException("permitsPerStore must be positive");
+        this.executor = executor;
+        this.permitsPerStore = permitsPerStore;
+    }
+
+    /**
+     * Runs the task on the executor as soon as the file store of the given path has a free permit.
+     * The task mustn't throw (e.g. a {@link java.util.concurrent.FutureTask}).
+     *
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    void execute(Path path, Runnable task) {
+        queueFor(path).submit(task);
+    }
+
+    private StoreQueue queueFor(Path path) {
+        Path absolute = path.toAbsolutePath();
+        Path directory = absolute.getParent() == null ? absolute : absolute.getParent();
+        Object storeKey = storeKeysByDirectory.get(directory);
+        if (storeKey == null) {
+            storeKey = resolveStoreKey(directory);
+            //the batches may touch any number of directories, the cache must not grow with them
+            if (storeKeysByDirectory.size() >= MAX_CACHED_DIRECTORIES)
+                storeKeysByDirectory.clear();
+            storeKeysByDirectory.put(directory, storeKey);
+        }
+        return queues.computeIfAbsent(storeKey, key -> new StoreQueue());
+    }
+
+    private static Object resolveStoreKey(Path directory) {
+        //the directory itself may not exist yet (e.g. mass directory creation)
+        for (Path current = directory; current != null; current = current.getParent()) {
+            if (Files.exists(current)) {
+                try {
+                    return Files.getFileStore(current);
+                } catch (IOException | SecurityException ignored) {
+                    break;
+                }
+            }
+        }
+        return directory.getRoot() == null ? directory.getFileSystem() : directory.getRoot();
+    }
+
+    /**
+     * The tasks of one file store; the fields are guarded by {@code this}.
+     */
+    private final class StoreQueue {
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+
+        void submit(Runnable task) {
+            synchronized (this) {
+                if (running >= permitsPerStore) {
+                    pending.add(task);
+                    return;
+                }
+                running++;
+            }
+            try {
+                executor.execute(() -> run(task));
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running--;
+                }
+                throw e;
+            }
+        }
+
+        private void run(Runnable task) {
+            Runnable current = task;
+            while (true) {
+                current.run();
+                Runnable next;
+                synchronized (this) {
+                    next = pending.poll();
+                    if (next == null) {
+                        running--;
+                        return;
+                    }
+                }
+                try {
+                    executor.execute(() -> run(next));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    //the executor has been shut down, the queued tasks are completed on this thread
+                    current = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.bulk;
+
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes directory trees concurrently.
+ *
+ * <p>
+ * The entries of a directory are deleted in batches, the batches of all the subtrees run in
+ * parallel. Every entry is first deleted as if it were a leaf; the ones that turn out to be
+ * non-empty directories are listed and deleted the same way, then removed bottom-up once they
+ * are empty. This way no entry is examined twice, and symbolic links are always deleted
+ * themselves, never followed.
+ *
+ * <p>
+ * A deletion doesn't stop at the first error: the failures are collected into a {@link DeleteReport},
+ * and only the directories on the paths of the failed entries are kept. The number of concurrent
+ * batches and the number of operations per second can be limited, so a deletion doesn't saturate
+ * a shared disk.
+ *
+ * <pre>{@code
+ * try (TreeDeleter deleter = new TreeDeleter(8, 5_000)) {
+ *     DeleteReport report = deleter.delete(oldBackups);
+ *     report.getFailures().forEach((path, error) -> ...);
+ * }
+ * }</pre>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class TreeDeleter implements AutoCloseable {
+
+    /**
+     * The default number of batches deleted concurrently.
+     */
+    public static final int DEFAULT_CONCURRENCY = 32;
+
+    /**
+     * The number of entries deleted by one task.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    private static final CompletableFuture<Boolean> CLEAN = CompletableFuture.completedFuture(true);
+    private static final CompletableFuture<Boolean> DIRTY = CompletableFuture.completedFuture(false);
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final Semaphore permits;
+    private final Throttle throttle;
+
+    /**
+     * Creates a {@link TreeDeleter} that deletes {@link #DEFAULT_CONCURRENCY} batches concurrently
+     * without limiting the operations per second.
+     */
+    public TreeDeleter() {
+        this(DEFAULT_CONCURRENCY, 0);
+    }
+
+    /**
+     * @param concurrency            the maximum number of batches deleted concurrently
+     * @param maxOperationsPerSecond the maximum number of delete and list operations per second;
+     *                               0 means unlimited
+     * @throws IllegalArgumentException if the concurrency is not positive or the operations per second is negative
+     */
+    public TreeDeleter(int concurrency, int maxOperationsPerSecond) {
+        this(IoExecutors.newIoExecutor("jfilegoodies-delete"), true, concurrency, maxOperationsPerSecond);
+    }
+
+    /**
+     * Creates a {@link TreeDeleter} that runs on the given executor; the executor is not
+     * shut down by {@link #close()}.
+     *
+     * @param executor               the executor of the deletions
+     * @param concurrency            the maximum number of batches deleted concurrently
+     * @param maxOperationsPerSecond the maximum number of delete and list operations per second;
+     *                               0 means unlimited
+     * @throws IllegalArgumentException if the concurrency is not positive or the operations per second is negative
+     */
+    public TreeDeleter(ExecutorService executor, int concurrency, int maxOperationsPerSecond) {
+        this(executor, false, concurrency, maxOperationsPerSecond);
+    }
+
+    private TreeDeleter(ExecutorService executor, boolean ownExecutor, int concurrency, int maxOperationsPerSecond) {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("concurrency must be positive");
+        if (maxOperationsPerSecond < 0)
+            throw new IllegalArgumentException("maxOperationsPerSecond mustn't be negative");
+
+        this.executor = Objects.requireNonNull(executor, "The executor mustn't be null");
+        this.ownExecutor = ownExecutor;
+        this.permits = new Semaphore(concurrency);
+        this.throttle = maxOperationsPerSecond == 0 ? null : new Throttle(maxOperationsPerSecond);
+    }
+
+    /**
+     * Deletes the file or the directory tree; symbolic links are deleted, never followed.
+     * A missing root is not a failure.
+     *
+     * @param root the root of the tree
+     * @return the report of the deletion
+     * @throws InterruptedIOException if the thread is interrupted; the deletion is cancelled
+     */
+    public DeleteReport delete(Path root) throws InterruptedIOException {
+        return deleteAll(Collections.singletonList(root));
+    }
+
+    /**
+     * Deletes the files and the directory trees concurrently, like {@link #delete(Path)}.
+     *
+     * @param roots the roots of the trees; null elements are ignored
+     * @return the aggregated report of the deletions
+     * @throws InterruptedIOException if the thread is interrupted; the deletion is cancelled
+     */
+    public DeleteReport deleteAll(Collection<? extends Path> roots) throws InterruptedIOException {
+        Deletion deletion = new Deletion();
+        List<Path> distinctRoots = new ArrayList<>(new LinkedHashSet<>(roots));
+        distinctRoots.removeIf(Objects::isNull);
+
+        List<CompletableFuture<Boolean>> batches = new ArrayList<>();
+        for (int from = 0; from < distinctRoots.size(); from += BATCH_SIZE) {
+            List<Path> batch = distinctRoots.subList(from, Math.min(distinctRoots.size(), from + BATCH_SIZE));
+            batches.add(deleteEntries(new ArrayList<>(batch), deletion));
+        }
+        return await(allClean(batches), deletion);
+    }
+
+    /**
+     * Deletes the content of the directory, but keeps the directory itself.
+     * A missing directory is not a failure.
+     *
+     * @param directory the directory to empty
+     * @return the report of the deletion
+     * @throws InterruptedIOException if the thread is interrupted; the deletion is cancelled
+     */
+    public DeleteReport deleteContents(Path directory) throws InterruptedIOException {
+        Deletion deletion = new Deletion();
+        return await(deleteDirectory(Objects.requireNonNull(directory), deletion, true), deletion);
+    }
+
+    /**
+     * Deletes the file or the directory tree asynchronously, like {@link #delete(Path)}.
+     *
+     * @param root the root of the tree
+     * @return the future of the report; cancelling it cancels the deletion
+     */
+    public CompletableFuture<DeleteReport> deleteAsync(Path root) {
+        Deletion deletion = new Deletion();
+        CompletableFuture<DeleteReport> report = deleteEntries(Collections.singletonList(Objects.requireNonNull(root)), deletion)
+                .thenApply(clean -> deletion.report());
+        report.whenComplete((result, error) -> {
+            if (report.isCancelled())
+                deletion.cancelled = true;
+        });
+        return report;
+    }
+
+    private DeleteReport await(CompletableFuture<Boolean> future, Deletion deletion) throws InterruptedIOException {
+        try {
+            future.get();
+            return deletion.report();
+        } catch (InterruptedException e) {
+            deletion.cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The deletion has been interrupted");
+        } catch (ExecutionException e) {
+            //the tasks report their errors into the deletion, so it's a bug
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Deletes the entries as leaves in one task; the non-empty directories among them are deleted as subtrees.
+     *
+     * @return the future that completes with {@code true} if every entry has been deleted
+     */
+    private CompletableFuture<Boolean> deleteEntries(List<Path> entries, Deletion deletion) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<Boolean>> subtrees = new ArrayList<>();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return deletion.interrupted(entries.get(0));
+            }
+            try {
+                for (Path entry : entries) {
+                    if (deletion.cancelled)
+                        return Collections.singletonList(DIRTY);
+                    try {
+                        throttle();
+                        Files.delete(entry);
+                        deletion.deleted.incrementAndGet();
+                    } catch (NoSuchFileException ignored) {
+                        //deleted in the meantime
+                    } catch (DirectoryNotEmptyException e) {
+                        subtrees.add(deleteDirectory(entry, deletion, false));
+                    } catch (IOException e) {
+                        deletion.fail(entry, e);
+                        subtrees.add(DIRTY);
+                    } catch (InterruptedException e) {
+                        return deletion.interrupted(entry);
+                    }
+                }
+            } finally {
+                permits.release();
+            }
+            return subtrees;
+        }, executor).thenCompose(TreeDeleter::allClean);
+    }
+
+    /**
+     * Lists the directory and deletes its entries in batches, then removes the directory if it's empty
+     * and it's not to be kept.
+     *
+     * @return the future that completes with {@code true} if every entry has been deleted
+     */
+    private CompletableFuture<Boolean> deleteDirectory(Path directory, Deletion deletion, boolean keep) {
+        return CompletableFuture.supplyAsync(() -> listAndSchedule(directory, deletion), executor)
+                .thenCompose(TreeDeleter::allClean)
+                .thenApplyAsync(clean -> clean && !keep ? removeEmptyDirectory(directory, deletion) : clean, executor);
+    }
+
+    private List<CompletableFuture<Boolean>> listAndSchedule(Path directory, Deletion deletion) {
+        List<CompletableFuture<Boolean>> batches = new ArrayList<>();
+        if (deletion.cancelled)
+            return Collections.singletonList(DIRTY);
+
+        List<Path> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            throttle();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    batch.add(entry);
+                    if (batch.size() == BATCH_SIZE) {
+                        batches.add(deleteEntries(batch, deletion));
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+            //deleted in the meantime
+        } catch (IOException e) {
+            deletion.fail(directory, e);
+            batches.add(DIRTY);
+        } catch (DirectoryIteratorException e) {
+            deletion.fail(directory, e.getCause());
+            batches.add(DIRTY);
+        } catch (InterruptedException e) {
+            batches.addAll(deletion.interrupted(directory));
+        }
+
+        if (!batch.isEmpty())
+            batches.add(deleteEntries(batch, deletion));
+        return batches;
+    }
+
+    private boolean removeEmptyDirectory(Path directory, Deletion deletion) {
+        if (deletion.cancelled)
+            return false;
+        try {
+            throttle();
+            Files.delete(directory);
+            deletion.deleted.incrementAndGet();
+            return true;
+        } catch (NoSuchFileException e) {
+            return true;
+        } catch (IOException e) {
+            deletion.fail(directory, e);
+            return false;
+        } catch (InterruptedException e) {
+            deletion.interrupted(directory);
+            return false;
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        if (throttle != null)
+            throttle.acquire();
+    }
+
+    private static CompletableFuture<Boolean> allClean(List<CompletableFuture<Boolean>> futures) {
+        if (futures.isEmpty())
+            return CLEAN;
+        if (futures.size() == 1)
+            return futures.get(0);
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    /**
+     * Shuts down the executor if it's created by this object. Deletions that are already
+     * running are completed.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor)
+            executor.shutdown();
+    }
+
+    /**
+     * The state of one deletion.
+     */
+    private static final class Deletion {
+        final AtomicLong deleted = new AtomicLong();
+        final Map<Path, IOException> failures = new ConcurrentHashMap<>();
+        volatile boolean cancelled;
+
+        void fail(Path path, IOException exception) {
+            failures.put(path, exception);
+        }
+
+        List<CompletableFuture<Boolean>> interrupted(Path path) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            fail(path, new InterruptedIOException("The deletion has been interrupted"));
+            return Collections.singletonList(DIRTY);
+        }
+
+        DeleteReport report() {
+            Map<Path, IOException> sorted = new TreeMap<>(Comparator.comparing(Path::toString));
+            sorted.putAll(failures);
+            return new DeleteReport(deleted.get(), sorted);
+        }
+    }
+
+    /**
+     * Spaces the operations evenly: each operation reserves the next free time slot.
+     */
+    private static final class Throttle {
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        Throttle(int operationsPerSecond) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / operationsPerSecond;
+        }
+
+        void acquire() throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (nextSlot - now < 0)
+                    nextSlot = now;
+                wait = nextSlot - now;
+                nextSlot += intervalNanos;
+            }
+            if (wait > 0)
+                TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the basic attributes of files, so repeated {@code exists()}/{@code isDirectory()}
+ * checks on the same paths don't need a system call (or a network round-trip on remote mounts)
+ * every time.
+ *
+ * <p>
+ * The attributes of a path are loaded by one {@link Files#readAttributes(Path, Class, java.nio.file.LinkOption...)}
+ * call and served from memory until they expire ({@code ttl}). If the cache grows beyond its
+ * {@code maxEntries}, the least recently used entries are evicted. The fact that a file doesn't
+ * exist is cached as well.
+ *
+ * <p>
+ * The cache can't notice the changes of the file system by itself; if your code modifies a file,
+ * call {@link #invalidate(Path)} (or {@link #invalidateTree(Path)} / {@link #invalidateAll()}).
+ *
+ * <pre>{@code
+ * FileAttributeCache cache = new FileAttributeCache(2, TimeUnit.SECONDS, 10_000);
+ * FileExplorer explorer = FileExplorers.get();
+ * explorer.setAttributeCache(cache);
+ * FileGoodies.isOSExecutable(file, cache);
+ * }</pre>
+ *
+ * <p>
+ * The class is thread-safe.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class FileAttributeCache {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final LruMap entries;
+    //the tokens of the running loads; an invalidation removes the tokens of its paths,
+    //so a load that overlaps it doesn't put back the stale attributes (guarded by the entries)
+    private final Map<Path, Object> loads = new HashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl        the time while the cached attributes are considered to be up to date
+     * @param unit       the unit of the {@code ttl}
+     * @param maxEntries the maximum number of paths that are cached
+     * @throws IllegalArgumentException if the {@code ttl} is negative or the {@code maxEntries} is not positive
+     */
+    public FileAttributeCache(long ttl, TimeUnit unit, int maxEntries) {
+        this(ttl, unit, maxEntries, System::nanoTime);
+    }
+
+    FileAttributeCache(long ttl, TimeUnit unit, int maxEntries, LongSupplier clock) {
+        if (ttl < 0)
+            throw new IllegalArgumentException("ttl mustn't be negative");
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive");
+
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LruMap(maxEntries);
+    }
+
+    /**
+     * Returns the attributes of the file (following symbolic links).
+     *
+     * @param path the path of the file
+     * @return the attributes; an empty optional if the file doesn't exist or can't be accessed
+     */
+    public Optional<BasicFileAttributes> getAttributes(Path path) {
+        Path key = keyOf(path);
+        long now = clock.getAsLong();
+        Object token = new Object();
+        synchronized (entries) {
+            CachedAttributes entry = entries.get(key);
+            if (entry != null && now - entry.loadTime < ttlNanos)
+                return Optional.ofNullable(entry.attributes);
+            loads.put(key, token);
+        }
+
+        BasicFileAttributes attributes = load(key);
+        synchronized (entries) {
+            //not if the path has been invalidated (or loaded again) in the meantime
+            if (loads.remove(key, token))
+                entries.put(key, new CachedAttributes(attributes, now));
+        }
+        return Optional.ofNullable(attributes);
+    }
+
+    /**
+     * Returns the attributes of the file (following symbolic links).
+     *
+     * @param file the file; may be null
+     * @return the attributes; an empty optional if the file is null, has an invalid path,
+     *         doesn't exist or can't be accessed
+     */
+    public Optional<BasicFileAttributes> getAttributes(File file) {
+        if (file == null)
+            return Optional.empty();
+        try {
+            return getAttributes(file.toPath());
+        } catch (InvalidPathException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The cached equivalent of {@link File#exists()}.
+     */
+    public boolean exists(File file) {
+        return getAttributes(file).isPresent();
+    }
+
+    /**
+     * The cached equivalent of {@link File#isDirectory()}.
+     */
+    public boolean isDirectory(File file) {
+        return getAttributes(file).map(BasicFileAttributes::isDirectory).orElse(false);
+    }
+
+    /**
+     * The cached equivalent of {@link File#isFile()}.
+     */
+    public boolean isFile(File file) {
+        return getAttributes(file).map(BasicFileAttributes::isRegularFile).orElse(false);
+    }
+
+    /**
+     * The cached equivalent of {@link File#length()}.
+     */
+    public long length(File file) {
+        return getAttributes(file).map(BasicFileAttributes::size).orElse(0L);
+    }
+
+    /**
+     * Removes the cached attributes of the given path.
+     *
+     * @param path the path of the file
+     */
+    public void invalidate(Path path) {
+        Path key = keyOf(path);
+        synchronized (entries) {
+            loads.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes the cached attributes of the given file.
+     *
+     * @param file the file; may be null (then the method does nothing)
+     */
+    public void invalidate(File file) {
+        if (file != null)
+            invalidate(file.toPath());
+    }
+
+    /**
+     * Removes the cached attributes of the given path and all the paths under it.
+     *
+     * @param root the root of the tree
+     */
+    public void invalidateTree(Path root) {
+        Path key = keyOf(root);
+        synchronized (entries) {
+            loads.keySet().removeIf(path -> path.startsWith(key));
+            entries.keySet().removeIf(path -> path.startsWith(key));
+        }
+    }
+
+    /**
+     * Removes the cached attributes of the given paths and all the paths under them.
+     * It's cheaper than calling {@link #invalidateTree(Path)} for every root one by one.
+     *
+     * @param roots the roots of the trees
+     */
+    public void invalidateTrees(Collection<? extends Path> roots) {
+        if (roots.isEmpty())
+            return;
+
+        Set<Path> keys = new HashSet<>();
+        roots.forEach(root -> keys.add(keyOf(root)));
+        synchronized (entries) {
+            removeUnder(loads.keySet().iterator(), keys);
+            removeUnder(entries.keySet().iterator(), keys);
+        }
+    }
+
+    private static void removeUnder(Iterator<Path> iterator, Set<Path> roots) {
+        while (iterator.hasNext()) {
+            for (Path current = iterator.next(); current != null; current = current.getParent()) {
+                if (roots.contains(current)) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached attributes.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            loads.clear();
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the number of currently cached paths (including the expired ones that haven't been evicted yet)
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static Path keyOf(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static BasicFileAttributes load(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FileAttributeCache{ttl=%dms, maxEntries=%d, size=%d}",
+                TimeUnit.NANOSECONDS.toMillis(ttlNanos), maxEntries, size());
+    }
+
+    /**
+     * The entries in access order; the least recently used one is evicted above the limit.
+     */
+    private static final class LruMap extends LinkedHashMap<Path, CachedAttributes> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, CachedAttributes> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static final class CachedAttributes {
+        private final BasicFileAttributes attributes;
+        private final long loadTime;
+
+        private CachedAttributes(BasicFileAttributes attributes, long loadTime) {
+            this.attributes = attributes;
+            this.loadTime = loadTime;
+        }
+    }
+}
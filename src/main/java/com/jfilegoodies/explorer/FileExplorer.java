@@ -16,11 +16,16 @@
 
 package com.jfilegoodies.explorer;
 
+import com.jfilegoodies.cache.FileAttributeCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -41,6 +46,8 @@ public abstract class FileExplorer {
 
     private static final Logger logger = LoggerFactory.getLogger(FileExplorer.class);
 
+    private volatile FileAttributeCache attributeCache;
+
     protected abstract String createOpenCommand();
     protected abstract String createOpenDirCommand(File file);
     protected abstract String createOpenSelectCommand(File file);
@@ -50,14 +57,15 @@ public abstract class FileExplorer {
      *
      * <p>
      * Note:
-     * <i>On Linux, 'nautilus' should be installed on the system (if it's not by default) <span style='color:red'>sudo apt install nautilus</span></i>
+     * <i>On Linux, 'nautilus' should be installed on the system (if it's not by default)
+     * <span style='color:red'>sudo apt install nautilus</span></i>
      *
      * @return {@code true} if the window opened; {@code false} otherwise
      * @throws IOException if some I/O exception occurs
      * @since 1.0
      */
     public boolean open() throws IOException {
-        return executeWithRuntime(createOpenCommand());
+        return execute(createOpenCommand());
     }
 
     /**
@@ -73,13 +81,34 @@ public abstract class FileExplorer {
      * @since 1.0
      */
     public boolean openDir(File file) throws IOException {
-        if (file == null || !file.exists() || !file.isDirectory()) {
+        if (file == null || !isDirectory(file)) {
             return false;
         }
 
         String cmd = createOpenDirCommand(file);
         logger.debug("Open dir command created: '{}'", cmd);
-        return executeWithRuntime(cmd);
+        return execute(cmd);
+    }
+
+    /**
+     * Opens the gui file-explorer window where the specified directory is opened,
+     * like {@link #openDir(File)}, but the directory is checked on the {@link java.nio.file.FileSystem}
+     * of the given {@link Path}.
+     *
+     * @param path the path of the directory; may be null (then the method will immediately return)
+     * @return {@code true} if the window is opened; {@code false} otherwise.
+     * @throws IOException if some I/O exception occurs
+     * @see #openDir(File)
+     * @since 1.3
+     */
+    public boolean openDirPath(Path path) throws IOException {
+        if (path == null || !isDirectory(path)) {
+            return false;
+        }
+
+        String cmd = createOpenDirCommand(toFile(path));
+        logger.debug("Open dir command created: '{}'", cmd);
+        return execute(cmd);
     }
 
     /**
@@ -89,7 +118,8 @@ public abstract class FileExplorer {
      * If the file doesn't exist then it will immediately return with {@code false}.
      * <p>
      * Note:
-     * <i>On Linux, 'nautilus' should be installed on the system (if it's not by default) <span style="color:red">sudo apt install nautilus</span></i>
+     * <i>On Linux, 'nautilus' should be installed on the system (if it's not by default)
+     * <span style="color:red">sudo apt install nautilus</span></i>
      *
      * @param file the file object that represents the file or directory; may be null (then the method will immediately return)
      * @return {@code true} if the window is opened; {@code false} otherwise
@@ -97,16 +127,96 @@ public abstract class FileExplorer {
      * @since 1.0
      */
     public boolean openSelect(File file) throws IOException {
-        if (file == null || !file.exists()) {
+        if (file == null || !exists(file)) {
             return false;
         }
 
         String cmd = createOpenSelectCommand(file);
         logger.debug("Open&select command created: '{}'", cmd);
-        return executeWithRuntime(cmd);
+        return execute(cmd);
+    }
+
+    /**
+     * Opens the gui file-explorer window where the specified file is selected,
+     * like {@link #openSelect(File)}, but the file is checked on the {@link java.nio.file.FileSystem}
+     * of the given {@link Path}.
+     *
+     * @param path the path of the file or directory; may be null (then the method will immediately return)
+     * @return {@code true} if the window is opened; {@code false} otherwise
+     * @throws IOException if some I/O exception occurs
+     * @see #openSelect(File)
+     * @since 1.3
+     */
+    public boolean openSelectPath(Path path) throws IOException {
+        if (path == null || !exists(path)) {
+            return false;
+        }
+
+        String cmd = createOpenSelectCommand(toFile(path));
+        logger.debug("Open&select command created: '{}'", cmd);
+        return execute(cmd);
+    }
+
+    /**
+     * Sets the {@link FileAttributeCache} that is used for checking the files before opening them.
+     *
+     * @param attributeCache the cache; may be null (then the file system is queried directly)
+     * @since 1.3
+     */
+    public void setAttributeCache(FileAttributeCache attributeCache) {
+        this.attributeCache = attributeCache;
+    }
+
+    /**
+     * @return the {@link FileAttributeCache} used by this explorer; may be null
+     * @since 1.3
+     */
+    public FileAttributeCache getAttributeCache() {
+        return attributeCache;
+    }
+
+    private boolean exists(File file) {
+        FileAttributeCache cache = attributeCache;
+        return cache == null ? file.exists() : cache.exists(file);
+    }
+
+    private boolean isDirectory(File file) {
+        FileAttributeCache cache = attributeCache;
+        return cache == null ? file.isDirectory() : cache.isDirectory(file);
+    }
+
+    private boolean exists(Path path) {
+        FileAttributeCache cache = attributeCache;
+        return cache == null ? Files.exists(path) : cache.getAttributes(path).isPresent();
     }
 
-    private boolean executeWithRuntime(String command) throws IOException {
+    private boolean isDirectory(Path path) {
+        FileAttributeCache cache = attributeCache;
+        return cache == null ? Files.isDirectory(path) : cache.getAttributes(path).map(BasicFileAttributes::isDirectory).orElse(false);
+    }
+
+    /**
+     * Paths of other file systems (e.g. in-memory ones) can't be converted to {@link File}s,
+     * the commands of those are created from the string form of the path.
+     */
+    private static File toFile(Path path) {
+        return path.getFileSystem() == FileSystems.getDefault() ? path.toFile() : new File(path.toString());
+    }
+
+    /**
+     * Executes a command created by the {@code create...Command} methods.
+     *
+     * <p>
+     * By default the command is executed as a new process, and the method waits at most 1 second
+     * for it. Subclasses may override it to execute the command some other way; for example
+     * {@link FileExplorers.RecordingExplorer} only records the commands.
+     *
+     * @param command the command to execute
+     * @return {@code true} if the command is executed; {@code false} otherwise
+     * @throws IOException if some I/O exception occurs
+     * @since 1.3
+     */
+    protected boolean execute(String command) throws IOException {
         try {
             Process process = Runtime.getRuntime().exec(command);
             process.waitFor(1, TimeUnit.SECONDS);
@@ -16,11 +16,18 @@
 
 package com.jfilegoodies.explorer;
 
+import com.jfilegoodies.cache.FileAttributeCache;
 import com.jfilegoodies.util.OsUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides factory/utility methods for {@link FileExplorer} objects.
@@ -71,6 +78,16 @@ public final class FileExplorers {
             return null;
         }
 
+        @Override
+        public void setAttributeCache(FileAttributeCache attributeCache) {
+            this.fileExplorer.setAttributeCache(attributeCache);
+        }
+
+        @Override
+        public FileAttributeCache getAttributeCache() {
+            return this.fileExplorer.getAttributeCache();
+        }
+
         @Override
         public boolean open() {
             try {
@@ -97,6 +114,112 @@ public final class FileExplorers {
                 return false;
             }
         }
+
+        @Override
+        public boolean openDirPath(Path path) {
+            try {
+                return this.fileExplorer.openDirPath(path);
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean openSelectPath(Path path) {
+            try {
+                return this.fileExplorer.openSelectPath(path);
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A RecordingExplorer is a {@link FileExplorer} that doesn't start any process, it just records
+     * the commands that another {@link FileExplorer} would execute.
+     *
+     * <p>
+     * The files are checked the same way as by any other {@link FileExplorer}; with {@link Path}s of
+     * an in-memory file system (see {@link com.jfilegoodies.memory.MemoryFileSystems}) neither the disk
+     * nor the OS is touched, so it's useful for tests and dry-runs.
+     *
+     * <p>
+     * To create an instance of this class you can use the {@link FileExplorers#recording()} or
+     * the {@link FileExplorers#recording(FileExplorer)} method.
+     *
+     * <pre>{@code
+     * FileExplorers.RecordingExplorer explorer = FileExplorers.recording(new LinuxFileExplorer());
+     * explorer.openDirPath(directory);
+     * List<String> commands = explorer.getCommands(); //["xdg-open /path/of/directory"]
+     * }</pre>
+     *
+     * @since 1.3
+     */
+    public static final class RecordingExplorer extends FileExplorer {
+        private final FileExplorer commandSource;
+        private final Queue<String> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicLong commandCount = new AtomicLong();
+
+        private RecordingExplorer(FileExplorer commandSource) {
+            this.commandSource = Objects.requireNonNull(commandSource, "The commandSource object mustn't be null");
+        }
+
+        @Override
+        protected String createOpenCommand() {
+            return commandSource.createOpenCommand();
+        }
+
+        @Override
+        protected String createOpenDirCommand(File file) {
+            return commandSource.createOpenDirCommand(file);
+        }
+
+        @Override
+        protected String createOpenSelectCommand(File file) {
+            return commandSource.createOpenSelectCommand(file);
+        }
+
+        /**
+         * Records the command instead of executing it.
+         *
+         * @return {@code true} if the command is recorded; {@code false} if the command source
+         * doesn't create commands (e.g. it's a {@link LazyExplorer})
+         */
+        @Override
+        protected boolean execute(String command) {
+            if (command == null)
+                return false;
+
+            commands.add(command);
+            commandCount.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * @return the recorded commands in the order they were executed
+         * @since 1.3
+         */
+        public List<String> getCommands() {
+            return new ArrayList<>(commands);
+        }
+
+        /**
+         * @return the count of the commands recorded since the creation of this explorer
+         * (including the ones that were removed by {@link #clear()})
+         * @since 1.3
+         */
+        public long getCommandCount() {
+            return commandCount.get();
+        }
+
+        /**
+         * Removes the recorded commands.
+         *
+         * @since 1.3
+         */
+        public void clear() {
+            commands.clear();
+        }
     }
 
     private static final class NullFileExplorer extends FileExplorer {
@@ -129,6 +252,16 @@ public final class FileExplorers {
         public boolean openSelect(File file) {
             return false;
         }
+
+        @Override
+        public boolean openDirPath(Path path) {
+            return false;
+        }
+
+        @Override
+        public boolean openSelectPath(Path path) {
+            return false;
+        }
     }
 
     /**
@@ -178,4 +311,29 @@ public final class FileExplorers {
     public static LazyExplorer notThrowsException(FileExplorer explorer) {
         return new LazyExplorer(explorer);
     }
+
+    /**
+     * Creates a {@link RecordingExplorer} that records the commands of the {@link FileExplorer}
+     * implementation that is compatible with the current OS.
+     *
+     * @return the {@link RecordingExplorer} object.
+     * @see #get()
+     * @since 1.3
+     */
+    public static RecordingExplorer recording() {
+        return recording(get());
+    }
+
+    /**
+     * Creates a {@link RecordingExplorer} that records the commands of the given {@link FileExplorer}
+     * instead of executing them.
+     *
+     * @param commandSource the {@link FileExplorer} that creates the commands; shouldn't be null
+     * @return the {@link RecordingExplorer} object.
+     * @throws NullPointerException if the commandSource is null
+     * @since 1.3
+     */
+    public static RecordingExplorer recording(FileExplorer commandSource) {
+        return new RecordingExplorer(commandSource);
+    }
 }
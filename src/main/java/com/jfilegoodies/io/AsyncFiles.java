@@ -0,0 +1,453 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reads and writes whole files asynchronously with {@link AsynchronousFileChannel}s; every operation
+ * returns a {@link CompletableFuture} instead of blocking the caller.
+ *
+ * <pre>{@code
+ * try (AsyncFiles files = new AsyncFiles()) {
+ *     CompletableFuture<byte[]> content = files.readAllBytes(Paths.get("data.bin"));
+ *     files.append(Paths.get("events.log"), line).join();
+ * }
+ * }</pre>
+ *
+ * <p>
+ * The outstanding operations don't occupy a thread each: the transfers are done chunk by chunk through a
+ * shared pool of direct buffers, and the chunks are performed by the executor of the channels (which also
+ * runs the completion of the futures, so heavy follow-up work should use the {@code *Async} stages).
+ *
+ * <p>
+ * {@link AsynchronousFileChannel} has no vectored (scatter/gather) operations, so the small requests are batched
+ * by coalescing instead: the appends to the same file that arrive while a write is in flight are gathered into one
+ * buffer and written by a single operation, and the channel stays open while the file is being appended to.
+ * The appends of this object to a file are performed in the order of the calls.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class AsyncFiles implements AutoCloseable {
+
+    /**
+     * The default size of the pooled direct buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum number of the idle buffers kept in the pool.
+     */
+    public static final int DEFAULT_POOLED_BUFFERS = 64;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final DirectBufferPool buffers;
+    private final ConcurrentMap<Path, Appender> appenders = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates an {@link AsyncFiles} that performs the operations on its own I/O executor
+     * (see {@link IoExecutors#newIoExecutor(String)}) with the default buffers.
+     */
+    public AsyncFiles() {
+        this(IoExecutors.newIoExecutor("jfilegoodies-async-io"), true, DEFAULT_BUFFER_SIZE, DEFAULT_POOLED_BUFFERS);
+    }
+
+    /**
+     * @param executor         the executor of the channels; not shut down by {@link #close()}
+     * @param bufferSize       the size of the pooled direct buffers
+     * @param maxPooledBuffers the maximum number of the idle buffers kept in the pool
+     * @throws IllegalArgumentException if the {@code bufferSize} is not positive
+     */
+    public AsyncFiles(ExecutorService executor, int bufferSize, int maxPooledBuffers) {
+        this(executor, false, bufferSize, maxPooledBuffers);
+    }
+
+    private AsyncFiles(ExecutorService executor, boolean ownsExecutor, int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be positive");
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.buffers = new DirectBufferPool(bufferSize, maxPooledBuffers);
+    }
+
+    /**
+     * Reads the whole content of the file.
+     *
+     * @param file the file to read
+     * @return the future of the content
+     */
+    public CompletableFuture<byte[]> readAllBytes(Path file) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        try {
+            new ReadAll(open(file, EnumSet.of(StandardOpenOption.READ)), result).start();
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the content into the file, creating or truncating it first.
+     *
+     * @param file    the file to write
+     * @param content the new content of the file
+     * @return the future that completes when the content has been written
+     */
+    public CompletableFuture<Void> write(Path file, byte[] content) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try {
+            channel = open(file, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING));
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        new GatherWrite(channel, 0, Collections.singletonList(content)).start().whenComplete((written, failure) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+            }
+            if (failure != null)
+                result.completeExceptionally(failure);
+            else
+                result.complete(null);
+        });
+        return result;
+    }
+
+    /**
+     * Appends the content to the end of the file, creating it if it doesn't exist. The appends that arrive
+     * while a previous one is being written are coalesced into a single write.
+     *
+     * <p>
+     * <i>Note: the end of the file is determined when the file is opened for a series of appends; the file
+     * must not be appended to by others (e.g. by another {@link AsyncFiles} object) at the same time.</i>
+     *
+     * @param file    the file to append to
+     * @param content the content to append
+     * @return the future that completes when the content has been written
+     */
+    public CompletableFuture<Void> append(Path file, byte[] content) {
+        PendingAppend append = new PendingAppend(content);
+        if (closed) {
+            append.result.completeExceptionally(new IOException("the AsyncFiles has been closed"));
+            return append.result;
+        }
+
+        Path key = file.toAbsolutePath().normalize();
+        while (!appenders.computeIfAbsent(key, Appender::new).enqueue(append)) {
+            //the appender has just been retired; a new one takes its place
+        }
+        return append.result;
+    }
+
+    private AsynchronousFileChannel open(Path file, EnumSet<StandardOpenOption> options) throws IOException {
+        if (closed)
+            throw new IOException("the AsyncFiles has been closed");
+        return AsynchronousFileChannel.open(file, options, executor);
+    }
+
+    /**
+     * Shuts down the own executor (if it has been created by this object) and drops the pooled buffers.
+     * The operations that are still running may fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsExecutor)
+            executor.shutdown();
+        buffers.clear();
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            //the operation has already failed
+        }
+    }
+
+    /**
+     * Reads a file chunk by chunk through a pooled buffer.
+     */
+    private final class ReadAll implements CompletionHandler<Integer, Void> {
+
+        private final AsynchronousFileChannel channel;
+        private final CompletableFuture<byte[]> result;
+        private ByteBuffer buffer;
+        private byte[] content;
+        private int length;
+
+        ReadAll(AsynchronousFileChannel channel, CompletableFuture<byte[]> result) {
+            this.channel = channel;
+            this.result = result;
+        }
+
+        void start() {
+            try {
+                long size = channel.size();
+                if (size > MAX_ARRAY_SIZE)
+                    throw new IOException("the file is too large to be read into an array: " + size + " bytes");
+                content = new byte[(int) size];
+            } catch (IOException e) {
+                closeQuietly(channel);
+                result.completeExceptionally(e);
+                return;
+            }
+            buffer = buffers.acquire();
+            channel.read(buffer, 0, null, this);
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            try {
+                if (read < 0) {
+                    finish();
+                    return;
+                }
+
+                buffer.flip();
+                if (length + read > content.length) {
+                    //the file has grown since its size has been read
+                    if (length + read > MAX_ARRAY_SIZE)
+                        throw new IOException("the file is too large to be read into an array");
+                    content = Arrays.copyOf(content, (int) Math.min(MAX_ARRAY_SIZE, Math.max(length + read, 2L * content.length)));
+                }
+                buffer.get(content, length, read);
+                length += read;
+                buffer.clear();
+                channel.read(buffer, length, null, this);
+            } catch (IOException | RuntimeException e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void failed(Throwable failure, Void attachment) {
+            buffers.release(buffer);
+            closeQuietly(channel);
+            result.completeExceptionally(failure);
+        }
+
+        private void finish() throws IOException {
+            buffers.release(buffer);
+            channel.close();
+            result.complete(length == content.length ? content : Arrays.copyOf(content, length));
+        }
+    }
+
+    /**
+     * Writes a sequence of arrays through a pooled buffer, filling every buffer as much as possible.
+     */
+    private final class GatherWrite implements CompletionHandler<Integer, Void> {
+
+        private final AsynchronousFileChannel channel;
+        private final List<byte[]> parts;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private long position;
+        private long written;
+        private int partIndex;
+        private int partOffset;
+        private ByteBuffer buffer;
+
+        GatherWrite(AsynchronousFileChannel channel, long position, List<byte[]> parts) {
+            this.channel = channel;
+            this.position = position;
+            this.parts = parts;
+        }
+
+        /**
+         * @return the future of the number of the written bytes
+         */
+        CompletableFuture<Long> start() {
+            buffer = buffers.acquire();
+            buffer.limit(0);
+            writeNext();
+            return result;
+        }
+
+        private void writeNext() {
+            if (!buffer.hasRemaining()) {
+                fill();
+                if (!buffer.hasRemaining()) {
+                    buffers.release(buffer);
+                    result.complete(written);
+                    return;
+                }
+            }
+            try {
+                channel.write(buffer, position, null, this);
+            } catch (RuntimeException e) {
+                failed(e, null);
+            }
+        }
+
+        private void fill() {
+            buffer.clear();
+            while (buffer.hasRemaining() && partIndex < parts.size()) {
+                byte[] part = parts.get(partIndex);
+                int count = Math.min(buffer.remaining(), part.length - partOffset);
+                buffer.put(part, partOffset, count);
+                partOffset += count;
+                if (partOffset == part.length) {
+                    partIndex++;
+                    partOffset = 0;
+                }
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void completed(Integer count, Void attachment) {
+            position += count;
+            written += count;
+            writeNext();
+        }
+
+        @Override
+        public void failed(Throwable failure, Void attachment) {
+            buffers.release(buffer);
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private static final class PendingAppend {
+        final byte[] content;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingAppend(byte[] content) {
+            this.content = content;
+        }
+    }
+
+    /**
+     * Serializes the appends of a file and coalesces the queued ones; the channel is kept open
+     * until the queue runs empty, then the appender retires.
+     */
+    private final class Appender {
+
+        private final Path path;
+        private final Deque<PendingAppend> pending = new ArrayDeque<>();
+        private AsynchronousFileChannel channel;
+        private long position;
+        private boolean writing;
+        private boolean retired;
+
+        Appender(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * @return {@code false} if the appender has retired and can't take the append
+         */
+        boolean enqueue(PendingAppend append) {
+            synchronized (this) {
+                if (retired)
+                    return false;
+                pending.add(append);
+                if (writing)
+                    return true;
+                writing = true;
+            }
+            writeNextBatch();
+            return true;
+        }
+
+        private void writeNextBatch() {
+            while (true) {
+                List<PendingAppend> batch = new ArrayList<>();
+                synchronized (this) {
+                    long bytes = 0;
+                    while (!pending.isEmpty()
+                            && (batch.isEmpty() || bytes + pending.peek().content.length <= buffers.getBufferSize())) {
+                        PendingAppend append = pending.poll();
+                        batch.add(append);
+                        bytes += append.content.length;
+                    }
+                    if (batch.isEmpty()) {
+                        writing = false;
+                        retired = true;
+                        appenders.remove(path, this);
+                        if (channel != null)
+                            closeQuietly(channel);
+                        return;
+                    }
+                }
+
+                try {
+                    if (channel == null) {
+                        channel = open(path, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+                        position = channel.size();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    channel = null;
+                    for (PendingAppend append : batch)
+                        append.result.completeExceptionally(e);
+                    continue;
+                }
+
+                List<byte[]> parts = new ArrayList<>(batch.size());
+                for (PendingAppend append : batch)
+                    parts.add(append.content);
+                new GatherWrite(channel, position, parts).start().whenComplete((written, failure) -> {
+                    if (failure != null) {
+                        //the end of the file is unknown after a partial write; it's read again on reopening
+                        closeQuietly(channel);
+                        channel = null;
+                        for (PendingAppend append : batch)
+                            append.result.completeExceptionally(failure);
+                    } else {
+                        position += written;
+                        for (PendingAppend append : batch)
+                            append.result.complete(null);
+                    }
+                    writeNextBatch();
+                });
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits a (huge) text file into byte ranges that are aligned to line boundaries,
+ * so the lines can be processed in parallel.
+ *
+ * <p>
+ * The lines are decoded directly from memory-mapped regions of the file. The {@link Spliterator}
+ * behind {@link #lines()} splits its byte range in half (at the next line feed) whenever a parallel
+ * stream asks for it, so {@code parallel()} scales with the number of cores:
+ * <pre>{@code
+ * try (LineChunks chunks = LineChunks.open(Paths.get("huge.csv"), StandardCharsets.UTF_8)) {
+ *     long errors = chunks.lines().parallel().filter(line -> line.contains("ERROR")).count();
+ * }
+ * }</pre>
+ * If you want to distribute the work yourself, {@link #split(long)} returns fixed-size {@link Chunk}s.
+ *
+ * <p>
+ * Only ASCII-compatible charsets (e.g. UTF-8) are supported. A trailing carriage return is removed from every line.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class LineChunks implements AutoCloseable {
+
+    /**
+     * The default minimum size of the ranges the spliterators split into.
+     */
+    public static final long DEFAULT_MIN_SPLIT_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int SEARCH_BUFFER_SIZE = 8 * 1024;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final long size;
+    private final long minSplitSize;
+
+    private LineChunks(FileChannel channel, Charset charset, long minSplitSize) throws IOException {
+        this.channel = channel;
+        this.charset = charset;
+        this.size = channel.size();
+        this.minSplitSize = minSplitSize;
+    }
+
+    /**
+     * Opens a file for chunked reading.
+     *
+     * @param file    the file
+     * @param charset the charset of the file; must be ASCII-compatible
+     * @return the object that provides the chunks; it should be closed after the work is done
+     * @throws IOException              if the file can't be opened
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible
+     */
+    public static LineChunks open(Path file, Charset charset) throws IOException {
+        return open(file, charset, DEFAULT_MIN_SPLIT_SIZE);
+    }
+
+    /**
+     * Opens a file for chunked reading.
+     *
+     * @param file         the file
+     * @param charset      the charset of the file; must be ASCII-compatible
+     * @param minSplitSize the size under which the spliterators don't split their ranges
+     * @return the object that provides the chunks; it should be closed after the work is done
+     * @throws IOException              if the file can't be opened
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible or the {@code minSplitSize} is not positive
+     */
+    public static LineChunks open(Path file, Charset charset, long minSplitSize) throws IOException {
+        Lines.requireAsciiCompatible(charset);
+        if (minSplitSize <= 0)
+            throw new IllegalArgumentException("minSplitSize must be positive");
+        return new LineChunks(FileChannel.open(file, StandardOpenOption.READ), charset, minSplitSize);
+    }
+
+    /**
+     * Returns a stream of the lines of the UTF-8 encoded file that closes the file when the stream is closed.
+     *
+     * <pre>{@code
+     * try (Stream<String> lines = LineChunks.lines(Paths.get("huge.log"))) {
+     *     lines.parallel().forEach(...);
+     * }
+     * }</pre>
+     *
+     * @param file the file
+     * @return the stream of the lines
+     * @throws IOException if the file can't be opened
+     */
+    public static Stream<String> lines(Path file) throws IOException {
+        LineChunks chunks = open(file, StandardCharsets.UTF_8);
+        return chunks.lines().onClose(chunks::close);
+    }
+
+    /**
+     * @return the stream of all the lines of the file; splittable for parallel processing
+     */
+    public Stream<String> lines() {
+        return StreamSupport.stream(new LineSpliterator(0, size), false);
+    }
+
+    /**
+     * Splits the file into chunks of approximately {@code chunkSize} bytes; every chunk (except the last one)
+     * ends right after a line feed.
+     *
+     * @param chunkSize the target size of a chunk in bytes
+     * @return the chunks in the order of their position in the file
+     * @throws IOException              if some I/O exception occurs
+     * @throws IllegalArgumentException if the {@code chunkSize} is not positive
+     */
+    public List<Chunk> split(long chunkSize) throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive");
+        if (size == 0)
+            return Collections.emptyList();
+
+        List<Chunk> chunks = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, size / chunkSize + 1));
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : lineEndAfter(start + chunkSize, size);
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the size of the file at the time it has been opened
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the offset right after the first line feed at or after the given offset;
+     * or the {@code limit} if there's no line feed before it.
+     */
+    private long lineEndAfter(long offset, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+        long position = offset;
+        while (position < limit) {
+            buffer.clear();
+            if (limit - position < buffer.capacity())
+                buffer.limit((int) (limit - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == Lines.LF)
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return limit;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A byte range of the file that contains whole lines.
+     */
+    public final class Chunk {
+        private final long start;
+        private final long end;
+
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return the offset of the first byte of the chunk
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return the offset after the last byte of the chunk
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the stream of the lines of the chunk
+         */
+        public Stream<String> lines() {
+            return StreamSupport.stream(new LineSpliterator(start, end), false);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Chunk{start=%d, end=%d}", start, end);
+        }
+    }
+
+    private final class LineSpliterator implements Spliterator<String> {
+
+        private long position;
+        private final long end;
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+
+        private LineSpliterator(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (position >= end)
+                return false;
+            try {
+                action.accept(nextLine());
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super String> action) {
+            try {
+                while (position < end)
+                    action.accept(nextLine());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String nextLine() throws IOException {
+            while (true) {
+                if (window == null || position < windowStart || position >= windowStart + window.limit())
+                    mapWindow();
+
+                int from = (int) (position - windowStart);
+                int limit = window.limit();
+                for (int i = from; i < limit; i++) {
+                    if (window.get(i) == Lines.LF) {
+                        position = windowStart + i + 1;
+                        return Lines.decode(window, from, i, charset);
+                    }
+                }
+
+                if (windowStart + limit >= end) {
+                    //the last line of the file without a line feed
+                    position = end;
+                    return Lines.decode(window, from, limit, charset);
+                }
+
+                //the line continues after the window; remapping from the start of the line
+                if (from == 0) {
+                    if (windowSize == Integer.MAX_VALUE)
+                        throw new IOException("The line at offset " + position + " is too long");
+                    windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+                }
+                window = null;
+            }
+        }
+
+        private void mapWindow() throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, end - position));
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            long remaining = end - position;
+            if (remaining < minSplitSize * 2)
+                return null;
+
+            long splitPoint;
+            try {
+                splitPoint = lineEndAfter(position + remaining / 2, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (splitPoint >= end)
+                return null;
+
+            LineSpliterator prefix = new LineSpliterator(position, splitPoint);
+            position = splitPoint;
+            window = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
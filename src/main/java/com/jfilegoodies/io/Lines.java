@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Helpers for scanning lines in byte buffers.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class Lines {
+
+    static final byte LF = '\n';
+    static final byte CR = '\r';
+
+    private Lines() {
+    }
+
+    /**
+     * Checks that the line feed is encoded as a single {@code 0x0A} byte in the charset
+     * (e.g. UTF-8, ISO-8859-x, US-ASCII), so lines can be found by scanning the raw bytes.
+     *
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible
+     */
+    static Charset requireAsciiCompatible(Charset charset) {
+        if (!Arrays.equals("\n".getBytes(charset), new byte[]{LF}))
+            throw new IllegalArgumentException(String.format(
+                    "Only ASCII-compatible charsets are supported, '%s' is not", charset.name()));
+        return charset;
+    }
+
+    /**
+     * Decodes the bytes between the given absolute indexes of the buffer, without the trailing carriage return.
+     */
+    static String decode(ByteBuffer buffer, int from, int to, Charset charset) {
+        if (to > from && buffer.get(to - 1) == CR)
+            to--;
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(to).position(from);
+        return charset.decode(slice).toString();
+    }
+
+    /**
+     * Decodes the bytes of the array, without the trailing carriage return.
+     */
+    static String decode(byte[] bytes, int length, Charset charset) {
+        return decode(bytes, 0, length, charset);
+    }
+
+    /**
+     * Decodes the bytes between the given indexes of the array, without the trailing carriage return.
+     */
+    static String decode(byte[] bytes, int from, int to, Charset charset) {
+        if (to > from && bytes[to - 1] == CR)
+            to--;
+        return new String(bytes, from, to - from, charset);
+    }
+}
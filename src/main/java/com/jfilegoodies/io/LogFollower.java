@@ -0,0 +1,434 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import com.jfilegoodies.FileGoodies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads and follows a growing log file, like the unix {@code tail -f} command.
+ *
+ * <p>
+ * The file is read in chunks through one reusable direct buffer (a follower that polls frequently
+ * mustn't pile up memory mappings, which are released only by the garbage collector). New lines are
+ * returned in batches by {@link #poll()} (or delivered to a consumer by
+ * {@link #follow(Consumer, long, TimeUnit)}); an unfinished last line is held back until its line feed
+ * arrives. While reading, a sparse index of the line offsets is built, so
+ * any previously read line can be retrieved by {@link #readLines(long, int)} without scanning the file
+ * from its beginning. {@link #lastLines(int)} scans the file backwards, so its cost depends only on
+ * the length of the requested lines, not on the size of the file.
+ *
+ * <p>
+ * Rotation is detected: if the file is renamed (e.g. to a name generated by
+ * {@link FileGoodies#deprecateFile(File)}) or replaced, the remaining lines of the old file are read, and
+ * the follower continues with the new file from its beginning. If the file is truncated, the follower
+ * reads it again from its beginning.
+ *
+ * <pre>{@code
+ * try (LogFollower follower = new LogFollower(Paths.get("app.log"))) {
+ *     follower.lastLines(20).forEach(System.out::println);
+ *     follower.skipToEnd();
+ *     follower.follow(lines -> lines.forEach(System.out::println), 500, TimeUnit.MILLISECONDS);
+ * }
+ * }</pre>
+ *
+ * <p>
+ * Only ASCII-compatible charsets (e.g. UTF-8) are supported. Line numbers are counted from
+ * the position where the follower started reading (see {@link #skipToEnd()}).
+ * The methods are thread-safe; {@link #close()} can be called from another thread to stop a
+ * {@link #follow(Consumer, long, TimeUnit)} loop.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class LogFollower implements AutoCloseable {
+
+    /**
+     * The default size of the read buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Every {@code INDEX_INTERVAL}th line's offset is stored in the sparse line index.
+     */
+    static final int INDEX_INTERVAL = 1024;
+
+    private final Path path;
+    private final Charset charset;
+    private final ByteBuffer buffer;
+    private final byte[] chunk;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+    private long lineCount;
+    private long[] lineIndex = new long[16];
+    private int lineIndexSize;
+    private volatile boolean closed;
+
+    /**
+     * Creates a follower that reads the file as UTF-8 from its beginning.
+     *
+     * @param path the path of the log file
+     * @throws IOException if the file can't be opened
+     */
+    public LogFollower(Path path) throws IOException {
+        this(path, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a follower that reads the file from its beginning.
+     *
+     * @param path       the path of the log file
+     * @param charset    the charset of the file; must be ASCII-compatible
+     * @param bufferSize the size of the read buffer
+     * @throws IOException              if the file can't be opened
+     * @throws IllegalArgumentException if the charset is not ASCII-compatible or the buffer size is not positive
+     */
+    public LogFollower(Path path, Charset charset, int bufferSize) throws IOException {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be positive");
+        this.path = Objects.requireNonNull(path, "The path mustn't be null");
+        this.charset = Lines.requireAsciiCompatible(charset);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.chunk = new byte[bufferSize];
+        open(0);
+    }
+
+    private void open(long startPosition) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        resetTo(startPosition);
+    }
+
+    private void resetTo(long startPosition) {
+        position = startPosition;
+        partialLine.reset();
+        lineCount = 0;
+        lineIndexSize = 0;
+        addIndexEntry(startPosition);
+    }
+
+    /**
+     * Moves the reading position to the end of the last complete line, so only the
+     * lines written after this call will be returned by {@link #poll()}. The line numbers
+     * are counted from this position afterwards.
+     *
+     * @throws IOException if some I/O exception occurs
+     */
+    public synchronized void skipToEnd() throws IOException {
+        ensureOpen();
+        long end = channel.size();
+        while (end > 0) {
+            long from = Math.max(0, end - chunk.length);
+            int i = readChunk(from, end) - 1;
+            while (i >= 0 && chunk[i] != Lines.LF)
+                i--;
+            if (i >= 0) {
+                resetTo(from + i + 1);
+                return;
+            }
+            end = from;
+        }
+        resetTo(0);
+    }
+
+    /**
+     * Returns the last {@code n} complete lines of the file.
+     * It doesn't change the reading position of the follower.
+     *
+     * @param n the number of lines
+     * @return the lines in the order they appear in the file; fewer than {@code n} if the file has less lines
+     * @throws IOException if some I/O exception occurs
+     */
+    public synchronized List<String> lastLines(int n) throws IOException {
+        ensureOpen();
+        if (n <= 0)
+            return Collections.emptyList();
+
+        long size = channel.size();
+        //the content after the last line feed is an unfinished line
+        long end = size;
+        long start = -1;
+        int lineFeeds = 0;
+        boolean endFound = false;
+        while (end > 0 && start < 0) {
+            long from = Math.max(0, end - chunk.length);
+            for (int i = readChunk(from, end) - 1; i >= 0; i--) {
+                if (chunk[i] != Lines.LF)
+                    continue;
+                if (!endFound) {
+                    endFound = true;
+                    size = from + i;
+                } else if (++lineFeeds == n) {
+                    start = from + i + 1;
+                    break;
+                }
+            }
+            end = from;
+        }
+
+        if (!endFound)
+            return Collections.emptyList();
+        return scanLines(Math.max(start, 0), 0, n, size);
+    }
+
+    /**
+     * Returns the complete lines that have been written since the last call.
+     * If the file has been rotated, the remaining lines of the old file are returned
+     * followed by the lines of the new file.
+     *
+     * @return the new lines; an empty list if there are no new complete lines
+     * @throws IOException if some I/O exception occurs
+     */
+    public synchronized List<String> poll() throws IOException {
+        ensureOpen();
+        List<String> lines = new ArrayList<>();
+        readAvailable(lines);
+
+        Rotation rotation = detectRotation();
+        if (rotation == Rotation.REPLACED) {
+            //the old file may have grown since it was read; after that it won't grow anymore,
+            //so its unfinished line is complete
+            readAvailable(lines);
+            if (partialLine.size() > 0)
+                completeLine(lines, partialLine.toByteArray(), partialLine.size(), position);
+            channel.close();
+            open(0);
+            readAvailable(lines);
+        } else if (rotation == Rotation.TRUNCATED) {
+            resetTo(0);
+            readAvailable(lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Polls the file periodically and delivers the batches of new lines to the consumer,
+     * until the follower is closed or the thread is interrupted.
+     *
+     * @param consumer the consumer of the line batches; it's called only with non-empty batches
+     * @param interval the time between two polls when there are no new lines
+     * @param unit     the unit of the interval
+     * @throws IOException          if some I/O exception occurs
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    public void follow(Consumer<List<String>> consumer, long interval, TimeUnit unit) throws IOException, InterruptedException {
+        while (!closed) {
+            List<String> lines;
+            try {
+                lines = poll();
+            } catch (IOException e) {
+                if (closed)
+                    return;
+                throw e;
+            }
+            if (lines.isEmpty())
+                unit.sleep(interval);
+            else
+                consumer.accept(lines);
+        }
+    }
+
+    /**
+     * Returns previously read lines, looking up their position in the sparse line index.
+     *
+     * @param firstLine the number of the first line (starting from 0)
+     * @param count     the maximum number of lines
+     * @return the lines; fewer than {@code count} if not that many lines have been read yet
+     * @throws IOException if some I/O exception occurs
+     */
+    public synchronized List<String> readLines(long firstLine, int count) throws IOException {
+        ensureOpen();
+        if (firstLine < 0 || firstLine >= lineCount || count <= 0)
+            return Collections.emptyList();
+
+        int indexSlot = (int) (firstLine / INDEX_INTERVAL);
+        long skip = firstLine - (long) indexSlot * INDEX_INTERVAL;
+        int limit = (int) Math.min(count, lineCount - firstLine);
+        return scanLines(lineIndex[indexSlot], skip, limit, position - partialLine.size());
+    }
+
+    /**
+     * @return the number of complete lines read since the follower started reading
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the lines found between the {@code from} and {@code to} offsets, skipping the first
+     * {@code skip} lines and returning at most {@code limit} lines.
+     */
+    private List<String> scanLines(long from, long skip, int limit, long to) throws IOException {
+        List<String> lines = new ArrayList<>(Math.min(limit, 1024));
+        byte[] carried = new byte[0];
+        long chunkStart = from;
+        while (chunkStart < to && lines.size() < limit) {
+            int length = readChunk(chunkStart, to);
+            if (length == 0)
+                break;
+            int lineStart = 0;
+            for (int i = 0; i < length && lines.size() < limit; i++) {
+                if (chunk[i] != Lines.LF)
+                    continue;
+                if (skip > 0) {
+                    skip--;
+                } else if (carried.length == 0) {
+                    lines.add(Lines.decode(chunk, lineStart, i, charset));
+                } else {
+                    byte[] line = concat(carried, chunk, lineStart, i);
+                    lines.add(Lines.decode(line, line.length, charset));
+                }
+                carried = new byte[0];
+                lineStart = i + 1;
+            }
+            if (lineStart < length && lines.size() < limit)
+                carried = concat(carried, chunk, lineStart, length);
+            chunkStart += length;
+        }
+        //the last line may end exactly at 'to' (its line feed is excluded)
+        if (lines.size() < limit && skip == 0 && carried.length > 0)
+            lines.add(Lines.decode(carried, carried.length, charset));
+        return lines;
+    }
+
+    private static byte[] concat(byte[] head, byte[] bytes, int from, int to) {
+        byte[] result = Arrays.copyOf(head, head.length + to - from);
+        System.arraycopy(bytes, from, result, head.length, to - from);
+        return result;
+    }
+
+    /**
+     * Reads the bytes from the {@code from} offset (at most until the {@code to} offset) into the chunk array.
+     *
+     * @return the number of bytes read; less than requested if the file has been truncated in the meantime
+     */
+    private int readChunk(long from, long to) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0)
+                break;
+        }
+        buffer.flip();
+        int length = buffer.remaining();
+        buffer.get(chunk, 0, length);
+        return length;
+    }
+
+    private void readAvailable(List<String> lines) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            int length = readChunk(position, size);
+            if (length == 0)
+                break;
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] != Lines.LF)
+                    continue;
+                if (partialLine.size() == 0) {
+                    lines.add(Lines.decode(chunk, lineStart, i, charset));
+                    onLineCompleted(position + i + 1);
+                } else {
+                    partialLine.write(chunk, lineStart, i - lineStart);
+                    completeLine(lines, partialLine.toByteArray(), partialLine.size(), position + i + 1);
+                }
+                lineStart = i + 1;
+            }
+            partialLine.write(chunk, lineStart, length - lineStart);
+            position += length;
+        }
+    }
+
+    private void completeLine(List<String> lines, byte[] bytes, int length, long nextLineStart) {
+        lines.add(Lines.decode(bytes, length, charset));
+        partialLine.reset();
+        onLineCompleted(nextLineStart);
+    }
+
+    private void onLineCompleted(long nextLineStart) {
+        lineCount++;
+        if (lineCount % INDEX_INTERVAL == 0)
+            addIndexEntry(nextLineStart);
+    }
+
+    private void addIndexEntry(long offset) {
+        if (lineIndexSize == lineIndex.length)
+            lineIndex = Arrays.copyOf(lineIndex, lineIndexSize * 2);
+        lineIndex[lineIndexSize++] = offset;
+    }
+
+    private enum Rotation {
+        NONE, REPLACED, TRUNCATED
+    }
+
+    private Rotation detectRotation() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            //renamed, but the new file hasn't been created yet
+            return Rotation.NONE;
+        }
+
+        Object currentKey = attributes.fileKey();
+        if (fileKey != null && currentKey != null && !fileKey.equals(currentKey))
+            return Rotation.REPLACED;
+        if (attributes.size() < position)
+            return fileKey == null ? Rotation.REPLACED : Rotation.TRUNCATED;
+        return Rotation.NONE;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("The follower has been closed");
+    }
+
+    /**
+     * Closes the file; a running {@link #follow(Consumer, long, TimeUnit)} loop returns after its current poll.
+     *
+     * @throws IOException if some I/O exception occurs
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import com.jfilegoodies.FileGoodies;
+import com.jfilegoodies.util.FileStoreCapabilities;
+import com.jfilegoodies.util.IoExecutors;
+import com.jfilegoodies.util.OsUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SyncFailedException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes files in a crash-safe way.
+ *
+ * <p>
+ * The content is written into a temporary sibling of the target file, which is
+ * flushed to the disk (fsync) and then atomically moved into place. After a crash the
+ * target file contains either the old or the new content, never a partial one.
+ * The replaced file keeps its POSIX permissions (and its owner and group, if the process may
+ * set them); a new file gets the default permissions of the process (its umask).
+ * Optionally the previous version can be kept under a name generated by {@link FileGoodies#deprecateFile(File)}.
+ *
+ * <pre>{@code
+ * try (SafeFileWriter writer = SafeFileWriter.immediate()) {
+ *     File previousVersion = writer.write(configFile, bytes, true);
+ * }
+ * }</pre>
+ *
+ * <p>
+ * A writer created by {@link #groupCommit(int, long, TimeUnit)} commits the writes of
+ * many concurrent callers together: the temporary files of a batch are flushed in parallel,
+ * moved into place, and every affected directory is flushed only once per batch.
+ * Each {@code write} call still blocks until its own content is durable.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class SafeFileWriter implements AutoCloseable {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Writes the content of a file into the given stream.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    private final GroupCommitter committer;
+
+    private SafeFileWriter(GroupCommitter committer) {
+        this.committer = committer;
+    }
+
+    /**
+     * Creates a writer that flushes every file and its directory as soon as it's written.
+     *
+     * @return the writer
+     */
+    public static SafeFileWriter immediate() {
+        return new SafeFileWriter(null);
+    }
+
+    /**
+     * Creates a writer that batches the fsyncs of concurrent writers.
+     *
+     * @param maxBatchSize the maximum number of writes committed together
+     * @param maxDelay     the maximum time the committer waits for more writes to join a batch
+     * @param unit         the unit of {@code maxDelay}
+     * @return the writer
+     * @throws IllegalArgumentException if {@code maxBatchSize} is not positive or {@code maxDelay} is negative
+     */
+    public static SafeFileWriter groupCommit(int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        if (maxDelay < 0)
+            throw new IllegalArgumentException("maxDelay mustn't be negative");
+        return new SafeFileWriter(new GroupCommitter(maxBatchSize, unit.toNanos(maxDelay)));
+    }
+
+    /**
+     * Calls the {@link #write(File, byte[], boolean)} without keeping the previous version.
+     *
+     * @see #write(File, byte[], boolean)
+     */
+    public void write(File target, byte[] content) throws IOException {
+        write(target, content, false);
+    }
+
+    /**
+     * Writes the given bytes into the target file safely.
+     *
+     * @param target       the file to write
+     * @param content      the new content of the file
+     * @param keepPrevious {@code true} if the previous version of the file should be kept
+     * @return the file that holds the previous version; {@code null} if it's not kept or the
+     *         target didn't exist
+     * @throws SyncFailedException if the target file has been replaced, but its directory couldn't be flushed,
+     *                             so the replacement may not survive a crash
+     * @throws IOException         if some other I/O exception occurs; the target file is left untouched then
+     */
+    public File write(File target, byte[] content, boolean keepPrevious) throws IOException {
+        Objects.requireNonNull(content, "The content mustn't be null");
+        return write(target, output -> output.write(content), keepPrevious);
+    }
+
+    /**
+     * Writes the content produced by the given {@link ContentWriter} into the target file safely.
+     *
+     * @param target       the file to write
+     * @param writer       the object that produces the content
+     * @param keepPrevious {@code true} if the previous version of the file should be kept
+     * @return the file that holds the previous version; {@code null} if it's not kept or the
+     *         target didn't exist
+     * @throws SyncFailedException if the target file has been replaced, but its directory couldn't be flushed,
+     *                             so the replacement may not survive a crash
+     * @throws IOException         if some other I/O exception occurs; the target file is left untouched then
+     */
+    public File write(File target, ContentWriter writer, boolean keepPrevious) throws IOException {
+        Objects.requireNonNull(target, "The target mustn't be null");
+        Objects.requireNonNull(writer, "The writer mustn't be null");
+
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path temp;
+        FileChannel tempChannel;
+        while (true) {
+            //not Files.createTempFile: its files are private (0600) instead of following the umask
+            temp = targetPath.resolveSibling("." + targetPath.getFileName()
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+            try {
+                tempChannel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                //generating another name
+            }
+        }
+        try {
+            try (FileChannel channel = tempChannel;
+                 OutputStream output = Channels.newOutputStream(channel)) {
+                copyPermissions(targetPath, temp);
+                writer.writeTo(output);
+                output.flush();
+                if (committer == null)
+                    channel.force(true);
+            }
+
+            if (committer == null) {
+                File previous = moveIntoPlace(temp, targetPath, keepPrevious);
+                try {
+                    syncDirectory(targetPath.getParent());
+                } catch (IOException e) {
+                    throw directorySyncFailed(targetPath.getParent(), e);
+                }
+                return previous;
+            }
+            return committer.commit(new PendingWrite(temp, targetPath, keepPrevious));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the POSIX permissions of the existing target to the temporary file; the owner and
+     * the group are copied only if the process is allowed to change them.
+     */
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        PosixFileAttributeView tempView = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        if (tempView == null)
+            return;
+        PosixFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(target, PosixFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return; //a new file
+        }
+        try {
+            tempView.setGroup(attributes.group());
+            tempView.setOwner(attributes.owner());
+        } catch (IOException e) {
+            //not allowed (e.g. the file belongs to another user), the file becomes ours
+        }
+        //after the owner, which may clear the set-user-ID bits
+        tempView.setPermissions(attributes.permissions());
+    }
+
+    private static File moveIntoPlace(Path temp, Path target, boolean keepPrevious) throws IOException {
+        //the directory, not the (unique) temporary file, so the cached capabilities are found
+        FileStoreCapabilities capabilities = OsUtils.getCapabilities(target.getParent());
+        File previous = keepPrevious ? preservePrevious(target, capabilities) : null;
+        if (capabilities.isAtomicMoveSupported()) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return previous;
+            } catch (AtomicMoveNotSupportedException e) {
+                //falling back to a plain move
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        return previous;
+    }
+
+    /**
+     * Links (or copies, if hard links are not supported) the target to a deprecated name,
+     * so the target keeps existing until the new version replaces it.
+     */
+    private static File preservePrevious(Path target, FileStoreCapabilities capabilities) throws IOException {
+        if (!Files.isRegularFile(target))
+            return null;
+
+        while (true) {
+            File deprecated = FileGoodies.deprecateFile(target.toFile());
+            try {
+                linkOrCopy(target, deprecated.toPath(), capabilities.isHardLinkSupported());
+                return deprecated;
+            } catch (FileAlreadyExistsException e) {
+                //someone else has taken the generated name in the meantime
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+
+    private static void linkOrCopy(Path existing, Path link, boolean hardLinkSupported) throws IOException {
+        if (hardLinkSupported) {
+            try {
+                Files.createLink(link, existing);
+                return;
+            } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | IOException e) {
+                //falling back to a copy
+            }
+        }
+        Files.copy(existing, link, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    private static void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void syncDirectory(Path directory) throws IOException {
+        //directories can't be opened for syncing on Windows; NTFS journals the rename itself
+        if (OsUtils.isWindows())
+            return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static SyncFailedException directorySyncFailed(Path directory, Exception cause) {
+        SyncFailedException exception = new SyncFailedException("The file has been replaced, but its directory couldn't be flushed: " + directory);
+        exception.initCause(cause);
+        return exception;
+    }
+
+    /**
+     * Stops the group committer (if any) after the pending writes have been committed.
+     */
+    @Override
+    public void close() {
+        if (committer != null)
+            committer.shutdown();
+    }
+
+    private static final class PendingWrite {
+        private final Path temp;
+        private final Path target;
+        private final boolean keepPrevious;
+        private final CompletableFuture<File> completion = new CompletableFuture<>();
+
+        private PendingWrite(Path temp, Path target, boolean keepPrevious) {
+            this.temp = temp;
+            this.target = target;
+            this.keepPrevious = keepPrevious;
+        }
+    }
+
+    private static final class GroupCommitter implements Runnable {
+
+        private static final PendingWrite POISON = new PendingWrite(null, null, false);
+
+        private final int maxBatchSize;
+        private final long maxDelayNanos;
+        private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+        private final ExecutorService syncExecutor = IoExecutors.newIoExecutor("jfilegoodies-fsync");
+        private final Thread thread;
+        private boolean shutdown;
+
+        private GroupCommitter(int maxBatchSize, long maxDelayNanos) {
+            this.maxBatchSize = maxBatchSize;
+            this.maxDelayNanos = maxDelayNanos;
+            this.thread = IoExecutors.daemonThreadFactory("jfilegoodies-group-commit").newThread(this);
+            this.thread.start();
+        }
+
+        private File commit(PendingWrite write) throws IOException {
+            synchronized (this) {
+                if (shutdown)
+                    throw new IOException("The writer has been closed");
+                queue.add(write);
+            }
+            try {
+                return write.completion.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the commit");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+            boolean running = true;
+            try {
+                while (running) {
+                    try {
+                        PendingWrite first = queue.take();
+                        running = first != POISON;
+                        if (running) {
+                            batch.add(first);
+                            long deadline = System.nanoTime() + maxDelayNanos;
+                            while (batch.size() < maxBatchSize) {
+                                PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                                if (next == null)
+                                    break;
+                                if (next == POISON) {
+                                    running = false;
+                                    break;
+                                }
+                                batch.add(next);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+
+                    if (!batch.isEmpty()) {
+                        try {
+                            commitBatch(batch);
+                        } catch (RuntimeException | Error e) {
+                            //the writers of the batch mustn't wait forever
+                            for (PendingWrite write : batch)
+                                write.completion.completeExceptionally(e);
+                            if (e instanceof Error)
+                                throw e;
+                        } finally {
+                            batch.clear();
+                        }
+                    }
+                }
+            } finally {
+                stop();
+            }
+        }
+
+        /**
+         * Refuses the new writes and fails the queued ones, so no writer is left waiting after the committer is gone.
+         */
+        private void stop() {
+            synchronized (this) {
+                shutdown = true;
+            }
+            IOException closed = new IOException("The writer has been closed");
+            for (PendingWrite write; (write = queue.poll()) != null; ) {
+                if (write != POISON)
+                    write.completion.completeExceptionally(closed);
+            }
+            syncExecutor.shutdown();
+        }
+
+        private void commitBatch(List<PendingWrite> batch) {
+            //flushing the temporary files in parallel, so the device can merge the requests
+            List<CompletableFuture<Void>> syncs = new ArrayList<>(batch.size());
+            for (PendingWrite write : batch) {
+                syncs.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        syncFile(write.temp);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, syncExecutor));
+            }
+
+            Set<Path> directories = new LinkedHashSet<>();
+            List<PendingWrite> moved = new ArrayList<>(batch.size());
+            List<File> previousVersions = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                try {
+                    awaitSync(syncs.get(i));
+                    previousVersions.add(moveIntoPlace(write.temp, write.target, write.keepPrevious));
+                    moved.add(write);
+                    directories.add(write.target.getParent());
+                } catch (IOException | RuntimeException e) {
+                    deleteQuietly(write.temp);
+                    write.completion.completeExceptionally(e);
+                }
+            }
+
+            Map<Path, SyncFailedException> directorySyncFailures = new HashMap<>();
+            for (Path directory : directories) {
+                try {
+                    syncDirectory(directory);
+                } catch (IOException | RuntimeException e) {
+                    directorySyncFailures.put(directory, directorySyncFailed(directory, e));
+                }
+            }
+
+            for (int i = 0; i < moved.size(); i++) {
+                PendingWrite write = moved.get(i);
+                SyncFailedException failure = directorySyncFailures.get(write.target.getParent());
+                if (failure == null)
+                    write.completion.complete(previousVersions.get(i));
+                else
+                    write.completion.completeExceptionally(failure);
+            }
+        }
+
+        private static void awaitSync(CompletableFuture<Void> sync) throws IOException {
+            try {
+                sync.join();
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof UncheckedIOException ? ((UncheckedIOException) cause).getCause() : new IOException(e);
+            }
+        }
+
+        private static void deleteQuietly(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+
+        private synchronized void shutdown() {
+            if (!shutdown) {
+                shutdown = true;
+                queue.add(POISON);
+            }
+        }
+    }
+}
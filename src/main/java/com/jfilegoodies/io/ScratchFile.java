@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * A lease of a file of a {@link ScratchSpace}; closing it returns the file to the pool.
+ *
+ * <p>
+ * The file is accessed through its open {@link #getChannel() channel}, which is shared between
+ * the leases of the file: it must not be closed by the user (a closed channel makes the file
+ * deleted instead of reused), and it must not be used after the lease is closed, as the file may
+ * already be leased by someone else. The file can also be opened by its {@link #getPath() path}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ScratchFile implements AutoCloseable {
+
+    private final ScratchSpace space;
+    private final Path path;
+    private final FileChannel channel;
+    private volatile boolean released;
+
+    ScratchFile(ScratchSpace space, Path path, FileChannel channel) {
+        this.space = space;
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * @return the path of the file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the channel of the file, opened for reading and writing
+     * @throws IllegalStateException if the lease has been closed
+     */
+    public FileChannel getChannel() {
+        ensureLeased();
+        return channel;
+    }
+
+    /**
+     * @return the current size of the file
+     * @throws IOException if the size can't be read
+     * @throws IllegalStateException if the lease has been closed
+     */
+    public long size() throws IOException {
+        ensureLeased();
+        return channel.size();
+    }
+
+    private void ensureLeased() {
+        if (released)
+            throw new IllegalStateException("The scratch file has been released: " + path);
+    }
+
+    /**
+     * Returns the file to the pool of its {@link ScratchSpace} (its content is discarded).
+     * Closing a released lease has no effect, even if the file has been leased again since.
+     */
+    @Override
+    public void close() {
+        if (released)
+            return;
+        released = true;
+        space.release(this);
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of scratch files in a directory, for the workers that need many short-lived temporary files.
+ *
+ * <p>
+ * Creating and deleting a file changes the directory and the inode tables every time, which is expensive
+ * on most file systems when it's done at a high rate. A {@link ScratchSpace} creates its files once (a pool
+ * of them is preallocated when it's opened) and keeps them open: the file of a released {@link ScratchFile}
+ * is truncated and handed out again (in a new {@link ScratchFile}) instead of being deleted. The files live
+ * in a session directory of their own ({@code jfilegoodies-scratch-*}), where they are named by a counter,
+ * so no name has to be probed for existence.
+ *
+ * <pre>{@code
+ * try (ScratchSpace space = ScratchSpace.open(Paths.get("/var/tmp/work"))) {
+ *     try (ScratchFile scratch = space.acquire()) {
+ *         scratch.getChannel().write(buffer);
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>
+ * The session directory holds a file lock while the space is open. When a space is opened, the session
+ * directories of the crashed runs (whose lock is not held anymore) are removed with their files.
+ * The lock files of the sessions opened by this JVM are never probed: on POSIX systems closing any
+ * channel of a file releases the locks the process holds on it.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ScratchSpace implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScratchSpace.class);
+
+    /**
+     * The prefix of the session directories.
+     */
+    public static final String SESSION_PREFIX = "jfilegoodies-scratch-";
+
+    /**
+     * The default number of the idle files kept in the pool.
+     */
+    public static final int DEFAULT_POOL_SIZE = 32;
+
+    private static final String LOCK_FILE_NAME = ".lock";
+    private static final String PENDING_LOCK_FILE_NAME = ".lock.pending";
+    private static final String FILE_SUFFIX = ".tmp";
+
+    /**
+     * A session directory without a lock file may be being created right now; it's removed only after this time.
+     */
+    private static final long UNLOCKED_SESSION_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The real paths of the sessions opened by this JVM and not closed yet.
+     */
+    private static final Set<Path> liveSessions = ConcurrentHashMap.newKeySet();
+
+    private final Path session;
+    private final Path sessionKey;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final int poolSize;
+    private final long maxDiskUsage;
+    private final int removedStaleSessions;
+    private final AtomicLong counter = new AtomicLong();
+
+    private final Deque<PooledFile> idle = new ArrayDeque<>();
+    //every lease is a new ScratchFile, so a lease that is closed again can't release the next lease of its file
+    private final Map<ScratchFile, PooledFile> leased = new HashMap<>();
+    private boolean closed;
+
+    private ScratchSpace(Path session, Path sessionKey, FileChannel lockChannel, FileLock lock,
+                         int poolSize, long maxDiskUsage, int removedStaleSessions) {
+        this.session = session;
+        this.sessionKey = sessionKey;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.poolSize = poolSize;
+        this.maxDiskUsage = maxDiskUsage;
+        this.removedStaleSessions = removedStaleSessions;
+    }
+
+    /**
+     * Opens a scratch space with {@link #DEFAULT_POOL_SIZE} pooled files and no disk usage limit.
+     *
+     * @see #open(Path, int, long)
+     */
+    public static ScratchSpace open(Path directory) throws IOException {
+        return open(directory, DEFAULT_POOL_SIZE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Removes the stale sessions of the directory, then creates a new session with {@code poolSize}
+     * preallocated files.
+     *
+     * @param directory    the directory of the scratch files; created if it doesn't exist
+     * @param poolSize     the maximum number of the idle files kept open for reuse
+     * @param maxDiskUsage the total size of the acquired files in bytes above which {@link #acquire()} fails;
+     *                     it only gates the new acquisitions, the acquired files can grow beyond it
+     * @return the opened scratch space
+     * @throws IOException if the session can't be created
+     */
+    public static ScratchSpace open(Path directory, int poolSize, long maxDiskUsage) throws IOException {
+        if (poolSize < 0)
+            throw new IllegalArgumentException("poolSize must not be negative");
+        if (maxDiskUsage <= 0)
+            throw new IllegalArgumentException("maxDiskUsage must be positive");
+
+        Files.createDirectories(directory);
+        int removed = removeStaleSessions(directory);
+
+        Path session = Files.createTempDirectory(directory, SESSION_PREFIX);
+        Path sessionKey = session.toRealPath();
+        liveSessions.add(sessionKey);
+        ScratchSpace space;
+        try {
+            //the lock file gets its final name only when it's locked, so other processes never see it unlocked
+            Path pendingLockFile = session.resolve(PENDING_LOCK_FILE_NAME);
+            FileChannel lockChannel = FileChannel.open(pendingLockFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                FileLock lock = lockChannel.lock();
+                Files.move(pendingLockFile, session.resolve(LOCK_FILE_NAME), StandardCopyOption.ATOMIC_MOVE);
+                space = new ScratchSpace(session, sessionKey, lockChannel, lock, poolSize, maxDiskUsage, removed);
+            } catch (IOException | RuntimeException e) {
+                lockChannel.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            liveSessions.remove(sessionKey);
+            throw e;
+        }
+
+        try {
+            for (int i = 0; i < poolSize; i++)
+                space.idle.add(space.newFile());
+        } catch (IOException e) {
+            space.close();
+            throw e;
+        }
+        return space;
+    }
+
+    /**
+     * Hands out an idle file of the pool, or creates a new one if the pool is empty.
+     *
+     * @return an empty scratch file; must be closed to return it to the pool
+     * @throws IOException if the total size of the acquired files has reached the limit,
+     *                     or a new file can't be created
+     */
+    public ScratchFile acquire() throws IOException {
+        synchronized (this) {
+            ensureOpen();
+            if (maxDiskUsage != Long.MAX_VALUE && getDiskUsage() >= maxDiskUsage)
+                throw new IOException("the scratch space is full: " + session);
+
+            PooledFile file = idle.pollFirst();
+            if (file != null)
+                return lease(file);
+        }
+
+        PooledFile file = newFile();
+        synchronized (this) {
+            if (!closed)
+                return lease(file);
+        }
+        file.destroy();
+        throw new IOException("the scratch space has been closed: " + session);
+    }
+
+    /**
+     * Returns the total size of the acquired files (the idle files are empty).
+     *
+     * @return the disk usage in bytes
+     * @throws IOException if the size of a file can't be read
+     */
+    public synchronized long getDiskUsage() throws IOException {
+        long usage = 0;
+        for (PooledFile file : leased.values()) {
+            if (file.channel.isOpen())
+                usage += file.channel.size();
+        }
+        return usage;
+    }
+
+    /**
+     * @return the number of the idle files in the pool
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of the acquired, not yet released files
+     */
+    public synchronized int getLeasedCount() {
+        return leased.size();
+    }
+
+    /**
+     * @return the number of the stale session directories removed when this space has been opened
+     */
+    public int getRemovedStaleSessions() {
+        return removedStaleSessions;
+    }
+
+    /**
+     * @return the session directory that holds the files of this space
+     */
+    public Path getSessionDirectory() {
+        return session;
+    }
+
+    private PooledFile newFile() throws IOException {
+        Path path = session.resolve(counter.getAndIncrement() + FILE_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new PooledFile(path, channel);
+    }
+
+    private ScratchFile lease(PooledFile file) {
+        ScratchFile lease = new ScratchFile(this, file.path, file.channel);
+        leased.put(lease, file);
+        return lease;
+    }
+
+    void release(ScratchFile lease) {
+        PooledFile file;
+        boolean reuse;
+        synchronized (this) {
+            file = leased.remove(lease);
+            if (file == null)
+                return;
+            reuse = !closed && idle.size() < poolSize && file.channel.isOpen();
+        }
+
+        if (reuse) {
+            try {
+                file.channel.truncate(0);
+                file.channel.position(0);
+            } catch (IOException e) {
+                logger.debug("Couldn't truncate the scratch file {}", file.path, e);
+                reuse = false;
+            }
+        }
+        if (reuse) {
+            synchronized (this) {
+                //the most recently used file goes first: its metadata is the most likely to be cached
+                if (!closed && idle.size() < poolSize) {
+                    idle.addFirst(file);
+                    return;
+                }
+            }
+        }
+        file.destroy();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("the scratch space has been closed: " + session);
+    }
+
+    /**
+     * Deletes every file of the session (the acquired ones as well) and the session directory.
+     */
+    @Override
+    public void close() throws IOException {
+        List<PooledFile> files;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            files = new ArrayList<>(idle);
+            files.addAll(leased.values());
+            idle.clear();
+            leased.clear();
+        }
+
+        for (PooledFile file : files)
+            file.destroy();
+        try {
+            try {
+                lock.release();
+            } finally {
+                lockChannel.close();
+            }
+            deleteTree(session);
+        } finally {
+            liveSessions.remove(sessionKey);
+        }
+    }
+
+    /**
+     * Removes the session directories whose lock is not held by a running space.
+     *
+     * @return the number of the removed sessions
+     */
+    private static int removeStaleSessions(Path directory) throws IOException {
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(directory, SESSION_PREFIX + "*")) {
+            for (Path session : sessions) {
+                if (Files.isDirectory(session) && isStale(session))
+                    stale.add(session);
+            }
+        }
+
+        int removed = 0;
+        for (Path session : stale) {
+            try {
+                deleteTree(session);
+                removed++;
+            } catch (IOException e) {
+                logger.warn("Couldn't remove the stale scratch session {}", session, e);
+            }
+        }
+        if (removed > 0)
+            logger.debug("Removed {} stale scratch session(s) from {}", removed, directory);
+        return removed;
+    }
+
+    private static boolean isStale(Path session) throws IOException {
+        try {
+            //opening and closing a channel of a lock file held by this JVM would release the lock
+            if (liveSessions.contains(session.toRealPath()))
+                return false;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        Path lockFile = session.resolve(LOCK_FILE_NAME);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(session).toMillis();
+            return age > UNLOCKED_SESSION_GRACE_MILLIS;
+        }
+
+        try {
+            FileLock probe = channel.tryLock();
+            if (probe == null)
+                return false;
+            probe.release();
+            return true;
+        } catch (OverlappingFileLockException e) {
+            //held by a space of this JVM that is not in the live sessions (e.g. loaded by another class loader)
+            return false;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A file of the pool, which is handed out by a new {@link ScratchFile} on every lease.
+     */
+    private static final class PooledFile {
+        final Path path;
+        final FileChannel channel;
+
+        PooledFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        void destroy() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.debug("Couldn't delete the scratch file {}", path, e);
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null)
+                    throw exc;
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
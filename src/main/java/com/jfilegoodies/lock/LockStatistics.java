@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the statistics of a {@link PathLocks}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class LockStatistics {
+
+    private final long acquisitions;
+    private final long contendedAcquisitions;
+    private final long failedAttempts;
+    private final long totalWaitNanos;
+    private final long totalHoldNanos;
+    private final long maxHoldNanos;
+
+    LockStatistics(long acquisitions, long contendedAcquisitions, long failedAttempts,
+                   long totalWaitNanos, long totalHoldNanos, long maxHoldNanos) {
+        this.acquisitions = acquisitions;
+        this.contendedAcquisitions = contendedAcquisitions;
+        this.failedAttempts = failedAttempts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.totalHoldNanos = totalHoldNanos;
+        this.maxHoldNanos = maxHoldNanos;
+    }
+
+    /**
+     * Returns the number of the successful acquisitions (a path of a multi-path lock counts separately).
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Returns the number of the acquisitions that have found the stripe locked by another thread.
+     */
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions;
+    }
+
+    /**
+     * Returns the number of the try-lock attempts that have failed or timed out.
+     */
+    public long getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * Returns the total time spent waiting for the locks.
+     */
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(totalWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the total time the released locks have been held.
+     */
+    public long getTotalHoldTime(TimeUnit unit) {
+        return unit.convert(totalHoldNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a released lock has been held.
+     */
+    public long getMaxHoldTime(TimeUnit unit) {
+        return unit.convert(maxHoldNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the average time a lock has been held; 0 if no lock has been acquired.
+     */
+    public long getAverageHoldTime(TimeUnit unit) {
+        return acquisitions == 0 ? 0 : unit.convert(totalHoldNanos / acquisitions, TimeUnit.NANOSECONDS);
+    }
+}
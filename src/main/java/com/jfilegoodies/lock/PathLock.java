@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.lock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lock held on one or more paths by a {@link PathLocks}; closing it releases the paths.
+ *
+ * <p>
+ * <i>Note: the lock belongs to the thread that has acquired it and must be closed by the same thread.</i>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class PathLock implements AutoCloseable {
+
+    private final PathLocks owner;
+    private final PathLocks.Stripe stripe;
+    private final Path path;
+    private final long acquiredAt;
+    private final List<PathLock> parts;
+    private boolean released;
+
+    PathLock(PathLocks owner, PathLocks.Stripe stripe, Path path, long acquiredAt) {
+        this.owner = owner;
+        this.stripe = stripe;
+        this.path = path;
+        this.acquiredAt = acquiredAt;
+        this.parts = Collections.emptyList();
+    }
+
+    PathLock(List<PathLock> parts) {
+        this.owner = null;
+        this.stripe = null;
+        this.path = null;
+        this.acquiredAt = 0;
+        this.parts = parts;
+    }
+
+    /**
+     * @return the normalized paths that are held by this lock
+     */
+    public List<Path> getPaths() {
+        if (path != null)
+            return Collections.singletonList(path);
+        List<Path> paths = new ArrayList<>(parts.size());
+        for (PathLock part : parts)
+            paths.add(part.path);
+        return paths;
+    }
+
+    /**
+     * @return {@code true} if the lock hasn't been released yet
+     */
+    public boolean isHeld() {
+        return !released;
+    }
+
+    /**
+     * Releases the paths (in the reverse order of their acquisition). Releasing a released lock has no effect.
+     *
+     * @throws IOException if a sidecar file lock can't be released
+     */
+    @Override
+    public void close() throws IOException {
+        if (released)
+            return;
+        released = true;
+
+        if (path != null) {
+            owner.release(stripe, path, acquiredAt);
+            return;
+        }
+
+        IOException failure = null;
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            try {
+                parts.get(i).close();
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.lock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates the operations on the same paths (e.g. {@link com.jfilegoodies.FileGoodies#deprecateFile(java.io.File)}
+ * followed by a rename) between threads and, optionally, between processes.
+ *
+ * <p>
+ * The paths are normalized and hashed onto a fixed number of reentrant lock stripes, so the threads working
+ * on unrelated paths almost never wait for each other, while the number of locks doesn't grow with the number
+ * of paths. If the cross-process locking is enabled, the holder of a stripe also takes an exclusive
+ * {@link FileChannel#lock() file lock} on a sidecar file ({@code <name>.lock} next to the path), which makes
+ * other processes using the same convention wait.
+ *
+ * <pre>{@code
+ * PathLocks locks = new PathLocks(PathLocks.DEFAULT_STRIPES, true);
+ * try (PathLock lock = locks.lock(target)) {
+ *     if (Files.exists(target))
+ *         Files.move(target, FileGoodies.deprecateFile(target.toFile()).toPath());
+ *     Files.write(target, content);
+ * }
+ * }</pre>
+ *
+ * <p>
+ * <i>Note: the in-process locks work only between the users of the same {@link PathLocks} object;
+ * use one instance per JVM for the same paths. The sidecar files are not deleted, since deleting
+ * them would let two processes lock different files of the same name.</i>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class PathLocks {
+
+    /**
+     * The default number of lock stripes.
+     */
+    public static final int DEFAULT_STRIPES = 1024;
+
+    /**
+     * The suffix of the sidecar lock files.
+     */
+    public static final String LOCK_FILE_SUFFIX = ".lock";
+
+    private static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * An operation that is performed while its path is locked.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface LockedOperation<T> {
+        T apply(Path path) throws IOException;
+    }
+
+    private final Stripe[] stripes;
+    private final boolean crossProcess;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an in-process lock service with {@link #DEFAULT_STRIPES} stripes.
+     */
+    public PathLocks() {
+        this(DEFAULT_STRIPES, false);
+    }
+
+    /**
+     * @param stripes      the number of lock stripes; rounded up to a power of two
+     * @param crossProcess whether the locks are extended to other processes with sidecar file locks
+     * @throws IllegalArgumentException if the {@code stripes} is not positive
+     */
+    public PathLocks(int stripes, boolean crossProcess) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive");
+        int size = Integer.highestOneBit(Math.min(stripes, 1 << 30));
+        if (size < stripes)
+            size <<= 1;
+
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++)
+            this.stripes[i] = new Stripe(i);
+        this.crossProcess = crossProcess;
+    }
+
+    /**
+     * @return {@code true} if the locks are extended to other processes
+     */
+    public boolean isCrossProcess() {
+        return crossProcess;
+    }
+
+    /**
+     * Locks the path, waiting as long as necessary.
+     *
+     * @param path the path to lock
+     * @return the held lock; must be closed by the same thread
+     * @throws InterruptedIOException if the thread has been interrupted while waiting
+     * @throws IOException            if the sidecar file can't be locked
+     */
+    public PathLock lock(Path path) throws IOException {
+        return acquire(path, -1);
+    }
+
+    /**
+     * Locks the path if it isn't held by anyone else.
+     *
+     * @param path the path to lock
+     * @return the held lock; null if the path is locked by another thread or process
+     * @throws IOException if the sidecar file can't be locked
+     */
+    public PathLock tryLock(Path path) throws IOException {
+        return acquire(path, 0);
+    }
+
+    /**
+     * Locks the path, waiting at most the given time.
+     *
+     * @param path    the path to lock
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the {@code timeout}
+     * @return the held lock; null if the time has elapsed
+     * @throws InterruptedIOException if the thread has been interrupted while waiting
+     * @throws IOException            if the sidecar file can't be locked
+     */
+    public PathLock tryLock(Path path, long timeout, TimeUnit unit) throws IOException {
+        return acquire(path, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Locks all the paths (e.g. the source and the target of a move). The paths are locked in a
+     * global order, so two threads locking overlapping sets can't deadlock.
+     *
+     * @param paths the paths to lock
+     * @return the lock that holds all the paths
+     * @throws InterruptedIOException if the thread has been interrupted while waiting
+     * @throws IOException            if a sidecar file can't be locked
+     */
+    public PathLock lockAll(Collection<Path> paths) throws IOException {
+        Set<Path> distinct = new LinkedHashSet<>();
+        for (Path path : paths)
+            distinct.add(normalize(path));
+        List<Path> ordered = new ArrayList<>(distinct);
+        ordered.sort(Comparator.<Path>comparingInt(path -> stripeOf(path).index).thenComparing(Path::toString));
+
+        List<PathLock> held = new ArrayList<>(ordered.size());
+        try {
+            for (Path path : ordered)
+                held.add(acquireNormalized(path, -1));
+        } catch (IOException | RuntimeException e) {
+            for (int i = held.size() - 1; i >= 0; i--)
+                held.get(i).close();
+            throw e;
+        }
+        return new PathLock(held);
+    }
+
+    /**
+     * Performs the operation while the path is locked.
+     *
+     * @param path      the path to lock
+     * @param operation the operation to perform
+     * @param <T>       the type of the result
+     * @return the result of the operation
+     * @throws IOException if the path can't be locked or the operation fails
+     */
+    public <T> T withLock(Path path, LockedOperation<T> operation) throws IOException {
+        PathLock lock = lock(path);
+        try {
+            return operation.apply(path);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * @return a snapshot of the lock statistics since the creation (or the last reset)
+     */
+    public LockStatistics getStatistics() {
+        return new LockStatistics(acquisitions.sum(), contendedAcquisitions.sum(), failedAttempts.sum(),
+                waitNanos.sum(), holdNanos.sum(), maxHoldNanos.get());
+    }
+
+    /**
+     * Clears the lock statistics.
+     */
+    public void resetStatistics() {
+        acquisitions.reset();
+        contendedAcquisitions.reset();
+        failedAttempts.reset();
+        waitNanos.reset();
+        holdNanos.reset();
+        maxHoldNanos.reset();
+    }
+
+    /**
+     * @param path the path
+     * @return the sidecar file that is locked for the path across processes
+     * @throws IllegalArgumentException if the path has no file name (e.g. a root directory)
+     */
+    public static Path lockFileOf(Path path) {
+        Path normalized = normalize(path);
+        Path fileName = normalized.getFileName();
+        if (fileName == null)
+            throw new IllegalArgumentException("a root can't be locked: " + path);
+        return normalized.resolveSibling(fileName + LOCK_FILE_SUFFIX);
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private Stripe stripeOf(Path normalized) {
+        int hash = normalized.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    private PathLock acquire(Path path, long timeoutNanos) throws IOException {
+        return acquireNormalized(normalize(path), timeoutNanos);
+    }
+
+    /**
+     * @param timeoutNanos the maximum time to wait; 0 doesn't wait, a negative value waits forever
+     */
+    private PathLock acquireNormalized(Path path, long timeoutNanos) throws IOException {
+        Stripe stripe = stripeOf(path);
+        long start = System.nanoTime();
+
+        boolean acquired = stripe.lock.tryLock();
+        if (!acquired) {
+            contendedAcquisitions.increment();
+            try {
+                if (timeoutNanos < 0) {
+                    stripe.lock.lockInterruptibly();
+                    acquired = true;
+                } else if (timeoutNanos > 0) {
+                    acquired = stripe.lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the lock of " + path);
+            }
+        }
+        if (!acquired) {
+            failedAttempts.increment();
+            return null;
+        }
+
+        if (crossProcess) {
+            boolean fileLocked = false;
+            try {
+                long remaining = timeoutNanos < 0 ? -1 : Math.max(0, timeoutNanos - (System.nanoTime() - start));
+                fileLocked = stripe.lockFile(path, remaining);
+            } finally {
+                if (!fileLocked)
+                    stripe.lock.unlock();
+            }
+            if (!fileLocked) {
+                failedAttempts.increment();
+                return null;
+            }
+        }
+
+        long acquiredAt = System.nanoTime();
+        acquisitions.increment();
+        waitNanos.add(acquiredAt - start);
+        return new PathLock(this, stripe, path, acquiredAt);
+    }
+
+    void release(Stripe stripe, Path path, long acquiredAt) throws IOException {
+        long held = System.nanoTime() - acquiredAt;
+        holdNanos.add(held);
+        maxHoldNanos.accumulate(held);
+        try {
+            if (crossProcess)
+                stripe.unlockFile(path);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * A lock stripe; the file locks of its paths are only touched by the holder of the stripe.
+     */
+    static final class Stripe {
+
+        final int index;
+        final ReentrantLock lock = new ReentrantLock();
+        private final Map<Path, HeldFileLock> fileLocks = new HashMap<>();
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        boolean lockFile(Path path, long timeoutNanos) throws IOException {
+            HeldFileLock held = fileLocks.get(path);
+            if (held != null) {
+                //a reentrant acquisition: the JVM already holds the file lock
+                held.count++;
+                return true;
+            }
+
+            FileChannel channel = FileChannel.open(lockFileOf(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = null;
+            try {
+                fileLock = timeoutNanos < 0 ? channel.lock() : tryLockFile(channel, path, timeoutNanos);
+            } finally {
+                if (fileLock == null)
+                    channel.close();
+            }
+            if (fileLock == null)
+                return false;
+
+            fileLocks.put(path, new HeldFileLock(channel, fileLock));
+            return true;
+        }
+
+        private static FileLock tryLockFile(FileChannel channel, Path path, long timeoutNanos) throws IOException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            long retryNanos = MIN_RETRY_NANOS;
+            while (true) {
+                FileLock fileLock = channel.tryLock();
+                long remaining = deadline - System.nanoTime();
+                if (fileLock != null || remaining <= 0)
+                    return fileLock;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(retryNanos, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for the lock of " + path);
+                }
+                retryNanos = Math.min(retryNanos * 2, MAX_RETRY_NANOS);
+            }
+        }
+
+        void unlockFile(Path path) throws IOException {
+            HeldFileLock held = fileLocks.get(path);
+            if (held == null || --held.count > 0)
+                return;
+            fileLocks.remove(path);
+            try {
+                held.fileLock.release();
+            } finally {
+                held.channel.close();
+            }
+        }
+    }
+
+    private static final class HeldFileLock {
+        final FileChannel channel;
+        final FileLock fileLock;
+        int count = 1;
+
+        HeldFileLock(FileChannel channel, FileLock fileLock) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+    }
+}
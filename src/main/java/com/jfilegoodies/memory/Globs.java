@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Converts the glob patterns of {@link java.nio.file.FileSystem#getPathMatcher(String)} into regular expressions.
+ *
+ * <p>
+ * Supported: {@code *} (within a name), {@code **} (across names), {@code ?}, {@code [...]} and
+ * {@code [!...]} groups, {@code {a,b}} alternatives and {@code \} escapes.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class Globs {
+
+    private static final String REGEX_META = ".^$+{[]|()";
+
+    private Globs() {
+    }
+
+    static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder("^");
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (++i == glob.length())
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    appendLiteral(regex, glob.charAt(i));
+                    break;
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    i = appendBracket(regex, glob, i);
+                    break;
+                case '{':
+                    if (inGroup)
+                        throw new PatternSyntaxException("Nested groups are not supported", glob, i);
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        regex.append(')');
+                        inGroup = false;
+                    } else {
+                        appendLiteral(regex, c);
+                    }
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                default:
+                    appendLiteral(regex, c);
+            }
+        }
+        if (inGroup)
+            throw new PatternSyntaxException("Missing '}'", glob, glob.length() - 1);
+        return regex.append('$').toString();
+    }
+
+    private static int appendBracket(StringBuilder regex, String glob, int start) {
+        int i = start + 1;
+        regex.append('[');
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            regex.append('^');
+            i++;
+        }
+        boolean empty = true;
+        for (; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == ']' && !empty) {
+                regex.append("&&[^/]]");
+                return i;
+            }
+            if (c == '/')
+                throw new PatternSyntaxException("'/' is not allowed in a bracket expression", glob, i);
+            if (c == '\\' || c == '[' || c == '&' || (c == '^' && empty))
+                regex.append('\\');
+            regex.append(c);
+            empty = false;
+        }
+        throw new PatternSyntaxException("Missing ']'", glob, start);
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if (REGEX_META.indexOf(c) >= 0 || c == '\\' || c == '*' || c == '?' || c == '}')
+            regex.append('\\');
+        regex.append(c);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of the basic attributes of a {@link MemoryNode}; the only attribute view
+ * supported by the {@link MemoryFileSystem} is "basic".
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class MemoryAttributes implements BasicFileAttributes {
+
+    static final String VIEW_NAME = "basic";
+
+    private static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+            "lastModifiedTime", "lastAccessTime", "creationTime", "size", "isRegularFile",
+            "isDirectory", "isSymbolicLink", "isOther", "fileKey"));
+
+    private final FileTime lastModifiedTime;
+    private final FileTime lastAccessTime;
+    private final FileTime creationTime;
+    private final boolean directory;
+    private final long size;
+    private final Object fileKey;
+
+    MemoryAttributes(MemoryNode node) {
+        this.lastModifiedTime = node.lastModifiedTime;
+        this.lastAccessTime = node.lastAccessTime;
+        this.creationTime = node.creationTime;
+        this.directory = node.isDirectory();
+        this.size = node.size();
+        this.fileKey = node.id;
+    }
+
+    /**
+     * Reads the attributes in the form of
+     * {@link java.nio.file.Files#readAttributes(java.nio.file.Path, String, java.nio.file.LinkOption...)}.
+     */
+    static Map<String, Object> read(MemoryNode node, String attributes) {
+        String list = stripView(attributes);
+        MemoryAttributes snapshot = new MemoryAttributes(node);
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : list.split(",")) {
+            if (name.equals("*")) {
+                for (String each : NAMES)
+                    result.put(each, snapshot.get(each));
+            } else {
+                if (!NAMES.contains(name))
+                    throw new IllegalArgumentException("'" + name + "' not recognized");
+                result.put(name, snapshot.get(name));
+            }
+        }
+        return result;
+    }
+
+    static void set(MemoryNode node, String attribute, Object value) {
+        String name = stripView(attribute);
+        if (!(value instanceof FileTime) && NAMES.contains(name))
+            throw new ClassCastException("The value of '" + name + "' must be a FileTime");
+
+        switch (name) {
+            case "lastModifiedTime":
+                node.lastModifiedTime = (FileTime) value;
+                break;
+            case "lastAccessTime":
+                node.lastAccessTime = (FileTime) value;
+                break;
+            case "creationTime":
+                node.creationTime = (FileTime) value;
+                break;
+            default:
+                throw new IllegalArgumentException("'" + name + "' not recognized or can't be set");
+        }
+    }
+
+    private static String stripView(String attributes) {
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            String view = attributes.substring(0, colon);
+            if (!view.equals(VIEW_NAME))
+                throw new UnsupportedOperationException("View '" + view + "' not available");
+            return attributes.substring(colon + 1);
+        }
+        return attributes;
+    }
+
+    private Object get(String name) {
+        switch (name) {
+            case "lastModifiedTime":
+                return lastModifiedTime;
+            case "lastAccessTime":
+                return lastAccessTime;
+            case "creationTime":
+                return creationTime;
+            case "size":
+                return size;
+            case "isRegularFile":
+                return isRegularFile();
+            case "isDirectory":
+                return isDirectory();
+            case "isSymbolicLink":
+                return isSymbolicLink();
+            case "isOther":
+                return isOther();
+            default:
+                return fileKey;
+        }
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return fileKey;
+    }
+
+    /**
+     * The {@link BasicFileAttributeView} of a path; the node is looked up on every call.
+     */
+    static final class View implements BasicFileAttributeView {
+
+        private final MemoryPath path;
+
+        View(MemoryPath path) {
+            this.path = path;
+        }
+
+        @Override
+        public String name() {
+            return VIEW_NAME;
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes() throws IOException {
+            return new MemoryAttributes(path.getFileSystem().require(path));
+        }
+
+        @Override
+        public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+            MemoryNode node = path.getFileSystem().require(path);
+            if (lastModifiedTime != null)
+                node.lastModifiedTime = lastModifiedTime;
+            if (lastAccessTime != null)
+                node.lastAccessTime = lastAccessTime;
+            if (createTime != null)
+                node.creationTime = createTime;
+        }
+    }
+}
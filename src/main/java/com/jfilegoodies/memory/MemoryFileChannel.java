@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link FileChannel} of a regular file of a {@link MemoryFileSystem}.
+ *
+ * <p>
+ * Locks behave like the locks of a single process: an overlapping lock throws
+ * {@link java.nio.channels.OverlappingFileLockException}. Memory mapping is not supported.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class MemoryFileChannel extends FileChannel {
+
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+    private final MemoryNode.RegularFile file;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean append;
+    private final MemoryPath deleteOnClose;
+
+    private long position;
+
+    MemoryFileChannel(MemoryNode.RegularFile file, boolean readable, boolean writable, boolean append, MemoryPath deleteOnClose) {
+        this.file = file;
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        this.deleteOnClose = deleteOnClose;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureReadable();
+        int count = file.read(position, dst);
+        if (count > 0)
+            position += count;
+        return count;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        ensureReadable();
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining())
+                continue;
+            int count = file.read(position, dsts[i]);
+            if (count < 0)
+                return total == 0 ? -1 : total;
+            position += count;
+            total += count;
+            if (dsts[i].hasRemaining())
+                break;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureWritable();
+        if (append) {
+            synchronized (file) {
+                position = file.size();
+                return advance(file.append(src));
+            }
+        }
+        return advance(file.write(position, src));
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++)
+            total += write(srcs[i]);
+        return total;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return append ? file.size() : position;
+    }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0)
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return file.size();
+    }
+
+    @Override
+    public synchronized FileChannel truncate(long size) throws IOException {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+        ensureWritable();
+        file.truncate(size);
+        position = Math.min(position, size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        ensureOpen(); //nothing to flush
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ensureReadable();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TRANSFER_BUFFER_SIZE, Math.max(count, 0)));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - transferred));
+            int read = file.read(position + transferred, buffer);
+            if (read <= 0)
+                break;
+            buffer.flip();
+            while (buffer.hasRemaining())
+                transferred += target.write(buffer);
+        }
+        return transferred;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        ensureWritable();
+        if (position > file.size())
+            return 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(TRANSFER_BUFFER_SIZE, Math.max(count, 0)));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - transferred));
+            int read = src.read(buffer);
+            if (read <= 0)
+                break;
+            buffer.flip();
+            transferred += file.write(position + transferred, buffer);
+        }
+        return transferred;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position: " + position);
+        ensureReadable();
+        return file.read(position, dst);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position: " + position);
+        ensureWritable();
+        return file.write(position, src);
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; in-memory files can't be mapped
+     */
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException("The in-memory file system doesn't support memory mapping");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        return tryLock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        ensureOpen();
+        if (shared && !readable)
+            throw new NonReadableChannelException();
+        if (!shared && !writable)
+            throw new NonWritableChannelException();
+
+        FileLock lock = new MemoryFileLock(this, position, size, shared);
+        file.addLock(lock);
+        return lock;
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        for (FileLock lock : file.removeLocksOf(this))
+            ((MemoryFileLock) lock).invalidate();
+
+        if (deleteOnClose != null)
+            deleteOnClose.getFileSystem().deleteIfExists(deleteOnClose);
+    }
+
+    private int advance(int count) {
+        position += count;
+        return count;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen())
+            throw new ClosedChannelException();
+    }
+
+    private void ensureReadable() throws ClosedChannelException {
+        ensureOpen();
+        if (!readable)
+            throw new NonReadableChannelException();
+    }
+
+    private void ensureWritable() throws ClosedChannelException {
+        ensureOpen();
+        if (!writable)
+            throw new NonWritableChannelException();
+    }
+
+    private final class MemoryFileLock extends FileLock {
+
+        private volatile boolean valid = true;
+
+        MemoryFileLock(FileChannel channel, long position, long size, boolean shared) {
+            super(channel, position, size, shared);
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid && isOpen();
+        }
+
+        @Override
+        public void release() throws IOException {
+            ensureOpen();
+            if (valid) {
+                valid = false;
+                file.removeLock(this);
+            }
+        }
+
+        void invalidate() {
+            valid = false;
+        }
+    }
+}
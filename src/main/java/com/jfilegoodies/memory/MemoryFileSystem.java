@@ -0,0 +1,553 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.IOException;
+import java.nio.file.AccessMode;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link FileSystem} that keeps its whole tree in the heap.
+ *
+ * <p>
+ * It has a single root ("/") and a single {@link FileStore}, supports regular files, directories
+ * and hard links, and only the "basic" attribute view. Symbolic links, watch services and memory
+ * mapping are not supported. Every existing file is readable, writable and executable.
+ *
+ * <p>
+ * Instances are created by {@link MemoryFileSystems}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class MemoryFileSystem extends FileSystem {
+
+    private final MemoryFileSystemProvider provider;
+    private final String name;
+    private final MemoryNode.Directory root = new MemoryNode.Directory();
+    private final MemoryPath rootPath = MemoryPath.root(this);
+    private final MemoryFileStore fileStore = new MemoryFileStore(this);
+
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private volatile boolean open = true;
+
+    MemoryFileSystem(MemoryFileSystemProvider provider, String name) {
+        this.provider = provider;
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    MemoryFileStore getFileStore() {
+        return fileStore;
+    }
+
+    @Override
+    public MemoryFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            provider.closed(this);
+
+            Lock lock = treeLock.writeLock();
+            lock.lock();
+            try {
+                root.children.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        ensureOpen();
+        return Collections.singletonList(rootPath);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        ensureOpen();
+        return Collections.singletonList(fileStore);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton(MemoryAttributes.VIEW_NAME);
+    }
+
+    @Override
+    public MemoryPath getPath(String first, String... more) {
+        if (more.length == 0)
+            return MemoryPath.parse(this, first);
+
+        StringBuilder path = new StringBuilder(first);
+        for (String segment : more) {
+            if (!segment.isEmpty()) {
+                if (path.length() > 0)
+                    path.append('/');
+                path.append(segment);
+            }
+        }
+        return MemoryPath.parse(this, path.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0)
+            throw new IllegalArgumentException("The form must be 'syntax:pattern': " + syntaxAndPattern);
+
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        final Pattern regex;
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(Globs.toRegex(pattern));
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException("Syntax '" + syntax + "' not recognized");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("The in-memory file system doesn't support user principals");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("The in-memory file system doesn't support watch services");
+    }
+
+    @Override
+    public String toString() {
+        return MemoryFileSystemProvider.SCHEME + "://" + name;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    //Operations of the provider
+
+    MemoryNode require(MemoryPath path) throws NoSuchFileException {
+        Lock lock = readLock();
+        try {
+            MemoryNode node = find(path.nodeNames(), 0);
+            if (node == null)
+                throw new NoSuchFileException(path.toString());
+            return node;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void checkExists(MemoryPath path) throws NoSuchFileException {
+        require(path);
+    }
+
+    void checkAccess(MemoryPath path, AccessMode... modes) throws NoSuchFileException {
+        require(path); //every existing file is accessible in all modes
+    }
+
+    MemoryFileChannel newFileChannel(MemoryPath path, Set<? extends OpenOption> options) throws IOException {
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean write = append || options.contains(StandardOpenOption.WRITE);
+        boolean read = options.contains(StandardOpenOption.READ) || !write;
+        if (read && append)
+            throw new IllegalArgumentException("READ + APPEND not allowed");
+        if (append && options.contains(StandardOpenOption.TRUNCATE_EXISTING))
+            throw new IllegalArgumentException("APPEND + TRUNCATE_EXISTING not allowed");
+
+        String[] names = path.nodeNames();
+        MemoryNode.RegularFile file;
+        Lock lock = write ? writeLock() : readLock();
+        try {
+            MemoryNode.Directory parent = parentOf(path, names);
+            MemoryNode node = names.length == 0 ? root : parent.children.get(names[names.length - 1]);
+            if (node == null) {
+                if (!write || !(options.contains(StandardOpenOption.CREATE) || options.contains(StandardOpenOption.CREATE_NEW)))
+                    throw new NoSuchFileException(path.toString());
+                file = new MemoryNode.RegularFile();
+                parent.children.put(names[names.length - 1], file);
+                parent.touch();
+            } else if (write && options.contains(StandardOpenOption.CREATE_NEW)) {
+                throw new FileAlreadyExistsException(path.toString());
+            } else if (node.isDirectory()) {
+                throw new FileSystemException(path.toString(), null, "Is a directory");
+            } else {
+                file = (MemoryNode.RegularFile) node;
+                if (write && options.contains(StandardOpenOption.TRUNCATE_EXISTING))
+                    file.truncate(0);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        MemoryPath deleteOnClose = options.contains(StandardOpenOption.DELETE_ON_CLOSE) ? path : null;
+        return new MemoryFileChannel(file, read, write, append, deleteOnClose);
+    }
+
+    DirectoryStream<Path> newDirectoryStream(MemoryPath dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        List<Path> entries;
+        Lock lock = readLock();
+        try {
+            MemoryNode node = find(dir.nodeNames(), 0);
+            if (node == null)
+                throw new NoSuchFileException(dir.toString());
+            if (!node.isDirectory())
+                throw new NotDirectoryException(dir.toString());
+
+            entries = new ArrayList<>(((MemoryNode.Directory) node).children.size());
+            for (String child : ((MemoryNode.Directory) node).children.keySet())
+                entries.add(dir.resolve(child));
+        } finally {
+            lock.unlock();
+        }
+        return new SnapshotDirectoryStream(entries, filter);
+    }
+
+    void createDirectory(MemoryPath dir) throws IOException {
+        String[] names = dir.nodeNames();
+        Lock lock = writeLock();
+        try {
+            if (names.length == 0)
+                throw new FileAlreadyExistsException(dir.toString());
+            MemoryNode.Directory parent = parentOf(dir, names);
+            String name = names[names.length - 1];
+            if (parent.children.containsKey(name))
+                throw new FileAlreadyExistsException(dir.toString());
+            parent.children.put(name, new MemoryNode.Directory());
+            parent.touch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void createLink(MemoryPath link, MemoryPath existing) throws IOException {
+        String[] names = link.nodeNames();
+        Lock lock = writeLock();
+        try {
+            MemoryNode target = find(existing.nodeNames(), 0);
+            if (target == null)
+                throw new NoSuchFileException(existing.toString());
+            if (target.isDirectory())
+                throw new FileSystemException(link.toString(), existing.toString(), "Hard links to directories are not allowed");
+            if (names.length == 0)
+                throw new FileAlreadyExistsException(link.toString());
+            MemoryNode.Directory parent = parentOf(link, names);
+            String name = names[names.length - 1];
+            if (parent.children.containsKey(name))
+                throw new FileAlreadyExistsException(link.toString());
+            parent.children.put(name, target);
+            parent.touch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void delete(MemoryPath path) throws IOException {
+        if (!deleteIfExists(path))
+            throw new NoSuchFileException(path.toString());
+    }
+
+    boolean deleteIfExists(MemoryPath path) throws IOException {
+        String[] names = path.nodeNames();
+        Lock lock = writeLock();
+        try {
+            if (names.length == 0)
+                throw new FileSystemException(path.toString(), null, "The root can't be deleted");
+            MemoryNode parent = find(names, 1);
+            if (parent == null || !parent.isDirectory())
+                return false;
+
+            MemoryNode.Directory directory = (MemoryNode.Directory) parent;
+            MemoryNode node = directory.children.get(names[names.length - 1]);
+            if (node == null)
+                return false;
+            if (node.isDirectory() && !((MemoryNode.Directory) node).children.isEmpty())
+                throw new DirectoryNotEmptyException(path.toString());
+
+            directory.children.remove(names[names.length - 1]);
+            directory.touch();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the node of the source to the target within this file system; the move is atomic.
+     */
+    void move(MemoryPath source, MemoryPath target, CopyOption... options) throws IOException {
+        boolean replace = contains(options, StandardCopyOption.REPLACE_EXISTING) || contains(options, StandardCopyOption.ATOMIC_MOVE);
+        String[] sourceNames = source.nodeNames();
+        String[] targetNames = target.nodeNames();
+        Lock lock = writeLock();
+        try {
+            if (sourceNames.length == 0)
+                throw new FileSystemException(source.toString(), target.toString(), "The root can't be moved");
+            MemoryNode.Directory sourceParent = parentOf(source, sourceNames);
+            MemoryNode node = sourceParent.children.get(sourceNames[sourceNames.length - 1]);
+            if (node == null)
+                throw new NoSuchFileException(source.toString());
+            if (node == find(targetNames, 0))
+                return;
+            if (node.isDirectory() && startsWith(targetNames, sourceNames))
+                throw new FileSystemException(source.toString(), target.toString(), "A directory can't be moved into itself");
+
+            MemoryNode.Directory targetParent = prepareTarget(target, targetNames, replace);
+            sourceParent.children.remove(sourceNames[sourceNames.length - 1]);
+            targetParent.children.put(targetNames[targetNames.length - 1], node);
+            sourceParent.touch();
+            targetParent.touch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the node of the source (the children of a directory are not copied).
+     */
+    MemoryNode copyNode(MemoryPath source, boolean copyAttributes) throws IOException {
+        MemoryNode node = require(source);
+        MemoryNode copy = node.copy();
+        if (copyAttributes)
+            copy.copyTimesFrom(node);
+        return copy;
+    }
+
+    /**
+     * Puts the given node to the target path of this file system.
+     */
+    void install(MemoryPath target, MemoryNode node, boolean replace) throws IOException {
+        String[] names = target.nodeNames();
+        Lock lock = writeLock();
+        try {
+            MemoryNode.Directory parent = prepareTarget(target, names, replace);
+            parent.children.put(names[names.length - 1], node);
+            parent.touch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isNonEmptyDirectory(MemoryPath path) throws IOException {
+        Lock lock = readLock();
+        try {
+            MemoryNode node = find(path.nodeNames(), 0);
+            if (node == null)
+                throw new NoSuchFileException(path.toString());
+            return node.isDirectory() && !((MemoryNode.Directory) node).children.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isSameFile(MemoryPath path, MemoryPath other) throws IOException {
+        return require(path) == require(other);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks the parent of the target and removes the existing target if it's allowed.
+     * The caller must hold the write lock.
+     */
+    private MemoryNode.Directory prepareTarget(MemoryPath target, String[] names, boolean replace) throws IOException {
+        if (names.length == 0)
+            throw new FileAlreadyExistsException(target.toString());
+        MemoryNode.Directory parent = parentOf(target, names);
+        MemoryNode existing = parent.children.get(names[names.length - 1]);
+        if (existing != null) {
+            if (!replace)
+                throw new FileAlreadyExistsException(target.toString());
+            if (existing.isDirectory() && !((MemoryNode.Directory) existing).children.isEmpty())
+                throw new DirectoryNotEmptyException(target.toString());
+        }
+        return parent;
+    }
+
+    /**
+     * Finds the directory that contains the node of the given names. The caller must hold a lock.
+     */
+    private MemoryNode.Directory parentOf(MemoryPath path, String[] names) throws IOException {
+        MemoryNode parent = names.length == 0 ? root : find(names, 1);
+        if (parent == null)
+            throw new NoSuchFileException(path.toString());
+        if (!parent.isDirectory())
+            throw new FileSystemException(path.toString(), null, "Not a directory");
+        return (MemoryNode.Directory) parent;
+    }
+
+    /**
+     * Finds the node of the names without the last {@code skipLast} ones. The caller must hold a lock.
+     */
+    private MemoryNode find(String[] names, int skipLast) {
+        MemoryNode node = root;
+        for (int i = 0; i < names.length - skipLast; i++) {
+            if (!node.isDirectory())
+                return null;
+            node = ((MemoryNode.Directory) node).children.get(names[i]);
+            if (node == null)
+                return null;
+        }
+        return node;
+    }
+
+    private Lock readLock() {
+        ensureOpen();
+        Lock lock = treeLock.readLock();
+        lock.lock();
+        return lock;
+    }
+
+    private Lock writeLock() {
+        ensureOpen();
+        Lock lock = treeLock.writeLock();
+        lock.lock();
+        return lock;
+    }
+
+    private void ensureOpen() {
+        if (!open)
+            throw new ClosedFileSystemException();
+    }
+
+    private static boolean startsWith(String[] names, String[] prefix) {
+        if (prefix.length > names.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (!prefix[i].equals(names[i]))
+                return false;
+        }
+        return true;
+    }
+
+    static boolean contains(CopyOption[] options, CopyOption option) {
+        for (CopyOption each : options) {
+            if (each == option)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * A {@link DirectoryStream} over the entries of a directory at the time it was opened.
+     */
+    private static final class SnapshotDirectoryStream implements DirectoryStream<Path> {
+
+        private final List<Path> entries;
+        private final Filter<? super Path> filter;
+        private boolean iterated;
+        private volatile boolean closed;
+
+        SnapshotDirectoryStream(List<Path> entries, Filter<? super Path> filter) {
+            this.entries = entries;
+            this.filter = filter;
+        }
+
+        @Override
+        public synchronized Iterator<Path> iterator() {
+            if (closed)
+                throw new IllegalStateException("The directory stream is closed");
+            if (iterated)
+                throw new IllegalStateException("The iterator has already been returned");
+            iterated = true;
+
+            final Iterator<Path> source = entries.iterator();
+            return new Iterator<Path>() {
+                private Path next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && !closed && source.hasNext()) {
+                        Path candidate = source.next();
+                        try {
+                            if (filter == null || filter.accept(candidate))
+                                next = candidate;
+                        } catch (IOException e) {
+                            throw new DirectoryIteratorException(e);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Path next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    Path result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link FileSystemProvider} of the {@link MemoryFileSystem}s; the URIs have the form
+ * {@code memory://<name>/<path>}.
+ *
+ * <p>
+ * The provider is not installed (so {@link java.nio.file.Paths#get(URI)} doesn't know it),
+ * the file systems are created by {@link MemoryFileSystems}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class MemoryFileSystemProvider extends FileSystemProvider {
+
+    static final String SCHEME = "memory";
+
+    static final MemoryFileSystemProvider INSTANCE = new MemoryFileSystemProvider();
+
+    private final ConcurrentMap<String, MemoryFileSystem> fileSystems = new ConcurrentHashMap<>();
+    private final AtomicLong counter = new AtomicLong();
+
+    private MemoryFileSystemProvider() {
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public MemoryFileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        return newFileSystem(nameOf(uri));
+    }
+
+    MemoryFileSystem newFileSystem(String name) {
+        MemoryFileSystem fileSystem = new MemoryFileSystem(this, name);
+        if (fileSystems.putIfAbsent(name, fileSystem) != null)
+            throw new FileSystemAlreadyExistsException(name);
+        return fileSystem;
+    }
+
+    MemoryFileSystem newFileSystem() {
+        while (true) {
+            String name = "fs" + counter.incrementAndGet();
+            if (!fileSystems.containsKey(name)) {
+                try {
+                    return newFileSystem(name);
+                } catch (FileSystemAlreadyExistsException e) {
+                    //created concurrently by name, try the next one
+                }
+            }
+        }
+    }
+
+    void closed(MemoryFileSystem fileSystem) {
+        fileSystems.remove(fileSystem.getName(), fileSystem);
+    }
+
+    @Override
+    public MemoryFileSystem getFileSystem(URI uri) {
+        MemoryFileSystem fileSystem = fileSystems.get(nameOf(uri));
+        if (fileSystem == null)
+            throw new FileSystemNotFoundException(uri.toString());
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        return getFileSystem(uri).getPath(uri.getPath().isEmpty() ? "/" : uri.getPath());
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        return newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        checkNoAttributes(attrs);
+        MemoryPath memoryPath = check(path);
+        return memoryPath.getFileSystem().newFileChannel(memoryPath, options);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        MemoryPath memoryPath = check(dir);
+        return memoryPath.getFileSystem().newDirectoryStream(memoryPath, filter);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        checkNoAttributes(attrs);
+        MemoryPath memoryPath = check(dir);
+        memoryPath.getFileSystem().createDirectory(memoryPath);
+    }
+
+    @Override
+    public void createLink(Path link, Path existing) throws IOException {
+        MemoryPath memoryLink = check(link);
+        MemoryPath memoryExisting = check(existing);
+        if (memoryLink.getFileSystem() != memoryExisting.getFileSystem())
+            throw new FileSystemException(link.toString(), existing.toString(), "Hard links can't cross file systems");
+        memoryLink.getFileSystem().createLink(memoryLink, memoryExisting);
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        MemoryPath memoryPath = check(path);
+        memoryPath.getFileSystem().delete(memoryPath);
+    }
+
+    @Override
+    public boolean deleteIfExists(Path path) throws IOException {
+        MemoryPath memoryPath = check(path);
+        return memoryPath.getFileSystem().deleteIfExists(memoryPath);
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath memorySource = check(source);
+        MemoryPath memoryTarget = check(target);
+        if (MemoryFileSystem.contains(options, StandardCopyOption.ATOMIC_MOVE))
+            throw new UnsupportedOperationException("Unsupported copy option: " + StandardCopyOption.ATOMIC_MOVE);
+        if (isExistingSameFile(memorySource, memoryTarget))
+            return;
+
+        MemoryNode copy = memorySource.getFileSystem().copyNode(memorySource, MemoryFileSystem.contains(options, StandardCopyOption.COPY_ATTRIBUTES));
+        memoryTarget.getFileSystem().install(memoryTarget, copy, MemoryFileSystem.contains(options, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        MemoryPath memorySource = check(source);
+        MemoryPath memoryTarget = check(target);
+        if (memorySource.getFileSystem() == memoryTarget.getFileSystem()) {
+            memorySource.getFileSystem().move(memorySource, memoryTarget, options);
+            return;
+        }
+
+        //moving between two in-memory file systems: copy and delete
+        if (MemoryFileSystem.contains(options, StandardCopyOption.ATOMIC_MOVE))
+            throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "The paths are on different file systems");
+        if (memorySource.getFileSystem().isNonEmptyDirectory(memorySource))
+            throw new DirectoryNotEmptyException(source.toString());
+
+        MemoryNode copy = memorySource.getFileSystem().copyNode(memorySource, true);
+        memoryTarget.getFileSystem().install(memoryTarget, copy, MemoryFileSystem.contains(options, StandardCopyOption.REPLACE_EXISTING));
+        memorySource.getFileSystem().delete(memorySource);
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2))
+            return true;
+        if (!(path2 instanceof MemoryPath) || path.getFileSystem() != path2.getFileSystem())
+            return false;
+        MemoryPath memoryPath = check(path);
+        return memoryPath.getFileSystem().isSameFile(memoryPath, (MemoryPath) path2);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path fileName = check(path).getFileName();
+        return fileName != null && fileName.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        MemoryPath memoryPath = check(path);
+        memoryPath.getFileSystem().checkExists(memoryPath);
+        return memoryPath.getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        MemoryPath memoryPath = check(path);
+        memoryPath.getFileSystem().checkAccess(memoryPath, modes);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        MemoryPath memoryPath = check(path);
+        return type == BasicFileAttributeView.class ? (V) new MemoryAttributes.View(memoryPath) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        MemoryPath memoryPath = check(path);
+        if (type != BasicFileAttributes.class)
+            throw new UnsupportedOperationException("Attributes of type " + type.getName() + " are not supported");
+        return (A) new MemoryAttributes(memoryPath.getFileSystem().require(memoryPath));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        MemoryPath memoryPath = check(path);
+        return MemoryAttributes.read(memoryPath.getFileSystem().require(memoryPath), attributes);
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        MemoryPath memoryPath = check(path);
+        MemoryAttributes.set(memoryPath.getFileSystem().require(memoryPath), attribute, value);
+    }
+
+    private static boolean isExistingSameFile(MemoryPath source, MemoryPath target) throws IOException {
+        if (source.getFileSystem() != target.getFileSystem())
+            return false;
+        try {
+            return source.getFileSystem().isSameFile(source, target);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static MemoryPath check(Path path) {
+        if (!(path instanceof MemoryPath))
+            throw new ProviderMismatchException("Not an in-memory path: " + path);
+        return (MemoryPath) path;
+    }
+
+    private static void checkNoAttributes(FileAttribute<?>[] attrs) {
+        if (attrs.length > 0)
+            throw new UnsupportedOperationException("Initial attributes are not supported: " + attrs[0].name());
+    }
+
+    private static String nameOf(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme()))
+            throw new IllegalArgumentException("The scheme of the URI must be '" + SCHEME + "': " + uri);
+        if (uri.getAuthority() == null || uri.getAuthority().isEmpty())
+            throw new IllegalArgumentException("The URI must contain the name of the file system: " + uri);
+        return uri.getAuthority();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.nio.file.FileSystem;
+
+/**
+ * Provides factory methods for lightweight in-memory {@link FileSystem}s.
+ *
+ * <p>
+ * The file systems keep their whole tree in the heap, so tests and dry-runs can run the
+ * {@link java.nio.file.Path} based utilities of the library (and {@link java.nio.file.Files}) without
+ * touching the disk:
+ * <pre>{@code
+ * try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+ *     Path file = fileSystem.getPath("/docs/report.txt");
+ *     Files.createDirectories(file.getParent());
+ *     Files.write(file, bytes);
+ *     Path old = FileGoodies.deprecatePath(file);
+ * }
+ * }</pre>
+ *
+ * <p>
+ * The paths have the unix form with the single root "/"; the only supported attribute view is "basic".
+ * Symbolic links, watch services, memory mapping and asynchronous channels are not supported;
+ * {@link java.nio.file.Path#toFile()} throws {@link UnsupportedOperationException}.
+ * A closed file system releases its content.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class MemoryFileSystems {
+
+    private MemoryFileSystems() {
+    }
+
+    /**
+     * Creates a new, empty in-memory file system with a generated name.
+     *
+     * @return the file system; should be closed after use
+     * @since 1.3
+     */
+    public static FileSystem newFileSystem() {
+        return MemoryFileSystemProvider.INSTANCE.newFileSystem();
+    }
+
+    /**
+     * Creates a new, empty in-memory file system; its paths have URIs of the form
+     * {@code memory://<name>/<path>}.
+     *
+     * @param name the name of the file system; mustn't be used by an open in-memory file system
+     * @return the file system; should be closed after use
+     * @throws java.nio.file.FileSystemAlreadyExistsException if an open file system has the same name
+     * @since 1.3
+     */
+    public static FileSystem newFileSystem(String name) {
+        return MemoryFileSystemProvider.INSTANCE.newFileSystem(name);
+    }
+
+    /**
+     * Checks that the given file system is an in-memory file system created by this class.
+     *
+     * @param fileSystem the file system; may be null
+     * @return {@code true} if it's an in-memory file system; {@code false} otherwise
+     * @since 1.3
+     */
+    public static boolean isMemoryFileSystem(FileSystem fileSystem) {
+        return fileSystem instanceof MemoryFileSystem;
+    }
+}
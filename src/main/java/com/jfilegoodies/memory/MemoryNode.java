@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A node of the tree of a {@link MemoryFileSystem}: either a {@link Directory} or a {@link RegularFile}.
+ *
+ * <p>
+ * The structure of the tree (the children of the directories) is guarded by the lock of the
+ * file system, the content of a regular file is guarded by the file itself.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+abstract class MemoryNode {
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    final Long id = ids.incrementAndGet();
+
+    volatile FileTime creationTime;
+    volatile FileTime lastModifiedTime;
+    volatile FileTime lastAccessTime;
+
+    MemoryNode() {
+        FileTime now = now();
+        this.creationTime = now;
+        this.lastModifiedTime = now;
+        this.lastAccessTime = now;
+    }
+
+    abstract boolean isDirectory();
+
+    abstract long size();
+
+    /**
+     * @return a new node with the same content (the children of directories are not copied)
+     */
+    abstract MemoryNode copy();
+
+    void copyTimesFrom(MemoryNode other) {
+        this.creationTime = other.creationTime;
+        this.lastModifiedTime = other.lastModifiedTime;
+        this.lastAccessTime = other.lastAccessTime;
+    }
+
+    void touch() {
+        this.lastModifiedTime = now();
+    }
+
+    static FileTime now() {
+        return FileTime.fromMillis(System.currentTimeMillis());
+    }
+
+    static final class Directory extends MemoryNode {
+
+        final TreeMap<String, MemoryNode> children = new TreeMap<>();
+
+        @Override
+        boolean isDirectory() {
+            return true;
+        }
+
+        @Override
+        long size() {
+            return 0;
+        }
+
+        @Override
+        MemoryNode copy() {
+            return new Directory();
+        }
+    }
+
+    static final class RegularFile extends MemoryNode {
+
+        /**
+         * The maximum size of a file; the content is stored in a single array.
+         */
+        static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+        private static final byte[] EMPTY = new byte[0];
+
+        private byte[] data = EMPTY;
+        private int size;
+        private final List<FileLock> locks = new ArrayList<>(1);
+
+        @Override
+        boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        synchronized long size() {
+            return size;
+        }
+
+        @Override
+        synchronized MemoryNode copy() {
+            RegularFile copy = new RegularFile();
+            copy.data = size == 0 ? EMPTY : Arrays.copyOf(data, size);
+            copy.size = size;
+            return copy;
+        }
+
+        synchronized int read(long position, ByteBuffer dst) {
+            if (position >= size)
+                return -1;
+
+            int count = (int) Math.min(dst.remaining(), size - position);
+            dst.put(data, (int) position, count);
+            lastAccessTime = now();
+            return count;
+        }
+
+        synchronized int write(long position, ByteBuffer src) throws IOException {
+            int count = src.remaining();
+            long end = position + count;
+            if (end > MAX_SIZE)
+                throw new IOException("The in-memory file can't be larger than " + MAX_SIZE + " bytes");
+
+            ensureCapacity((int) end);
+            if (position > size) //the gap of a sparse write reads as zeros
+                Arrays.fill(data, size, (int) position, (byte) 0);
+
+            src.get(data, (int) position, count);
+            size = Math.max(size, (int) end);
+            touch();
+            return count;
+        }
+
+        synchronized int append(ByteBuffer src) throws IOException {
+            return write(size, src);
+        }
+
+        synchronized void truncate(long newSize) {
+            if (newSize < size) {
+                size = (int) newSize;
+                touch();
+            }
+        }
+
+        synchronized void addLock(FileLock lock) {
+            for (FileLock held : locks) {
+                if (held.overlaps(lock.position(), lock.size()))
+                    throw new OverlappingFileLockException();
+            }
+            locks.add(lock);
+        }
+
+        synchronized void removeLock(FileLock lock) {
+            locks.remove(lock);
+        }
+
+        synchronized List<FileLock> removeLocksOf(Object channel) {
+            List<FileLock> removed = new ArrayList<>();
+            for (Iterator<FileLock> it = locks.iterator(); it.hasNext(); ) {
+                FileLock lock = it.next();
+                if (lock.acquiredBy() == channel) {
+                    it.remove();
+                    removed.add(lock);
+                }
+            }
+            return removed;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                int newLength = (int) Math.min(MAX_SIZE, Math.max(capacity, Math.max(64L, data.length * 2L)));
+                data = Arrays.copyOf(data, newLength);
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link Path} of a {@link MemoryFileSystem}.
+ *
+ * <p>
+ * The paths have the unix form: the separator is '/' and the only root is "/".
+ * Relative paths are resolved against the root.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class MemoryPath implements Path {
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private final MemoryFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+
+    private String string;
+
+    private MemoryPath(MemoryFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    static MemoryPath root(MemoryFileSystem fileSystem) {
+        return new MemoryPath(fileSystem, true, NO_NAMES);
+    }
+
+    static MemoryPath parse(MemoryFileSystem fileSystem, String path) {
+        int nul = path.indexOf('\u0000');
+        if (nul >= 0)
+            throw new InvalidPathException(path, "Nul character not allowed", nul);
+
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start)
+                    names.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return new MemoryPath(fileSystem, path.startsWith("/"), names.toArray(NO_NAMES));
+    }
+
+    /**
+     * @return the names of the absolute, normalized form of this path; these identify the node of the path
+     */
+    String[] nodeNames() {
+        return toAbsolutePath().normalize().names;
+    }
+
+    @Override
+    public MemoryFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public MemoryPath getRoot() {
+        return absolute ? root(fileSystem) : null;
+    }
+
+    @Override
+    public MemoryPath getFileName() {
+        return names.length == 0 ? null : new MemoryPath(fileSystem, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public MemoryPath getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute))
+            return null;
+        return new MemoryPath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public MemoryPath getName(int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public MemoryPath subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex)
+            throw new IllegalArgumentException("Invalid subpath [" + beginIndex + ", " + endIndex + ") of " + this);
+        return new MemoryPath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof MemoryPath) || other.getFileSystem() != fileSystem)
+            return false;
+
+        MemoryPath that = (MemoryPath) other;
+        if (that.absolute != absolute || that.names.length > names.length)
+            return false;
+        for (int i = 0; i < that.names.length; i++) {
+            if (!that.names[i].equals(names[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(parse(fileSystem, other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof MemoryPath) || other.getFileSystem() != fileSystem)
+            return false;
+
+        MemoryPath that = (MemoryPath) other;
+        if (that.absolute)
+            return equals(that);
+        if (that.names.length > names.length || (that.names.length == 0 && names.length > 0))
+            return false;
+        int offset = names.length - that.names.length;
+        for (int i = 0; i < that.names.length; i++) {
+            if (!that.names[i].equals(names[offset + i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(parse(fileSystem, other));
+    }
+
+    @Override
+    public MemoryPath normalize() {
+        List<String> normalized = new ArrayList<>(names.length);
+        boolean changed = false;
+        for (String name : names) {
+            if (name.equals(".")) {
+                changed = true;
+            } else if (name.equals("..")) {
+                int last = normalized.size() - 1;
+                if (last >= 0 && !normalized.get(last).equals("..")) {
+                    normalized.remove(last);
+                    changed = true;
+                } else if (absolute) {
+                    changed = true; //the parent of the root is the root
+                } else {
+                    normalized.add(name);
+                }
+            } else {
+                normalized.add(name);
+            }
+        }
+        return changed ? new MemoryPath(fileSystem, absolute, normalized.toArray(NO_NAMES)) : this;
+    }
+
+    @Override
+    public MemoryPath resolve(Path other) {
+        MemoryPath that = checkPath(other);
+        if (that.absolute)
+            return that;
+        if (that.names.length == 0)
+            return this;
+
+        String[] resolved = Arrays.copyOf(names, names.length + that.names.length);
+        System.arraycopy(that.names, 0, resolved, names.length, that.names.length);
+        return new MemoryPath(fileSystem, absolute, resolved);
+    }
+
+    @Override
+    public MemoryPath resolve(String other) {
+        return resolve(parse(fileSystem, other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        MemoryPath parent = getParent();
+        return parent == null ? checkPath(other) : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(parse(fileSystem, other));
+    }
+
+    @Override
+    public MemoryPath relativize(Path other) {
+        MemoryPath that = checkPath(other);
+        if (that.absolute != absolute)
+            throw new IllegalArgumentException("'" + other + "' can't be relativized against '" + this + "'");
+
+        int common = 0;
+        while (common < names.length && common < that.names.length && names[common].equals(that.names[common]))
+            common++;
+
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++)
+            relative.add("..");
+        relative.addAll(Arrays.asList(that.names).subList(common, that.names.length));
+        return new MemoryPath(fileSystem, false, relative.toArray(NO_NAMES));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(MemoryFileSystemProvider.SCHEME, fileSystem.getName(), toAbsolutePath().toString(), null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public MemoryPath toAbsolutePath() {
+        return absolute ? this : new MemoryPath(fileSystem, true, names);
+    }
+
+    @Override
+    public MemoryPath toRealPath(LinkOption... options) throws IOException {
+        MemoryPath real = toAbsolutePath().normalize();
+        fileSystem.checkExists(real);
+        return real;
+    }
+
+    /**
+     * An in-memory path can't be represented by a {@link File}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("An in-memory path can't be converted to a File: " + this);
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("The in-memory file system doesn't support watch services");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        return register(watcher, events, new WatchEvent.Modifier[0]);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> elements = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++)
+            elements.add(getName(i));
+        return elements.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(checkPath(other).toString());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof MemoryPath))
+            return false;
+
+        MemoryPath that = (MemoryPath) obj;
+        return that.fileSystem == fileSystem && that.absolute == absolute && Arrays.equals(that.names, names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileSystem, absolute) * 31 + Arrays.hashCode(names);
+    }
+
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            if (absolute)
+                builder.append('/');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0)
+                    builder.append('/');
+                builder.append(names[i]);
+            }
+            string = result = builder.toString();
+        }
+        return result;
+    }
+
+    private MemoryPath checkPath(Path other) {
+        if (!(Objects.requireNonNull(other) instanceof MemoryPath) || other.getFileSystem() != fileSystem)
+            throw new ProviderMismatchException("The path doesn't belong to the same in-memory file system: " + other);
+        return (MemoryPath) other;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+import com.jfilegoodies.watch.ChangeListener;
+import com.jfilegoodies.watch.ChangeSet;
+import com.jfilegoodies.watch.ChangeTracker;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Publisher} that delivers the {@link ChangeSet}s of a {@link ChangeTracker}.
+ *
+ * <p>
+ * File system events can't be paused, so while a subscriber has no demand, the change sets
+ * published by the tracker are merged (see {@link ChangeSet#merge(ChangeSet, ChangeSet)}) into one pending
+ * change set. The memory used by a slow subscriber is bounded by the number of distinct changed paths
+ * rather than by the number of events. The subscription never completes by itself; cancel it to stop
+ * receiving the changes.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ChangeSetPublisher implements Publisher<ChangeSet> {
+
+    private final ChangeTracker tracker;
+    private final Executor executor;
+
+    /**
+     * @param tracker the tracker that produces the change sets
+     */
+    public ChangeSetPublisher(ChangeTracker tracker) {
+        this(tracker, DemandSubscription.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param tracker  the tracker that produces the change sets
+     * @param executor the executor that delivers the change sets to the subscribers
+     */
+    public ChangeSetPublisher(ChangeTracker tracker, Executor executor) {
+        this.tracker = Objects.requireNonNull(tracker, "The tracker mustn't be null");
+        this.executor = Objects.requireNonNull(executor, "The executor mustn't be null");
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ChangeSet> subscriber) {
+        Objects.requireNonNull(subscriber, "The subscriber mustn't be null");
+        ChangeSubscription subscription = new ChangeSubscription(subscriber);
+        tracker.addListener(subscription);
+        subscription.start();
+    }
+
+    private final class ChangeSubscription extends DemandSubscription<ChangeSet> implements ChangeListener {
+
+        private ChangeSet pending;
+
+        private ChangeSubscription(Subscriber<? super ChangeSet> subscriber) {
+            super(subscriber, executor);
+        }
+
+        @Override
+        public void onChanges(ChangeSet changes) {
+            synchronized (this) {
+                pending = pending == null ? changes : ChangeSet.merge(pending, changes);
+            }
+            schedule();
+        }
+
+        @Override
+        synchronized ChangeSet poll() {
+            ChangeSet next = pending;
+            pending = null;
+            return next == null || next.isEmpty() ? null : next;
+        }
+
+        @Override
+        boolean isExhausted() {
+            return false;
+        }
+
+        @Override
+        void release() {
+            tracker.removeListener(this);
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+}
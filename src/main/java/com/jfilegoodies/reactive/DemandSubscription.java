@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+import com.jfilegoodies.util.IoExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The base of the library's subscriptions. It tracks the demand of the subscriber and
+ * pulls the items from the source only while there is outstanding demand, so the source
+ * pauses when the subscriber is slow.
+ *
+ * <p>
+ * The items are delivered by a drain loop running on the given executor; the loop is
+ * never run concurrently, and {@link Subscriber#onSubscribe(Subscription)} is called by it
+ * as well, so the subscriber's methods are called serially.
+ *
+ * @param <T> the type of the items
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+abstract class DemandSubscription<T> implements Subscription, Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DemandSubscription.class);
+
+    /**
+     * The executor used by the publishers when no executor is specified.
+     */
+    static final Executor DEFAULT_EXECUTOR = IoExecutors.newIoExecutor("jfilegoodies-publisher");
+
+    private final Subscriber<? super T> subscriber;
+    private final Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+    private boolean subscribed;
+    private boolean done;
+
+    DemandSubscription(Subscriber<? super T> subscriber, Executor executor) {
+        this.subscriber = subscriber;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the next item, or {@code null} if no item is available at the moment.
+     */
+    abstract T poll() throws Exception;
+
+    /**
+     * Checks whether the source has no more items. It's called after every drain, even if there's no
+     * demand, so it may look ahead (e.g. by {@code hasNext()}), but it mustn't consume an item.
+     *
+     * @return {@code true} if the source has no more items
+     */
+    abstract boolean isExhausted() throws Exception;
+
+    /**
+     * Releases the resources of the source; called exactly once, on the drain thread.
+     */
+    abstract void release();
+
+    /**
+     * Calls the subscriber's {@link Subscriber#onSubscribe(Subscription)} on the drain loop.
+     */
+    final void start() {
+        schedule();
+    }
+
+    @Override
+    public final void request(long n) {
+        if (n <= 0) {
+            invalidRequest = new IllegalArgumentException("The number of requested items must be positive (" + n + ")");
+        } else {
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+        }
+        schedule();
+    }
+
+    @Override
+    public final void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    /**
+     * Runs the drain loop on the executor, unless it's already running.
+     */
+    final void schedule() {
+        if (workInProgress.getAndIncrement() == 0)
+            executor.execute(this);
+    }
+
+    @Override
+    public final void run() {
+        int missed = 1;
+        do {
+            if (!done)
+                drain();
+            missed = workInProgress.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain() {
+        if (!subscribed) {
+            subscribed = true;
+            try {
+                //the requests made here are only served after it returns, by the same loop
+                subscriber.onSubscribe(this);
+            } catch (RuntimeException e) {
+                logger.error("A subscriber has thrown an exception from onSubscribe", e);
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            finish();
+            return;
+        }
+        if (invalidRequest != null) {
+            finish();
+            subscriber.onError(invalidRequest);
+            return;
+        }
+
+        long requested = demand.get();
+        long emitted = 0;
+        boolean exhausted = false;
+        try {
+            while (emitted != requested && !cancelled) {
+                T item = poll();
+                if (item == null)
+                    break;
+
+                try {
+                    subscriber.onNext(item);
+                } catch (RuntimeException e) {
+                    //the subscriber has broken the contract; the subscription is considered cancelled
+                    logger.error("A subscriber has thrown an exception from onNext", e);
+                    cancelled = true;
+                }
+                emitted++;
+            }
+            //checked regardless of the demand, so a subscriber that requests exactly the remaining items is completed
+            if (!cancelled)
+                exhausted = isExhausted();
+        } catch (Exception e) {
+            finish();
+            subscriber.onError(e);
+            return;
+        }
+
+        if (emitted > 0 && requested != Long.MAX_VALUE)
+            demand.addAndGet(-emitted);
+
+        if (cancelled) {
+            finish();
+        } else if (exhausted) {
+            finish();
+            subscriber.onComplete();
+        }
+    }
+
+    private void finish() {
+        done = true;
+        release();
+    }
+}
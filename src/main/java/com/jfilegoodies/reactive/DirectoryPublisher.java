@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+import com.jfilegoodies.FormattedFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Publisher} that streams the entries of a directory (or a directory tree)
+ * as {@link FormattedFile}s.
+ *
+ * <p>
+ * The entries are read through {@link DirectoryStream}s incrementally, only as far as the
+ * subscriber has requested them; the iteration pauses while the subscriber has no demand.
+ * Hence, the memory used by a scan depends on the demand (and the depth of the tree), not on
+ * the size of the directory. Every subscriber gets its own, independent scan.
+ *
+ * <pre>{@code
+ * DirectoryPublisher.recursive(Paths.get("huge/directory"))
+ *         .subscribe(new Subscriber<FormattedFile>() {...});
+ * }</pre>
+ *
+ * <p>
+ * The entries of a directory are emitted in the order the file system returns them; in a recursive
+ * scan, a directory is emitted before its content. Symbolic links are not followed.
+ * Subdirectories that can't be opened are skipped, while the failure of the root directory is signaled
+ * through {@link Subscriber#onError(Throwable)}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class DirectoryPublisher implements Publisher<FormattedFile> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryPublisher.class);
+
+    private final Path directory;
+    private final boolean recursive;
+    private final Executor executor;
+
+    private DirectoryPublisher(Path directory, boolean recursive, Executor executor) {
+        this.directory = Objects.requireNonNull(directory, "The directory mustn't be null");
+        this.recursive = recursive;
+        this.executor = Objects.requireNonNull(executor, "The executor mustn't be null");
+    }
+
+    /**
+     * Creates a publisher that streams the direct children of the given directory.
+     *
+     * @param directory the directory to scan
+     * @return the publisher
+     */
+    public static DirectoryPublisher of(Path directory) {
+        return new DirectoryPublisher(directory, false, DemandSubscription.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Calls the {@link #of(Path)} with the given {@link File} converted to a {@link Path}.
+     *
+     * @see #of(Path)
+     */
+    public static DirectoryPublisher of(File directory) {
+        return of(directory.toPath());
+    }
+
+    /**
+     * Creates a publisher that streams all the entries of the given directory tree.
+     *
+     * @param directory the root of the tree
+     * @return the publisher
+     */
+    public static DirectoryPublisher recursive(Path directory) {
+        return new DirectoryPublisher(directory, true, DemandSubscription.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Returns a publisher that reads the directories and delivers the entries on the given executor.
+     *
+     * @param executor the executor
+     * @return the new publisher
+     */
+    public DirectoryPublisher withExecutor(Executor executor) {
+        return new DirectoryPublisher(directory, recursive, executor);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super FormattedFile> subscriber) {
+        Objects.requireNonNull(subscriber, "The subscriber mustn't be null");
+        new ScanSubscription(subscriber).start();
+    }
+
+    private final class ScanSubscription extends DemandSubscription<FormattedFile> {
+
+        private final Deque<DirectoryStream<Path>> streams = new ArrayDeque<>();
+        private final Deque<Iterator<Path>> iterators = new ArrayDeque<>();
+        private boolean opened;
+
+        private ScanSubscription(Subscriber<? super FormattedFile> subscriber) {
+            super(subscriber, executor);
+        }
+
+        @Override
+        FormattedFile poll() throws IOException {
+            if (!opened) {
+                opened = true;
+                push(directory);
+            }
+
+            try {
+                while (!iterators.isEmpty()) {
+                    Iterator<Path> iterator = iterators.peek();
+                    if (!iterator.hasNext()) {
+                        iterators.pop();
+                        streams.pop().close();
+                        continue;
+                    }
+
+                    Path entry = iterator.next();
+                    if (recursive && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        try {
+                            push(entry);
+                        } catch (IOException e) {
+                            logger.debug("Couldn't open '{}', skipping it", entry, e);
+                        }
+                    }
+                    return new FormattedFile(entry.toFile());
+                }
+                return null;
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void push(Path directory) throws IOException {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+            streams.push(stream);
+            iterators.push(stream.iterator());
+        }
+
+        @Override
+        boolean isExhausted() throws IOException {
+            if (!opened)
+                return false;
+            try {
+                //closing the finished directories, so the last entry isn't followed by one more request
+                while (!iterators.isEmpty() && !iterators.peek().hasNext()) {
+                    iterators.pop();
+                    streams.pop().close();
+                }
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+            return iterators.isEmpty();
+        }
+
+        @Override
+        void release() {
+            while (!streams.isEmpty()) {
+                try {
+                    streams.pop().close();
+                } catch (IOException e) {
+                    logger.debug("Couldn't close a directory stream", e);
+                }
+            }
+            iterators.clear();
+        }
+    }
+}
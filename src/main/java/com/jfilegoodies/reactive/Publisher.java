@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+/**
+ * A producer of items that are delivered to {@link Subscriber}s on demand.
+ *
+ * <p>
+ * It has exactly the same contract as {@code java.util.concurrent.Flow.Publisher} (and the Reactive Streams
+ * {@code Publisher}); it's declared by the library because {@code Flow} is not available on Java 8.
+ * On Java 9+ it can be adapted to a {@code Flow.Publisher} with a thin wrapper that forwards the calls.
+ *
+ * @param <T> the type of the published items
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+@FunctionalInterface
+public interface Publisher<T> {
+
+    /**
+     * Adds the given subscriber. The subscriber receives a {@link Subscription} through
+     * {@link Subscriber#onSubscribe(Subscription)}, and items only after it has requested them.
+     *
+     * @param subscriber the subscriber; mustn't be null
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+/**
+ * A receiver of the items of a {@link Publisher}.
+ *
+ * <p>
+ * It has exactly the same contract as {@code java.util.concurrent.Flow.Subscriber}.
+ * The methods of a subscriber are never called concurrently.
+ *
+ * @param <T> the type of the received items
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Called before any other method with the subscription that controls the demand.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with the next item; never more times than it has been requested.
+     */
+    void onNext(T item);
+
+    /**
+     * Called when the publisher has failed; no more methods are called after it.
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called when all the items have been delivered; no more methods are called after it.
+     */
+    void onComplete();
+}
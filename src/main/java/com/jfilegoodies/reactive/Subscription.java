@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.reactive;
+
+/**
+ * Links a {@link Publisher} and a {@link Subscriber}.
+ *
+ * <p>
+ * It has exactly the same contract as {@code java.util.concurrent.Flow.Subscription}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public interface Subscription {
+
+    /**
+     * Adds {@code n} items to the demand of the subscriber.
+     * If {@code n} is not positive, the subscriber receives an {@link IllegalArgumentException}
+     * through {@link Subscriber#onError(Throwable)}.
+     *
+     * @param n the number of additionally requested items
+     */
+    void request(long n);
+
+    /**
+     * Stops the delivery of the items; the publisher releases its resources eventually.
+     */
+    void cancel();
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton over bytes that finds all the occurrences of multiple literals
+ * in one pass.
+ *
+ * <p>
+ * The automaton is compiled into a dense transition table (256 entries per state), so scanning
+ * costs one array lookup per input byte regardless of the number of literals. The line feeds are
+ * counted in the same pass, so the line of a match is known without scanning the input again.
+ * The {@link Cursor} can be carried between consecutive buffers, so a file can be scanned window by window.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class ByteAutomaton {
+
+    /**
+     * Receives the matches found by {@link #scan(ByteBuffer, int, int, Cursor, long, MatchSink)}.
+     */
+    interface MatchSink {
+        /**
+         * @param literal   the index of the literal
+         * @param endOffset the offset after the last byte of the match
+         * @param lineFeeds the number of line feeds before the end offset (including the ones of the match)
+         */
+        void onMatch(int literal, long endOffset, long lineFeeds);
+    }
+
+    /**
+     * The position of a scan: the state of the automaton and the number of the line feeds seen so far.
+     */
+    static final class Cursor {
+        private int state;
+        private long lineFeeds;
+    }
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] literalLengths;
+    private final int[] literalLineFeeds;
+
+    ByteAutomaton(List<byte[]> literals, boolean ignoreCase) {
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> nodeOutputs = new ArrayList<>();
+        trie.add(newNode());
+        nodeOutputs.add(NO_OUTPUT);
+
+        literalLengths = new int[literals.size()];
+        literalLineFeeds = new int[literals.size()];
+        for (int literal = 0; literal < literals.size(); literal++) {
+            byte[] bytes = literals.get(literal);
+            if (bytes.length == 0)
+                throw new IllegalArgumentException("The literals mustn't be empty");
+            literalLengths[literal] = bytes.length;
+            for (byte b : bytes) {
+                if (b == '\n')
+                    literalLineFeeds[literal]++;
+            }
+
+            int state = 0;
+            for (byte b : bytes) {
+                int symbol = fold(b & 0xFF, ignoreCase);
+                int next = trie.get(state)[symbol];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newNode());
+                    nodeOutputs.add(NO_OUTPUT);
+                    trie.get(state)[symbol] = next;
+                    if (ignoreCase && symbol != upper(symbol))
+                        trie.get(state)[upper(symbol)] = next;
+                }
+                state = next;
+            }
+            nodeOutputs.set(state, append(nodeOutputs.get(state), literal));
+        }
+
+        int states = trie.size();
+        transitions = new int[states * 256];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+
+        //breadth-first, so the failure state of a node is always complete before the node's children
+        Deque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = NO_OUTPUT;
+        for (int symbol = 0; symbol < 256; symbol++) {
+            int child = trie.get(0)[symbol];
+            transitions[symbol] = child < 0 ? 0 : child;
+            if (child > 0 && outputs[child] == null) {
+                outputs[child] = nodeOutputs.get(child);
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int symbol = 0; symbol < 256; symbol++) {
+                int child = trie.get(state)[symbol];
+                int fallback = transitions[failure[state] * 256 + symbol];
+                if (child < 0) {
+                    transitions[state * 256 + symbol] = fallback;
+                } else {
+                    transitions[state * 256 + symbol] = child;
+                    if (outputs[child] == null) {
+                        failure[child] = fallback;
+                        outputs[child] = merge(nodeOutputs.get(child), outputs[fallback]);
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the length of the literal in bytes
+     */
+    int literalLength(int literal) {
+        return literalLengths[literal];
+    }
+
+    /**
+     * @return the number of line feeds in the literal
+     */
+    int literalLineFeeds(int literal) {
+        return literalLineFeeds[literal];
+    }
+
+    /**
+     * Scans the bytes of the buffer between the given indexes.
+     *
+     * @param buffer     the buffer
+     * @param from       the first index to scan
+     * @param to         the index after the last one to scan
+     * @param cursor     the cursor of the previous scans of the input; a new one for the first scan; it's updated
+     * @param baseOffset the offset of the buffer's first byte in the whole input
+     * @param sink       the receiver of the matches
+     */
+    void scan(ByteBuffer buffer, int from, int to, Cursor cursor, long baseOffset, MatchSink sink) {
+        int[] transitions = this.transitions;
+        int[][] outputs = this.outputs;
+        int state = cursor.state;
+        long lineFeeds = cursor.lineFeeds;
+        for (int i = from; i < to; i++) {
+            int symbol = buffer.get(i) & 0xFF;
+            if (symbol == '\n')
+                lineFeeds++;
+            state = transitions[(state << 8) | symbol];
+            int[] output = outputs[state];
+            if (output.length != 0) {
+                for (int literal : output)
+                    sink.onMatch(literal, baseOffset + i + 1, lineFeeds);
+            }
+        }
+        cursor.state = state;
+        cursor.lineFeeds = lineFeeds;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[256];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static int fold(int symbol, boolean ignoreCase) {
+        return ignoreCase && symbol >= 'A' && symbol <= 'Z' ? symbol + ('a' - 'A') : symbol;
+    }
+
+    private static int upper(int symbol) {
+        return symbol >= 'a' && symbol <= 'z' ? symbol - ('a' - 'A') : symbol;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited == null || inherited.length == 0)
+            return own;
+        if (own.length == 0)
+            return inherited;
+        int[] result = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, result, own.length, inherited.length);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.search;
+
+import com.jfilegoodies.FormattedFile;
+
+/**
+ * An occurrence of a literal found by a {@link ContentSearch}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ContentMatch {
+
+    private final FormattedFile file;
+    private final String literal;
+    private final long offset;
+    private final long lineNumber;
+    private final String line;
+
+    ContentMatch(FormattedFile file, String literal, long offset, long lineNumber, String line) {
+        this.file = file;
+        this.literal = literal;
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+        this.line = line;
+    }
+
+    /**
+     * Returns the file that contains the match.
+     */
+    public FormattedFile getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the literal that has been found.
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * Returns the byte offset of the match's first byte in the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of the line that contains the match (starting from 1).
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the line that contains the match (without the line terminator);
+     * very long lines are truncated around the match.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%d: %s", file.getPath(), lineNumber, line);
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.search;
+
+import com.jfilegoodies.FormattedFile;
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Searches literal strings in the content of the files of a directory tree, like a
+ * lightweight {@code grep -F}.
+ *
+ * <p>
+ * The files are memory-mapped and their bytes are scanned by an Aho-Corasick automaton,
+ * so any number of literals are found in one pass over the content. Files are scanned in parallel;
+ * files that look binary (they contain a NUL byte among their first bytes) are skipped by default.
+ * The files can be filtered by their extensions (see {@link FormattedFile#getExtension()}).
+ *
+ * <pre>{@code
+ * SearchSummary summary = ContentSearch.forLiterals("TODO", "FIXME")
+ *         .withExtensions("java", "kt")
+ *         .ordered()
+ *         .search(Paths.get("src"), match -> System.out.println(match));
+ * }</pre>
+ *
+ * <p>
+ * The matches are delivered to the consumer on the calling thread: in the order of the walk if the
+ * search is {@link #ordered()}, otherwise as soon as the files are scanned. The literals are encoded
+ * in UTF-8; {@link #ignoringCase()} folds only the ASCII letters.
+ *
+ * <p>
+ * A {@link ContentSearch} object is immutable; the {@code with...} methods return new objects.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ContentSearch {
+
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final int BINARY_CHECK_LENGTH = 8000;
+    private static final int MAX_LINE_CONTEXT = 512;
+
+    private final List<String> literals;
+    private final boolean ignoreCase;
+    private final Set<String> extensions;
+    private final boolean ordered;
+    private final boolean skipBinary;
+    private final int parallelism;
+    private final ByteAutomaton automaton;
+
+    private ContentSearch(List<String> literals, boolean ignoreCase, Set<String> extensions,
+                          boolean ordered, boolean skipBinary, int parallelism) {
+        this.literals = literals;
+        this.ignoreCase = ignoreCase;
+        this.extensions = extensions;
+        this.ordered = ordered;
+        this.skipBinary = skipBinary;
+        this.parallelism = parallelism;
+
+        List<byte[]> encoded = new ArrayList<>(literals.size());
+        literals.forEach(literal -> encoded.add(literal.getBytes(StandardCharsets.UTF_8)));
+        this.automaton = new ByteAutomaton(encoded, ignoreCase);
+    }
+
+    /**
+     * Creates a search for the given literals.
+     *
+     * @param literals the literals to find; mustn't be empty
+     * @return the search
+     * @throws IllegalArgumentException if no literal is given or a literal is empty
+     */
+    public static ContentSearch forLiterals(String... literals) {
+        return forLiterals(Arrays.asList(literals));
+    }
+
+    /**
+     * Creates a search for the given literals.
+     *
+     * @param literals the literals to find; mustn't be empty
+     * @return the search
+     * @throws IllegalArgumentException if no literal is given or a literal is empty
+     */
+    public static ContentSearch forLiterals(Collection<String> literals) {
+        if (literals.isEmpty())
+            throw new IllegalArgumentException("At least one literal is required");
+        List<String> distinct = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(literals)));
+        return new ContentSearch(distinct, false, Collections.emptySet(), false, true,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns a search that ignores the case of the ASCII letters.
+     */
+    public ContentSearch ignoringCase() {
+        return new ContentSearch(literals, true, extensions, ordered, skipBinary, parallelism);
+    }
+
+    /**
+     * Returns a search that only scans the files with the given extensions (case-insensitively).
+     *
+     * @param extensions the extensions without the dot; if none is given, all the files are scanned
+     */
+    public ContentSearch withExtensions(String... extensions) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String extension : extensions)
+            normalized.add(extension.toLowerCase(Locale.ROOT));
+        return new ContentSearch(literals, ignoreCase, Collections.unmodifiableSet(normalized), ordered, skipBinary, parallelism);
+    }
+
+    /**
+     * Returns a search that delivers the matches in the order the files are walked
+     * (and in the order of their offsets within a file).
+     */
+    public ContentSearch ordered() {
+        return new ContentSearch(literals, ignoreCase, extensions, true, skipBinary, parallelism);
+    }
+
+    /**
+     * Returns a search that scans the binary files too.
+     */
+    public ContentSearch includingBinaryFiles() {
+        return new ContentSearch(literals, ignoreCase, extensions, ordered, false, parallelism);
+    }
+
+    /**
+     * Returns a search that scans at most {@code parallelism} files at the same time.
+     *
+     * @throws IllegalArgumentException if the {@code parallelism} is not positive
+     */
+    public ContentSearch withParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive");
+        return new ContentSearch(literals, ignoreCase, extensions, ordered, skipBinary, parallelism);
+    }
+
+    /**
+     * Searches the literals in the files of the tree and collects the matches.
+     *
+     * @param root the root directory (or a single file)
+     * @return the matches
+     * @throws IOException if the root can't be read or the search has been interrupted
+     */
+    public List<ContentMatch> search(Path root) throws IOException {
+        List<ContentMatch> matches = new ArrayList<>();
+        search(root, matches::add);
+        return matches;
+    }
+
+    /**
+     * Searches the literals in the files of the tree. Files that can't be read don't stop the search,
+     * they are reported by the returned {@link SearchSummary}.
+     *
+     * @param root     the root directory (or a single file)
+     * @param consumer receives the matches on the calling thread
+     * @return the statistics of the search
+     * @throws IOException if the root can't be read or the search has been interrupted
+     */
+    public SearchSummary search(Path root, Consumer<? super ContentMatch> consumer) throws IOException {
+        Objects.requireNonNull(consumer, "The consumer mustn't be null");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, IoExecutors.daemonThreadFactory("jfilegoodies-search"));
+        try {
+            Run run = new Run(executor, consumer);
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (attributes.isRegularFile()) {
+                        FormattedFile formattedFile = new FormattedFile(file.toFile());
+                        if (extensions.isEmpty() || extensions.contains(formattedFile.getExtension().toLowerCase(Locale.ROOT)))
+                            run.submit(formattedFile);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+                    if (file.equals(root))
+                        throw exception;
+                    run.failures.put(file, exception);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return run.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Searches the literals in one file (on the calling thread).
+     *
+     * @param file the file
+     * @return the matches in the order of their offsets; an empty list if the file looks binary and
+     *         the binary files are skipped
+     * @throws IOException if the file can't be read
+     */
+    public List<ContentMatch> searchFile(Path file) throws IOException {
+        return scan(new FormattedFile(file.toFile())).matches;
+    }
+
+    private FileResult scan(FormattedFile file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            //literal index, start offset, line number
+            List<long[]> found = new ArrayList<>();
+            ByteAutomaton.Cursor cursor = new ByteAutomaton.Cursor();
+            for (long windowStart = 0; windowStart < size; windowStart += WINDOW_SIZE) {
+                int length = (int) Math.min(WINDOW_SIZE, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                if (windowStart == 0 && skipBinary && looksBinary(window))
+                    return new FileResult(file.toPath(), Collections.emptyList(), size, true, null);
+                automaton.scan(window, 0, length, cursor, windowStart, (literal, end, lineFeeds) -> found.add(new long[]{
+                        literal, end - automaton.literalLength(literal), 1 + lineFeeds - automaton.literalLineFeeds(literal)}));
+            }
+
+            if (found.isEmpty())
+                return new FileResult(file.toPath(), Collections.emptyList(), size, false, null);
+            found.sort(Comparator.comparingLong(match -> match[1]));
+            return new FileResult(file.toPath(), resolveLines(file, channel, size, found), size, false, null);
+        }
+    }
+
+    private static boolean looksBinary(ByteBuffer window) {
+        int limit = Math.min(window.limit(), BINARY_CHECK_LENGTH);
+        for (int i = 0; i < limit; i++) {
+            if (window.get(i) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    private List<ContentMatch> resolveLines(FormattedFile file, FileChannel channel, long size, List<long[]> found) throws IOException {
+        List<ContentMatch> matches = new ArrayList<>(found.size());
+        for (long[] match : found)
+            matches.add(new ContentMatch(file, literals.get((int) match[0]), match[1], match[2], lineAround(channel, match[1], size)));
+        return matches;
+    }
+
+    private static String lineAround(FileChannel channel, long offset, long size) throws IOException {
+        long from = Math.max(0, offset - MAX_LINE_CONTEXT);
+        long to = Math.min(size, offset + MAX_LINE_CONTEXT);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+            //reading the whole context
+        }
+
+        int match = (int) (offset - from);
+        int start = match;
+        while (start > 0 && buffer.get(start - 1) != '\n')
+            start--;
+        int end = match;
+        while (end < buffer.position() && buffer.get(end) != '\n')
+            end++;
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+        return new String(buffer.array(), start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static final class FileResult {
+        private final Path path;
+        private final List<ContentMatch> matches;
+        private final long size;
+        private final boolean binary;
+        private final IOException failure;
+
+        private FileResult(Path path, List<ContentMatch> matches, long size, boolean binary, IOException failure) {
+            this.path = path;
+            this.matches = matches;
+            this.size = size;
+            this.binary = binary;
+            this.failure = failure;
+        }
+
+        private static FileResult failed(Path path, IOException failure) {
+            return new FileResult(path, Collections.emptyList(), 0, false, failure);
+        }
+    }
+
+    /**
+     * The state of one search: schedules the scans and delivers their results.
+     */
+    private final class Run {
+        private final ExecutorService executor;
+        //only used by the unordered searches; the ordered ones wait for the futures in the order of the walk
+        private final CompletionService<FileResult> completionService;
+        private final Deque<Future<FileResult>> orderedInFlight = new ArrayDeque<>();
+        private final Consumer<? super ContentMatch> consumer;
+        private final int maxInFlight = parallelism * 4;
+        private final Map<Path, IOException> failures = new LinkedHashMap<>();
+        private int inFlight;
+        private long scannedFiles;
+        private long skippedBinaryFiles;
+        private long scannedBytes;
+        private long matches;
+
+        private Run(ExecutorService executor, Consumer<? super ContentMatch> consumer) {
+            this.executor = executor;
+            this.completionService = new ExecutorCompletionService<>(executor);
+            this.consumer = consumer;
+        }
+
+        private void submit(FormattedFile file) throws IOException {
+            Callable<FileResult> task = () -> {
+                try {
+                    return scan(file);
+                } catch (IOException e) {
+                    return FileResult.failed(file.toPath(), e);
+                }
+            };
+            inFlight++;
+
+            if (ordered) {
+                orderedInFlight.add(executor.submit(task));
+                while (!orderedInFlight.isEmpty() && (orderedInFlight.peek().isDone() || inFlight > maxInFlight))
+                    deliver(await(orderedInFlight.poll()));
+            } else {
+                completionService.submit(task);
+                Future<FileResult> completed;
+                while ((completed = completionService.poll()) != null)
+                    deliver(await(completed));
+                if (inFlight > maxInFlight)
+                    deliver(await(take()));
+            }
+        }
+
+        private SearchSummary finish() throws IOException {
+            while (inFlight > 0)
+                deliver(await(ordered ? orderedInFlight.poll() : take()));
+            return new SearchSummary(scannedFiles, skippedBinaryFiles, scannedBytes, matches, failures);
+        }
+
+        private Future<FileResult> take() throws InterruptedIOException {
+            try {
+                return completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The search has been interrupted");
+            }
+        }
+
+        private FileResult await(Future<FileResult> future) throws InterruptedIOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The search has been interrupted");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unexpected failure while scanning a file", e.getCause());
+            }
+        }
+
+        private void deliver(FileResult result) {
+            inFlight--;
+            if (result.failure != null) {
+                failures.put(result.path, result.failure);
+            } else if (result.binary) {
+                skippedBinaryFiles++;
+            } else {
+                scannedFiles++;
+                scannedBytes += result.size;
+                matches += result.matches.size();
+                result.matches.forEach(consumer);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The statistics of a finished {@link ContentSearch}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class SearchSummary {
+
+    private final long scannedFiles;
+    private final long skippedBinaryFiles;
+    private final long scannedBytes;
+    private final long matches;
+    private final Map<Path, IOException> failures;
+
+    SearchSummary(long scannedFiles, long skippedBinaryFiles, long scannedBytes, long matches, Map<Path, IOException> failures) {
+        this.scannedFiles = scannedFiles;
+        this.skippedBinaryFiles = skippedBinaryFiles;
+        this.scannedBytes = scannedBytes;
+        this.matches = matches;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the number of files whose content has been scanned.
+     */
+    public long getScannedFiles() {
+        return scannedFiles;
+    }
+
+    /**
+     * Returns the number of files skipped because they looked binary.
+     */
+    public long getSkippedBinaryFiles() {
+        return skippedBinaryFiles;
+    }
+
+    /**
+     * Returns the total number of scanned bytes.
+     */
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+
+    /**
+     * Returns the number of matches.
+     */
+    public long getMatches() {
+        return matches;
+    }
+
+    /**
+     * Returns the files (or directories) that couldn't be read, with their errors.
+     */
+    public Map<Path, IOException> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchSummary{scannedFiles=%d, skippedBinaryFiles=%d, scannedBytes=%d, matches=%d, failures=%d}",
+                scannedFiles, skippedBinaryFiles, scannedBytes, matches, failures.size());
+    }
+}
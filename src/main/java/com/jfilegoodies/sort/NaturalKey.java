@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sort;
+
+import com.jfilegoodies.FormattedFile;
+
+import java.io.File;
+
+/**
+ * A precomputed collation key of a file name which orders the names naturally:
+ * the numbers in the names are compared by their values ({@code "file2"} before {@code "file10"}),
+ * the letters are compared case-insensitively and the extension is only a tiebreaker
+ * ({@code "a.txt"} before {@code "a b.doc"}).
+ *
+ * <p>
+ * The name is parsed once, when the key is created; a comparison is a plain scan of two {@code char}
+ * arrays, so it costs the same however many times the key is compared.
+ *
+ * <pre>{@code
+ * NaturalKey.of("file2.txt").compareTo(NaturalKey.of("file10.txt")) < 0
+ * }</pre>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class NaturalKey implements Comparable<NaturalKey> {
+
+    /**
+     * Starts a number in the key; a number is encoded as this marker, the count of its
+     * significant digits and the digits, so the longer number is the bigger one.
+     * The marker is the '0' character, so a number compares to the other characters
+     * as its digits would.
+     */
+    private static final char NUMBER = '0';
+
+    /**
+     * Separates the simple name from the extension; lower than any character, so the
+     * shorter simple name comes first whatever the extensions are.
+     */
+    private static final char EXTENSION_SEPARATOR = '\0';
+
+    private final char[] key;
+    private final String name;
+
+    private NaturalKey(char[] key, String name) {
+        this.key = key;
+        this.name = name;
+    }
+
+    /**
+     * @param file the file
+     * @return the key of the file's name
+     */
+    public static NaturalKey of(File file) {
+        FormattedFile formattedFile = file instanceof FormattedFile ? (FormattedFile) file : new FormattedFile(file);
+        String name = formattedFile.getName();
+        String simpleName = formattedFile.getSimpleName();
+        String extension = formattedFile.getExtension();
+        //the name without an extension is not a simple name for the FormattedFile
+        return simpleName.isEmpty() && extension.isEmpty() ? of(name, extension, name) : of(simpleName, extension, name);
+    }
+
+    /**
+     * @param fileName the name of a file (with its extension)
+     * @return the key of the name
+     */
+    public static NaturalKey of(String fileName) {
+        return of(new FormattedFile(fileName));
+    }
+
+    private static NaturalKey of(String simpleName, String extension, String name) {
+        //a one-digit number takes three chars (marker, count, digit)
+        char[] buffer = new char[(simpleName.length() + extension.length()) * 3 + 1];
+        int length = encode(simpleName, buffer, 0);
+        buffer[length++] = EXTENSION_SEPARATOR;
+        length = encode(extension, buffer, length);
+
+        char[] key = new char[length];
+        System.arraycopy(buffer, 0, key, 0, length);
+        return new NaturalKey(key, name);
+    }
+
+    private static int encode(String text, char[] buffer, int position) {
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                buffer[position++] = Character.toLowerCase(c);
+                i++;
+                continue;
+            }
+
+            //leading zeros are not significant; they only matter in the tiebreaker
+            while (i < text.length() - 1 && text.charAt(i) == '0' && isDigit(text.charAt(i + 1)))
+                i++;
+            int start = i;
+            while (i < text.length() && isDigit(text.charAt(i)))
+                i++;
+            buffer[position++] = NUMBER;
+            buffer[position++] = (char) Math.min(i - start, Character.MAX_VALUE);
+            text.getChars(start, i, buffer, position);
+            position += i - start;
+        }
+        return position;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the name that the key has been created from
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Compares the keys naturally; the names that are equal this way (e.g. they differ only in
+     * the case of the letters or in leading zeros) are ordered by {@link String#compareTo(String)}.
+     */
+    @Override
+    public int compareTo(NaturalKey other) {
+        char[] otherKey = other.key;
+        int length = Math.min(key.length, otherKey.length);
+        for (int i = 0; i < length; i++) {
+            if (key[i] != otherKey[i])
+                return key[i] - otherKey[i];
+        }
+        if (key.length != otherKey.length)
+            return key.length - otherKey.length;
+        return name.compareTo(other.name);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof NaturalKey && name.equals(((NaturalKey) obj).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
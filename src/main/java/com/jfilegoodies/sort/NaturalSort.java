@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sort;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.IntFunction;
+
+/**
+ * Sorts files by the natural order of their names (see {@link NaturalKey}).
+ *
+ * <p>
+ * The key of every file is computed once before the sort, so a listing of {@code n} files is parsed
+ * {@code n} times instead of {@code n log n} times as a comparator would do it. For more than
+ * {@link #PARALLEL_THRESHOLD} files the keys are computed in parallel and the array is sorted by
+ * {@link Arrays#parallelSort(Object[])}. The sort is stable: the files with the same name keep their order.
+ *
+ * <pre>{@code
+ * File[] files = directory.listFiles();
+ * NaturalSort.sort(files);
+ * }</pre>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class NaturalSort {
+
+    /**
+     * The number of the elements from which the sort runs in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    private NaturalSort() {
+    }
+
+    /**
+     * Returns a comparator of the natural order.
+     *
+     * <p>
+     * <i>Note: the comparator creates the keys on every comparison; prefer the {@code sort} methods
+     * for sorting many files.</i>
+     *
+     * @return the comparator
+     */
+    public static Comparator<File> comparator() {
+        return (first, second) -> NaturalKey.of(first).compareTo(NaturalKey.of(second));
+    }
+
+    /**
+     * Sorts the array in place.
+     *
+     * @param files the files to sort
+     * @param <F>   the type of the files
+     */
+    public static <F extends File> void sort(F[] files) {
+        Keyed<F>[] keyed = keys(files.length, i -> files[i]);
+        for (int i = 0; i < files.length; i++)
+            files[i] = keyed[i].file;
+    }
+
+    /**
+     * Sorts the list in place.
+     *
+     * @param files the files to sort; must support {@link ListIterator#set(Object)}
+     * @param <F>   the type of the files
+     */
+    public static <F extends File> void sort(List<F> files) {
+        @SuppressWarnings("unchecked")
+        F[] array = (F[]) files.toArray(new File[0]);
+        Keyed<F>[] keyed = keys(array.length, i -> array[i]);
+        ListIterator<F> iterator = files.listIterator();
+        for (Keyed<F> element : keyed) {
+            iterator.next();
+            iterator.set(element.file);
+        }
+    }
+
+    /**
+     * @param files the files to sort
+     * @param <F>   the type of the files
+     * @return a new list of the files in natural order
+     */
+    public static <F extends File> List<F> sorted(Collection<? extends F> files) {
+        @SuppressWarnings("unchecked")
+        F[] array = (F[]) files.toArray(new File[0]);
+        sort(array);
+        return Arrays.asList(array);
+    }
+
+    private static <F extends File> Keyed<F>[] keys(int size, IntFunction<F> files) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Keyed<F>[] keyed = new Keyed[size];
+        if (size >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSetAll(keyed, i -> new Keyed<>(files.apply(i)));
+            Arrays.parallelSort(keyed);
+        } else {
+            Arrays.setAll(keyed, i -> new Keyed<>(files.apply(i)));
+            Arrays.sort(keyed);
+        }
+        return keyed;
+    }
+
+    private static final class Keyed<F extends File> implements Comparable<Keyed<F>> {
+        final NaturalKey key;
+        final F file;
+
+        Keyed(F file) {
+            this.key = NaturalKey.of(file);
+            this.file = file;
+        }
+
+        @Override
+        public int compareTo(Keyed<F> other) {
+            return key.compareTo(other.key);
+        }
+    }
+}
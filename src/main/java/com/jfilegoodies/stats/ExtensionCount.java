@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+/**
+ * The number and the total size of the files with an extension.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ExtensionCount {
+
+    private final String extension;
+    private final long files;
+    private final long bytes;
+
+    ExtensionCount(String extension, long files, long bytes) {
+        this.extension = extension;
+        this.files = files;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the extension (in lower case); an empty string for the files without an extension.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the number of the files.
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the total size of the files in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d files, %d bytes", extension, files, bytes);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+import java.util.Arrays;
+
+/**
+ * Interns the extensions into dense int IDs. The lookups are lock-free and allocation-free:
+ * they are done on a character range of the file name, against an immutable snapshot of the
+ * table; only a new extension takes a lock and publishes a new snapshot.
+ *
+ * <p>
+ * The extensions are folded to lower case (ASCII). ID {@link #NONE} belongs to the names without an
+ * extension, ID {@link #OTHER} collects the extensions beyond {@link #MAX_EXTENSIONS} and the ones longer
+ * than {@link #MAX_EXTENSION_LENGTH} (which are rather parts of the name than extensions).
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class ExtensionDictionary {
+
+    static final int NONE = 0;
+    static final int OTHER = 1;
+    static final int MAX_EXTENSIONS = 4096;
+    static final int MAX_EXTENSION_LENGTH = 32;
+
+    private static final class Table {
+        final String[] keys;
+        final int[] ids;
+
+        Table(int capacity) {
+            this.keys = new String[capacity];
+            this.ids = new int[capacity];
+        }
+    }
+
+    private volatile Table table = new Table(64);
+    private volatile String[] extensions = {"", ExtensionStatistics.OTHER};
+
+    /**
+     * @param name the file name
+     * @return the ID of the extension of the name (the part after the last dot, as {@link com.jfilegoodies.FormattedFile} splits it)
+     */
+    int idOfName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? NONE : idOf(name, dot + 1, name.length());
+    }
+
+    /**
+     * @return the ID of the extension in the given range of the string
+     */
+    int idOf(String text, int from, int to) {
+        if (from == to)
+            return NONE;
+        if (to - from > MAX_EXTENSION_LENGTH)
+            return OTHER;
+
+        int hash = hash(text, from, to);
+        Table current = table;
+        int id = find(current, text, from, to, hash);
+        return id >= 0 ? id : insert(text, from, to, hash);
+    }
+
+    private static int find(Table table, String text, int from, int to, int hash) {
+        int mask = table.keys.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            String key = table.keys[i];
+            if (key == null)
+                return -1;
+            if (matches(key, text, from, to))
+                return table.ids[i];
+        }
+    }
+
+    private synchronized int insert(String text, int from, int to, int hash) {
+        Table current = table;
+        int id = find(current, text, from, to, hash);
+        if (id >= 0)
+            return id;
+
+        String[] known = extensions;
+        if (known.length >= MAX_EXTENSIONS)
+            return OTHER;
+
+        char[] folded = new char[to - from];
+        for (int i = from; i < to; i++)
+            folded[i - from] = fold(text.charAt(i));
+        String extension = new String(folded);
+        id = known.length;
+
+        //the table is copied, so the readers of the old snapshot are never disturbed
+        int capacity = current.keys.length;
+        if ((id + 1) * 2 > capacity)
+            capacity *= 2;
+        Table next = new Table(capacity);
+        for (int i = 0; i < current.keys.length; i++) {
+            if (current.keys[i] != null)
+                put(next, current.keys[i], current.ids[i]);
+        }
+        put(next, extension, id);
+
+        String[] nextExtensions = Arrays.copyOf(known, id + 1);
+        nextExtensions[id] = extension;
+        extensions = nextExtensions;
+        table = next;
+        return id;
+    }
+
+    private static void put(Table table, String key, int id) {
+        int mask = table.keys.length - 1;
+        int i = hash(key, 0, key.length()) & mask;
+        while (table.keys[i] != null)
+            i = (i + 1) & mask;
+        table.keys[i] = key;
+        table.ids[i] = id;
+    }
+
+    /**
+     * @return the extensions indexed by their IDs
+     */
+    String[] extensions() {
+        return extensions;
+    }
+
+    private static int hash(String text, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++)
+            hash = 31 * hash + fold(text.charAt(i));
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String key, String text, int from, int to) {
+        if (key.length() != to - from)
+            return false;
+        for (int i = from; i < to; i++) {
+            if (key.charAt(i - from) != fold(text.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
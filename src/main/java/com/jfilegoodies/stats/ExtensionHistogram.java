@@ -0,0 +1,292 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+import com.jfilegoodies.FormattedFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the number and the total size of files per extension over large scans without boxing.
+ *
+ * <p>
+ * The extensions are interned into dense int IDs (the lookup reads the extension straight from the file
+ * name, without creating a substring), and every thread accumulates into its own {@link Recorder} of
+ * primitive {@code long[]} arrays indexed by these IDs, together with histograms of the file sizes (a fine
+ * one for all the files and a power-of-two one per extension, which keeps a recorder small). The recorders
+ * are never shared, so recording takes no lock and no atomic operation; they are summed up when a
+ * {@link #snapshot()} is taken.
+ *
+ * <pre>{@code
+ * ExtensionHistogram histogram = new ExtensionHistogram();
+ * histogram.scan(Paths.get("/mnt/share"));
+ * ExtensionStatistics statistics = histogram.snapshot();
+ * statistics.getTopByBytes(10);
+ * }</pre>
+ *
+ * <p>
+ * <i>Note: a snapshot is exact only if the recording threads have finished (e.g. their executor has
+ * terminated); a snapshot taken during the recording may miss the latest files.</i>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ExtensionHistogram {
+
+    private final ExtensionDictionary dictionary = new ExtensionDictionary();
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Recorder> threadRecorder = ThreadLocal.withInitial(this::newRecorder);
+    private final LongAdder failedDirectories = new LongAdder();
+    //the sum of the local recorders (scans, batches), so they don't pile up in the recorders
+    private Recorder folded;
+
+    /**
+     * Creates a recorder for a single thread (e.g. a worker that processes a partition of a scan).
+     *
+     * @return a new recorder whose counts are included in the snapshots of this histogram
+     */
+    public Recorder newRecorder() {
+        Recorder recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Creates a recorder that is not included in the snapshots until it's {@link #fold(Recorder) folded} in.
+     */
+    Recorder newLocalRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Adds the counts of a local recorder to the histogram; the recorder mustn't be used afterwards.
+     */
+    synchronized void fold(Recorder recorder) {
+        if (folded == null)
+            folded = newRecorder();
+        folded.addAll(recorder);
+    }
+
+    /**
+     * Records a file into the recorder of the current thread.
+     *
+     * @param fileName the name of the file
+     * @param size     the size of the file in bytes
+     */
+    public void record(String fileName, long size) {
+        threadRecorder.get().record(fileName, size);
+    }
+
+    /**
+     * Records a file into the recorder of the current thread.
+     *
+     * @param file the file (its extension is taken from the {@link FormattedFile})
+     * @param size the size of the file in bytes
+     * @since 1.3
+     */
+    public void record(FormattedFile file, long size) {
+        threadRecorder.get().record(file, size);
+    }
+
+    /**
+     * Counts a directory that couldn't be listed (see {@link ExtensionStatistics#getFailedDirectories()}).
+     */
+    void recordFailedDirectory() {
+        failedDirectories.increment();
+    }
+
+    /**
+     * Records every regular file below the directory; the directories are listed in parallel.
+     * Symbolic links are not followed; the directories that can't be listed are counted
+     * (see {@link ExtensionStatistics#getFailedDirectories()}) and skipped.
+     *
+     * @param root the directory to scan
+     * @throws IOException if the root is not a directory
+     */
+    public void scan(Path root) throws IOException {
+        if (!Files.isDirectory(root))
+            throw new IOException(String.format("'%s' is not a directory", root));
+
+        //every worker of the scan gets a local recorder, they are folded in once the workers are done
+        ConcurrentMap<Thread, Recorder> scanRecorders = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        try {
+            pool.invoke(new ScanTask(root, scanRecorders));
+        } finally {
+            pool.shutdown();
+            scanRecorders.values().forEach(this::fold);
+        }
+    }
+
+    /**
+     * Sums up the recorders.
+     *
+     * @return the statistics of the recorded files
+     */
+    public ExtensionStatistics snapshot() {
+        String[] extensions = dictionary.extensions();
+        long[] files = new long[extensions.length];
+        long[] bytes = new long[extensions.length];
+        long[][] histograms = new long[extensions.length][];
+        long[] sizes = new long[SizeBuckets.FINE.count()];
+
+        for (Recorder recorder : recorders) {
+            long[] recordedSizes = recorder.sizes;
+            for (int i = 0; i < sizes.length; i++)
+                sizes[i] += recordedSizes[i];
+
+            long[] recordedFiles = recorder.files;
+            long[] recordedBytes = recorder.bytes;
+            long[][] recordedHistograms = recorder.histograms;
+            int length = Math.min(extensions.length, recordedFiles.length);
+            for (int id = 0; id < length; id++) {
+                files[id] += recordedFiles[id];
+                bytes[id] += recordedBytes[id];
+                long[] histogram = recordedHistograms[id];
+                if (histogram == null)
+                    continue;
+                if (histograms[id] == null)
+                    histograms[id] = new long[histogram.length];
+                for (int i = 0; i < histogram.length; i++)
+                    histograms[id][i] += histogram[i];
+            }
+        }
+        return new ExtensionStatistics(extensions, files, bytes, histograms, sizes, failedDirectories.sum());
+    }
+
+    /**
+     * The counters of a single thread; must not be used by more threads at the same time.
+     */
+    public final class Recorder {
+
+        private long[] files = new long[16];
+        private long[] bytes = new long[16];
+        private long[][] histograms = new long[16][];
+        private final long[] sizes = new long[SizeBuckets.FINE.count()];
+
+        private Recorder() {
+        }
+
+        /**
+         * @param fileName the name of the file
+         * @param size     the size of the file in bytes
+         */
+        public void record(String fileName, long size) {
+            add(dictionary.idOfName(fileName), size);
+        }
+
+        /**
+         * @param file the file (its extension is taken from the {@link FormattedFile})
+         * @param size the size of the file in bytes
+         */
+        public void record(FormattedFile file, long size) {
+            String extension = file.getExtension();
+            add(dictionary.idOf(extension, 0, extension.length()), size);
+        }
+
+        private void ensureCapacity(int id) {
+            if (id >= files.length) {
+                int capacity = Math.max(id + 1, files.length * 2);
+                files = Arrays.copyOf(files, capacity);
+                bytes = Arrays.copyOf(bytes, capacity);
+                histograms = Arrays.copyOf(histograms, capacity);
+            }
+        }
+
+        private void addAll(Recorder other) {
+            ensureCapacity(other.files.length - 1);
+            for (int id = 0; id < other.files.length; id++) {
+                files[id] += other.files[id];
+                bytes[id] += other.bytes[id];
+                long[] histogram = other.histograms[id];
+                if (histogram == null)
+                    continue;
+                if (histograms[id] == null)
+                    histograms[id] = new long[histogram.length];
+                for (int i = 0; i < histogram.length; i++)
+                    histograms[id][i] += histogram[i];
+            }
+            for (int i = 0; i < sizes.length; i++)
+                sizes[i] += other.sizes[i];
+        }
+
+        private void add(int id, long size) {
+            ensureCapacity(id);
+            files[id]++;
+            bytes[id] += size;
+            long[] histogram = histograms[id];
+            if (histogram == null)
+                histogram = histograms[id] = new long[SizeBuckets.COARSE.count()];
+            histogram[SizeBuckets.COARSE.index(size)]++;
+            sizes[SizeBuckets.FINE.index(size)]++;
+        }
+    }
+
+    /**
+     * Lists one directory and forks a task for each of its subdirectories.
+     */
+    private final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final ConcurrentMap<Thread, Recorder> scanRecorders;
+
+        private ScanTask(Path directory, ConcurrentMap<Thread, Recorder> scanRecorders) {
+            this.directory = directory;
+            this.scanRecorders = scanRecorders;
+        }
+
+        @Override
+        protected void compute() {
+            Recorder recorder = scanRecorders.computeIfAbsent(Thread.currentThread(), thread -> newLocalRecorder());
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue; //deleted in the meantime
+                    }
+                    if (attributes.isDirectory())
+                        subtasks.add(new ScanTask(child, scanRecorders));
+                    else if (attributes.isRegularFile())
+                        recorder.record(child.getFileName().toString(), attributes.size());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                failedDirectories.increment();
+            }
+            invokeAll(subtasks);
+        }
+    }
+}
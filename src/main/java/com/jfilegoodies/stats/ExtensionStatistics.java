@@ -0,0 +1,448 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+import com.jfilegoodies.FileGoodies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A snapshot of an {@link ExtensionHistogram}: the number and the total size of the files per extension
+ * and the distribution of the file sizes.
+ *
+ * <p>
+ * The extensions are in lower case; the files without an extension are counted under the empty string.
+ * The size percentiles are approximated by the upper bound of their histogram bucket: within 12.5% over
+ * all the files, within a factor of two per extension.
+ *
+ * <p>
+ * The statistics can be written into a compact binary form (see {@link #writeTo(OutputStream)}) and
+ * the statistics of partial scans, e.g. the shards of a {@link MultiRootScanner} scanned on different
+ * machines, can be combined by {@link #merge(Collection)}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ExtensionStatistics {
+
+    /**
+     * The name under which the files are counted if the number of the distinct extensions exceeds
+     * the limit of the dictionary, or their extension is too long to be a real extension.
+     */
+    public static final String OTHER = "(other)";
+
+    private static final int MAGIC = 0x4A464753; //"JFGS"
+    private static final int VERSION = 1;
+    //the extensions of 256 full dictionaries, so a corrupt count can't allocate arrays of any size
+    private static final int MAX_STORED_EXTENSIONS = ExtensionDictionary.MAX_EXTENSIONS * 256;
+
+    private final String[] extensions;
+    private final long[] files;
+    private final long[] bytes;
+    private final long[][] histograms;
+    private final long[] sizes;
+    private final long failedDirectories;
+
+    ExtensionStatistics(String[] extensions, long[] files, long[] bytes, long[][] histograms,
+                        long[] sizes, long failedDirectories) {
+        this.extensions = extensions;
+        this.files = files;
+        this.bytes = bytes;
+        this.histograms = histograms;
+        this.sizes = sizes;
+        this.failedDirectories = failedDirectories;
+    }
+
+    /**
+     * Returns the number of all the recorded files.
+     */
+    public long getTotalFiles() {
+        long total = 0;
+        for (long count : files)
+            total += count;
+        return total;
+    }
+
+    /**
+     * Returns the total size of all the recorded files.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (long size : bytes)
+            total += size;
+        return total;
+    }
+
+    /**
+     * Returns the number of the directories that couldn't be listed by a scan.
+     */
+    public long getFailedDirectories() {
+        return failedDirectories;
+    }
+
+    /**
+     * @return the extensions that have at least one file
+     */
+    public Set<String> getExtensions() {
+        Set<String> present = new LinkedHashSet<>();
+        for (int id = 0; id < extensions.length; id++) {
+            if (files[id] > 0)
+                present.add(extensions[id]);
+        }
+        return Collections.unmodifiableSet(present);
+    }
+
+    /**
+     * @param extension the extension (case-insensitive)
+     * @return the number of the files with the extension
+     */
+    public long getFiles(String extension) {
+        int id = idOf(extension);
+        return id < 0 ? 0 : files[id];
+    }
+
+    /**
+     * @param extension the extension (case-insensitive)
+     * @return the total size of the files with the extension
+     */
+    public long getBytes(String extension) {
+        int id = idOf(extension);
+        return id < 0 ? 0 : bytes[id];
+    }
+
+    /**
+     * @param n the maximum number of the returned extensions
+     * @return the extensions with the most files, in descending order
+     */
+    public List<ExtensionCount> getTopByFiles(int n) {
+        return top(n, Comparator.comparingLong(ExtensionCount::getFiles).reversed());
+    }
+
+    /**
+     * @param n the maximum number of the returned extensions
+     * @return the extensions with the largest total size, in descending order
+     */
+    public List<ExtensionCount> getTopByBytes(int n) {
+        return top(n, Comparator.comparingLong(ExtensionCount::getBytes).reversed());
+    }
+
+    private List<ExtensionCount> top(int n, Comparator<ExtensionCount> order) {
+        List<ExtensionCount> counts = new ArrayList<>();
+        for (int id = 0; id < extensions.length; id++) {
+            if (files[id] > 0)
+                counts.add(new ExtensionCount(extensions[id], files[id], bytes[id]));
+        }
+        counts.sort(order.thenComparing(ExtensionCount::getExtension));
+        return counts.subList(0, Math.min(Math.max(0, n), counts.size()));
+    }
+
+    /**
+     * Returns the share of the files that are executable on the current OS by their extension
+     * (see {@link FileGoodies#listExecutableExtensions()}).
+     *
+     * @return the share between 0 and 1; 0 if no file has been recorded
+     */
+    public double getExecutableShare() {
+        return getExecutableShare(FileGoodies.listExecutableExtensions());
+    }
+
+    /**
+     * @param executableExtensions the extensions considered executable
+     * @return the share of the files with these extensions, between 0 and 1
+     */
+    public double getExecutableShare(Collection<String> executableExtensions) {
+        long total = getTotalFiles();
+        return total == 0 ? 0 : (double) sumFiles(executableExtensions) / total;
+    }
+
+    /**
+     * Returns the share of the bytes in files that are executable on the current OS by their extension.
+     *
+     * @return the share between 0 and 1; 0 if no byte has been recorded
+     */
+    public double getExecutableByteShare() {
+        long total = getTotalBytes();
+        if (total == 0)
+            return 0;
+        long executable = 0;
+        for (int id : idsOf(FileGoodies.listExecutableExtensions()))
+            executable += bytes[id];
+        return (double) executable / total;
+    }
+
+    private long sumFiles(Collection<String> selected) {
+        long sum = 0;
+        for (int id : idsOf(selected))
+            sum += files[id];
+        return sum;
+    }
+
+    private Set<Integer> idsOf(Collection<String> selected) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String extension : selected) {
+            int id = idOf(extension);
+            if (id >= 0)
+                ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * @param percentile the percentile (0-100), e.g. 50 for the median
+     * @return the approximate size below which the given percentage of all the files fall
+     */
+    public long getSizePercentile(double percentile) {
+        return SizeBuckets.FINE.percentile(sizes, percentile);
+    }
+
+    /**
+     * @param extension  the extension (case-insensitive)
+     * @param percentile the percentile (0-100), e.g. 50 for the median
+     * @return the approximate size below which the given percentage of the files with the extension fall
+     */
+    public long getSizePercentile(String extension, double percentile) {
+        int id = idOf(extension);
+        return id < 0 ? 0 : SizeBuckets.COARSE.percentile(histograms[id], percentile);
+    }
+
+    /**
+     * Combines the statistics of partial scans: the counts and the histograms are summed up per extension.
+     *
+     * @param statistics the statistics to combine
+     * @return the combined statistics
+     * @since 1.3
+     */
+    public static ExtensionStatistics merge(Collection<ExtensionStatistics> statistics) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (ExtensionStatistics each : statistics) {
+            for (int id = 0; id < each.extensions.length; id++) {
+                if (each.files[id] > 0)
+                    ids.putIfAbsent(each.extensions[id], ids.size());
+            }
+        }
+
+        String[] extensions = ids.keySet().toArray(new String[0]);
+        long[] files = new long[extensions.length];
+        long[] bytes = new long[extensions.length];
+        long[][] histograms = new long[extensions.length][];
+        long[] sizes = new long[SizeBuckets.FINE.count()];
+        long failedDirectories = 0;
+        for (ExtensionStatistics each : statistics) {
+            add(sizes, each.sizes);
+            failedDirectories += each.failedDirectories;
+            for (int id = 0; id < each.extensions.length; id++) {
+                if (each.files[id] == 0)
+                    continue;
+                int merged = ids.get(each.extensions[id]);
+                files[merged] += each.files[id];
+                bytes[merged] += each.bytes[id];
+                if (each.histograms[id] != null) {
+                    if (histograms[merged] == null)
+                        histograms[merged] = new long[SizeBuckets.COARSE.count()];
+                    add(histograms[merged], each.histograms[id]);
+                }
+            }
+        }
+        return new ExtensionStatistics(extensions, files, bytes, histograms, sizes, failedDirectories);
+    }
+
+    private static void add(long[] sum, long[] counts) {
+        for (int i = 0; i < counts.length; i++)
+            sum[i] += counts[i];
+    }
+
+    /**
+     * Writes the statistics in a compact binary form: the numbers are variable-length encoded
+     * and only the non-empty histogram buckets are written.
+     *
+     * @param output the stream to write into; it's not closed
+     * @throws IOException if an I/O error occurs
+     * @see #readFrom(InputStream)
+     * @since 1.3
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+
+        int present = 0;
+        for (long count : files) {
+            if (count > 0)
+                present++;
+        }
+        writeVarLong(data, present);
+        for (int id = 0; id < extensions.length; id++) {
+            if (files[id] == 0)
+                continue;
+            data.writeUTF(extensions[id]);
+            writeVarLong(data, files[id]);
+            writeVarLong(data, bytes[id]);
+            writeHistogram(data, histograms[id]);
+        }
+        writeHistogram(data, sizes);
+        writeVarLong(data, failedDirectories);
+        data.flush();
+    }
+
+    /**
+     * Writes the statistics into a file, like {@link #writeTo(OutputStream)}.
+     *
+     * @param file the file; it's replaced if it exists
+     * @throws IOException if an I/O error occurs
+     * @since 1.3
+     */
+    public void write(Path file) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+            writeTo(output);
+        }
+    }
+
+    /**
+     * Reads statistics written by {@link #writeTo(OutputStream)}.
+     * The data may hold at most 1,048,576 extensions (the extensions of 256 full shards merged).
+     *
+     * @param input the stream to read from; it's not closed
+     * @return the statistics
+     * @throws IOException if an I/O error occurs or the data is not valid
+     * @since 1.3
+     */
+    public static ExtensionStatistics readFrom(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        if (data.readInt() != MAGIC)
+            throw new IOException("The data is not extension statistics");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported version of the extension statistics: " + version);
+
+        int count = (int) readVarLong(data, MAX_STORED_EXTENSIONS);
+        String[] extensions = new String[count];
+        long[] files = new long[count];
+        long[] bytes = new long[count];
+        long[][] histograms = new long[count][];
+        for (int id = 0; id < count; id++) {
+            extensions[id] = data.readUTF();
+            files[id] = readVarLong(data, Long.MAX_VALUE);
+            bytes[id] = readVarLong(data, Long.MAX_VALUE);
+            histograms[id] = readHistogram(data, SizeBuckets.COARSE.count());
+        }
+        long[] sizes = readHistogram(data, SizeBuckets.FINE.count());
+        long failedDirectories = readVarLong(data, Long.MAX_VALUE);
+        return new ExtensionStatistics(extensions, files, bytes, histograms, sizes, failedDirectories);
+    }
+
+    /**
+     * Reads statistics from a file written by {@link #write(Path)}.
+     *
+     * @param file the file
+     * @return the statistics
+     * @throws IOException if an I/O error occurs or the file is not valid
+     * @since 1.3
+     */
+    public static ExtensionStatistics read(Path file) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            return readFrom(input);
+        }
+    }
+
+    /**
+     * Writes the non-empty buckets as (index delta, count) pairs.
+     */
+    private static void writeHistogram(DataOutputStream data, long[] histogram) throws IOException {
+        int nonEmpty = 0;
+        if (histogram != null) {
+            for (long count : histogram) {
+                if (count > 0)
+                    nonEmpty++;
+            }
+        }
+        writeVarLong(data, nonEmpty);
+        int previous = 0;
+        for (int i = 0; nonEmpty > 0 && i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                writeVarLong(data, i - previous);
+                writeVarLong(data, histogram[i]);
+                previous = i;
+            }
+        }
+    }
+
+    private static long[] readHistogram(DataInputStream data, int length) throws IOException {
+        int nonEmpty = (int) readVarLong(data, length);
+        long[] histogram = new long[length];
+        int index = 0;
+        for (int i = 0; i < nonEmpty; i++) {
+            index += (int) readVarLong(data, length - 1 - index);
+            histogram[index] = readVarLong(data, Long.MAX_VALUE);
+        }
+        return histogram;
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream data, long max) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0 || value > max)
+                    throw new IOException("Invalid value in the extension statistics: " + value);
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in the extension statistics");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExtensionStatistics{files=%d, bytes=%d, extensions=%d, failedDirectories=%d}",
+                getTotalFiles(), getTotalBytes(), getExtensions().size(), failedDirectories);
+    }
+
+    private int idOf(String extension) {
+        String folded = extension.toLowerCase(Locale.ROOT);
+        for (int id = 0; id < extensions.length; id++) {
+            if (extensions[id].equals(folded))
+                return id;
+        }
+        return -1;
+    }
+}
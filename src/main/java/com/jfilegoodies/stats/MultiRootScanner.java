@@ -0,0 +1,393 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+import com.jfilegoodies.FormattedFile;
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Scans many roots (e.g. mount points) at once into one {@link ExtensionStatistics} shard per root.
+ *
+ * <p>
+ * The roots are grouped by their {@link FileStore} (volume), and every volume has its own budget of
+ * concurrent directory listings, so a slow network volume can't occupy all the I/O workers. The I/O
+ * workers are shared: a worker always takes the next directory from the busiest volume that still has
+ * free budget, so the idle workers help the shards with the most pending directories instead of waiting
+ * for a slow one. When there are several volumes, at least two workers are used and a budget is capped
+ * below the number of the workers, so at least one worker is always left for the other volumes. The
+ * listed files are classified (their extension is taken by {@link FormattedFile}) in batches on a shared
+ * {@link ForkJoinPool}, which is not blocked by the I/O.
+ *
+ * <p>
+ * The shards are independent {@link ExtensionStatistics}: they can be written into compact files by
+ * {@link ExtensionStatistics#write(Path)} and combined by {@link ExtensionStatistics#merge(Collection)},
+ * so a scan can be split across machines. The executable share of a shard is derived from the extensions,
+ * by the same rule as {@link com.jfilegoodies.FileGoodies#isOSExecutable(FormattedFile)} (the scanner
+ * knows that the entries are regular files, so no additional check is needed).
+ *
+ * <pre>{@code
+ * Map<Path, ExtensionStatistics> shards = MultiRootScanner.create()
+ *         .withVolumeConcurrency(16)
+ *         .withVolumeConcurrency(Paths.get("/mnt/nfs"), 2)
+ *         .scan(Arrays.asList(Paths.get("/data"), Paths.get("/mnt/nfs")));
+ * shards.get(Paths.get("/mnt/nfs")).write(Paths.get("nfs.stats"));
+ * ExtensionStatistics total = ExtensionStatistics.merge(shards.values());
+ * }</pre>
+ *
+ * <p>
+ * Symbolic links are not followed. The subdirectories count against the volume of their root, even if
+ * another volume is mounted on them; the roots are not deduplicated against each other, so nested roots
+ * are counted twice.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class MultiRootScanner {
+
+    /**
+     * The default number of concurrent directory listings per volume.
+     */
+    public static final int DEFAULT_VOLUME_CONCURRENCY = 8;
+
+    private static final int BATCH_SIZE = 256;
+
+    private final int volumeConcurrency;
+    private final Map<Path, Integer> volumeConcurrencies;
+    private final int ioThreads;
+    private final ForkJoinPool classificationPool;
+
+    private MultiRootScanner(int volumeConcurrency, Map<Path, Integer> volumeConcurrencies, int ioThreads,
+                             ForkJoinPool classificationPool) {
+        this.volumeConcurrency = volumeConcurrency;
+        this.volumeConcurrencies = volumeConcurrencies;
+        this.ioThreads = ioThreads;
+        this.classificationPool = classificationPool;
+    }
+
+    /**
+     * @return a scanner with {@link #DEFAULT_VOLUME_CONCURRENCY} listings per volume,
+     * {@link IoExecutors#defaultPlatformThreads()} I/O workers and the common {@link ForkJoinPool}
+     */
+    public static MultiRootScanner create() {
+        return new MultiRootScanner(DEFAULT_VOLUME_CONCURRENCY, Collections.emptyMap(), IoExecutors.defaultPlatformThreads(), null);
+    }
+
+    /**
+     * @param concurrency the number of concurrent directory listings per volume
+     * @return a new scanner with the given default budget of the volumes
+     * @throws IllegalArgumentException if the concurrency is not positive
+     */
+    public MultiRootScanner withVolumeConcurrency(int concurrency) {
+        return new MultiRootScanner(checkPositive(concurrency, "concurrency"), volumeConcurrencies, ioThreads, classificationPool);
+    }
+
+    /**
+     * @param pathOnVolume any existing path on the volume
+     * @param concurrency  the number of concurrent directory listings on the volume
+     * @return a new scanner with the given budget of the volume
+     * @throws IllegalArgumentException if the concurrency is not positive
+     */
+    public MultiRootScanner withVolumeConcurrency(Path pathOnVolume, int concurrency) {
+        Map<Path, Integer> concurrencies = new LinkedHashMap<>(volumeConcurrencies);
+        concurrencies.put(Objects.requireNonNull(pathOnVolume), checkPositive(concurrency, "concurrency"));
+        return new MultiRootScanner(volumeConcurrency, Collections.unmodifiableMap(concurrencies), ioThreads, classificationPool);
+    }
+
+    /**
+     * @param ioThreads the number of the I/O workers shared by the volumes; at least two are used when
+     *                  several volumes are scanned, so a slow volume can't hold the only worker
+     * @return a new scanner with the given number of I/O workers
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public MultiRootScanner withIoThreads(int ioThreads) {
+        return new MultiRootScanner(volumeConcurrency, volumeConcurrencies, checkPositive(ioThreads, "ioThreads"), classificationPool);
+    }
+
+    /**
+     * @param classificationPool the pool that classifies the listed files; it's not shut down by the scanner
+     * @return a new scanner that classifies on the given pool
+     */
+    public MultiRootScanner withClassificationPool(ForkJoinPool classificationPool) {
+        return new MultiRootScanner(volumeConcurrency, volumeConcurrencies, ioThreads, Objects.requireNonNull(classificationPool));
+    }
+
+    /**
+     * Scans the roots concurrently.
+     *
+     * <p>
+     * A root that is not a directory, like any directory that can't be listed, is counted by
+     * {@link ExtensionStatistics#getFailedDirectories()} of its shard.
+     *
+     * @param roots the directories to scan; null elements and duplicates are ignored
+     * @return the statistics of the roots, in the order of the roots
+     * @throws InterruptedIOException if the thread is interrupted; the scan is cancelled
+     * @throws IOException            if a worker fails unexpectedly
+     */
+    public Map<Path, ExtensionStatistics> scan(Collection<? extends Path> roots) throws IOException {
+        Scan scan = new Scan();
+        Map<Object, Volume> volumes = new LinkedHashMap<>();
+        Map<Path, Shard> shards = new LinkedHashMap<>();
+        for (Path root : new LinkedHashSet<>(roots)) {
+            if (root == null)
+                continue;
+            Shard shard = new Shard();
+            shards.put(root, shard);
+            if (!Files.isDirectory(root)) {
+                shard.histogram.recordFailedDirectory();
+                continue;
+            }
+            Object key = volumeKeyOf(root);
+            Volume volume = volumes.computeIfAbsent(key, this::newVolume);
+            volume.pending.add(new Directory(root, shard));
+            scan.outstanding++;
+        }
+        scan.volumes.addAll(volumes.values());
+
+        int workers = (int) Math.min(ioThreads, scan.volumes.stream().mapToLong(volume -> volume.budget).sum());
+        if (scan.volumes.size() > 1) {
+            //a slow volume can't hold every worker, the others always keep one
+            workers = Math.max(workers, 2);
+            for (Volume volume : scan.volumes)
+                volume.budget = Math.min(volume.budget, workers - 1);
+        }
+        if (workers > 0)
+            scan.run(workers);
+
+        Map<Path, ExtensionStatistics> statistics = new LinkedHashMap<>();
+        shards.forEach((root, shard) -> statistics.put(root, shard.histogram.snapshot()));
+        return statistics;
+    }
+
+    private Volume newVolume(Object key) {
+        for (Map.Entry<Path, Integer> entry : volumeConcurrencies.entrySet()) {
+            if (key.equals(volumeKeyOf(entry.getKey())))
+                return new Volume(entry.getValue());
+        }
+        return new Volume(volumeConcurrency);
+    }
+
+    private static Object volumeKeyOf(Path path) {
+        try {
+            return Files.getFileStore(path);
+        } catch (IOException | SecurityException e) {
+            return path.toAbsolutePath().normalize(); //a volume of its own
+        }
+    }
+
+    private static int checkPositive(int value, String name) {
+        if (value <= 0)
+            throw new IllegalArgumentException(name + " must be positive");
+        return value;
+    }
+
+    private static final class Volume {
+        int budget;
+        final ArrayDeque<Directory> pending = new ArrayDeque<>();
+        int active;
+
+        Volume(int budget) {
+            this.budget = budget;
+        }
+    }
+
+    private static final class Shard {
+        final ExtensionHistogram histogram = new ExtensionHistogram();
+    }
+
+    private static final class Directory {
+        final Path path;
+        final Shard shard;
+
+        Directory(Path path, Shard shard) {
+            this.path = path;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * The state of one {@link #scan(Collection)}; the volumes and the counters are guarded by {@code this}.
+     */
+    private final class Scan {
+        final List<Volume> volumes = new ArrayList<>();
+        final ForkJoinPool pool = classificationPool == null ? ForkJoinPool.commonPool() : classificationPool;
+        //bounds the batches waiting for classification, so the listing can't run far ahead
+        final int batchPermitCount = Math.max(4, pool.getParallelism() * 4);
+        final Semaphore batchPermits = new Semaphore(batchPermitCount);
+
+        long outstanding;
+        boolean cancelled;
+        Throwable failure;
+
+        void run(int workers) throws IOException {
+            ExecutorService executor = IoExecutors.newIoExecutor(workers, "jfilegoodies-scan");
+            try {
+                List<Future<?>> futures = new ArrayList<>(workers);
+                for (int i = 0; i < workers; i++)
+                    futures.add(executor.submit(this::work));
+                for (Future<?> future : futures)
+                    future.get();
+                batchPermits.acquire(batchPermitCount); //waiting for the classification
+            } catch (InterruptedException e) {
+                cancel(null);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The scan has been interrupted");
+            } catch (ExecutionException e) {
+                cancel(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+
+            synchronized (this) {
+                if (failure != null)
+                    throw new IOException("The scan has failed", failure);
+            }
+        }
+
+        void work() {
+            try {
+                while (true) {
+                    Volume volume;
+                    Directory directory;
+                    synchronized (this) {
+                        while ((volume = busiestAvailable()) == null) {
+                            if (outstanding == 0 || cancelled)
+                                return;
+                            wait();
+                        }
+                        directory = volume.pending.pollLast();
+                        volume.active++;
+                    }
+
+                    List<Directory> subdirectories = list(directory);
+                    synchronized (this) {
+                        volume.active--;
+                        volume.pending.addAll(subdirectories);
+                        outstanding += subdirectories.size() - 1;
+                        notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                cancel(null);
+            } catch (RuntimeException | Error e) {
+                cancel(e);
+                throw e;
+            }
+        }
+
+        /**
+         * @return the volume with the most pending directories among the ones with free budget
+         */
+        private Volume busiestAvailable() {
+            if (cancelled)
+                return null;
+            Volume busiest = null;
+            for (Volume volume : volumes) {
+                if (volume.active < volume.budget && !volume.pending.isEmpty()
+                        && (busiest == null || volume.pending.size() > busiest.pending.size()))
+                    busiest = volume;
+            }
+            return busiest;
+        }
+
+        synchronized void cancel(Throwable cause) {
+            cancelled = true;
+            if (failure == null)
+                failure = cause;
+            notifyAll();
+        }
+
+        private List<Directory> list(Directory directory) throws InterruptedException {
+            List<Directory> subdirectories = new ArrayList<>();
+            String[] names = new String[BATCH_SIZE];
+            long[] sizes = new long[BATCH_SIZE];
+            int count = 0;
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory.path)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue; //deleted in the meantime
+                    }
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(new Directory(child, directory.shard));
+                    } else if (attributes.isRegularFile()) {
+                        names[count] = child.getFileName().toString();
+                        sizes[count++] = attributes.size();
+                        if (count == BATCH_SIZE) {
+                            classify(directory.shard, names, sizes, count);
+                            names = new String[BATCH_SIZE];
+                            sizes = new long[BATCH_SIZE];
+                            count = 0;
+                        }
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                directory.shard.histogram.recordFailedDirectory();
+            }
+            if (count > 0)
+                classify(directory.shard, names, sizes, count);
+            return subdirectories;
+        }
+
+        private void classify(Shard shard, String[] names, long[] sizes, int count) throws InterruptedException {
+            batchPermits.acquire();
+            try {
+                pool.execute(() -> {
+                    try {
+                        //a recorder of the batch, so the pool's threads don't keep the histogram reachable
+                        ExtensionHistogram.Recorder recorder = shard.histogram.newLocalRecorder();
+                        for (int i = 0; i < count; i++)
+                            recorder.record(new FormattedFile(names[i]), sizes[i]);
+                        shard.histogram.fold(recorder);
+                    } catch (RuntimeException | Error e) {
+                        cancel(e);
+                    } finally {
+                        batchPermits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                batchPermits.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.stats;
+
+/**
+ * A log-linear bucketing of the file sizes: every power of two is divided into {@code 2^subBucketBits}
+ * buckets, so the histogram of any size range fits into a fixed, small array.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+final class SizeBuckets {
+
+    /**
+     * Eight buckets per power of two: a size is known within 12.5% from its bucket.
+     */
+    static final SizeBuckets FINE = new SizeBuckets(3);
+
+    /**
+     * One bucket per power of two: a size is known within a factor of two from its bucket.
+     */
+    static final SizeBuckets COARSE = new SizeBuckets(0);
+
+    private final int subBucketBits;
+    private final int subBuckets;
+    private final int count;
+
+    private SizeBuckets(int subBucketBits) {
+        this.subBucketBits = subBucketBits;
+        this.subBuckets = 1 << subBucketBits;
+        //the sizes below the sub-bucket count have their own buckets
+        this.count = (63 - subBucketBits + 1) * subBuckets;
+    }
+
+    /**
+     * @return the number of the buckets
+     */
+    int count() {
+        return count;
+    }
+
+    int index(long size) {
+        if (size < subBuckets)
+            return (int) Math.max(0, size);
+        int exponent = 63 - Long.numberOfLeadingZeros(size);
+        int subBucket = (int) (size >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    /**
+     * @return the largest size that falls into the bucket
+     */
+    long upperBound(int index) {
+        if (index < subBuckets)
+            return index;
+        int exponent = index / subBuckets + subBucketBits - 1;
+        int subBucket = index % subBuckets;
+        long lowerBound = (long) (subBuckets + subBucket) << (exponent - subBucketBits);
+        return lowerBound + ((1L << (exponent - subBucketBits)) - 1);
+    }
+
+    /**
+     * @param histogram  the counts of the buckets; may be null
+     * @param percentile the percentile (0-100)
+     * @return the upper bound of the bucket that holds the percentile; 0 if the histogram is empty
+     */
+    long percentile(long[] histogram, double percentile) {
+        if (histogram == null)
+            return 0;
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank)
+                return upperBound(i);
+        }
+        return upperBound(histogram.length - 1);
+    }
+}
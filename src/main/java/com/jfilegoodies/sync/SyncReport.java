@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sync;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link TreeSync}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class SyncReport {
+
+    private final long copiedFiles;
+    private final long updatedFiles;
+    private final long movedFiles;
+    private final long deletedEntries;
+    private final long bytesWritten;
+    private final Map<String, IOException> failures;
+
+    SyncReport(long copiedFiles, long updatedFiles, long movedFiles, long deletedEntries,
+               long bytesWritten, Map<String, IOException> failures) {
+        this.copiedFiles = copiedFiles;
+        this.updatedFiles = updatedFiles;
+        this.movedFiles = movedFiles;
+        this.deletedEntries = deletedEntries;
+        this.bytesWritten = bytesWritten;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the number of files copied as a whole (added or changed small files).
+     */
+    public long getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    /**
+     * Returns the number of changed large files updated block by block.
+     */
+    public long getUpdatedFiles() {
+        return updatedFiles;
+    }
+
+    /**
+     * Returns the number of files moved within the target.
+     */
+    public long getMovedFiles() {
+        return movedFiles;
+    }
+
+    /**
+     * Returns the number of deleted files and directories.
+     */
+    public long getDeletedEntries() {
+        return deletedEntries;
+    }
+
+    /**
+     * Returns the number of bytes written into the target by the copies and the block updates.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the relative paths whose operation failed, with their errors.
+     */
+    public Map<String, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return {@code true} if all the operations succeeded; {@code false} otherwise
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SyncReport{copied=%d, updated=%d, moved=%d, deleted=%d, bytesWritten=%d, failures=%d}",
+                copiedFiles, updatedFiles, movedFiles, deletedEntries, bytesWritten, failures.size());
+    }
+}
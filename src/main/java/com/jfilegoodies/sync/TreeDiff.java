@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sync;
+
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The differences between a source and a target directory tree: what has to be added to,
+ * removed from, changed in and moved within the target to make it equal to the source.
+ *
+ * <p>
+ * Files are compared by their sizes and last-modified times first; their content is hashed
+ * only if the sizes are equal but the times differ. A file that has been removed from one path and
+ * added to another one with the same content is reported as moved, so it doesn't have to be copied again.
+ * The hashing is done in parallel.
+ *
+ * <pre>{@code
+ * TreeDiff diff = TreeDiff.compare(Paths.get("source"), Paths.get("mirror"));
+ * diff.getAdded().forEach(System.out::println);
+ * }</pre>
+ *
+ * <p>
+ * The paths are relative, using '/' as the separator. A path whose type differs in the two trees
+ * (a file in one, a directory in the other) is reported as both removed and added. The paths under
+ * the entries that couldn't be read in the source ({@link TreeSnapshot#getFailures()}) are never reported
+ * as removed, because their state in the source is unknown.
+ *
+ * @author Daniel Gyorffy
+ * @see TreeSync
+ * @since 1.3
+ */
+public final class TreeDiff {
+
+    private final TreeSnapshot source;
+    private final TreeSnapshot target;
+    private final NavigableSet<String> added;
+    private final NavigableSet<String> removed;
+    private final NavigableSet<String> changed;
+    private final Map<String, String> moved;
+
+    private TreeDiff(TreeSnapshot source, TreeSnapshot target, NavigableSet<String> added,
+                     NavigableSet<String> removed, NavigableSet<String> changed, Map<String, String> moved) {
+        this.source = source;
+        this.target = target;
+        this.added = Collections.unmodifiableNavigableSet(added);
+        this.removed = Collections.unmodifiableNavigableSet(removed);
+        this.changed = Collections.unmodifiableNavigableSet(changed);
+        this.moved = Collections.unmodifiableMap(moved);
+    }
+
+    /**
+     * Captures and compares two live trees.
+     *
+     * @param source the tree that holds the desired state
+     * @param target the tree that should be made equal to the source
+     * @return the differences
+     * @throws IOException if the trees can't be read
+     */
+    public static TreeDiff compare(Path source, Path target) throws IOException {
+        return compare(TreeSnapshot.capture(source), TreeSnapshot.capture(target));
+    }
+
+    /**
+     * Compares two snapshots. If the content of a file has to be compared but its hash is not recorded in a
+     * loaded snapshot, the file is considered changed.
+     *
+     * @param source the snapshot of the desired state
+     * @param target the snapshot of the tree that should be made equal to the source
+     * @return the differences
+     * @throws IOException if the files to be hashed can't be read
+     */
+    public static TreeDiff compare(TreeSnapshot source, TreeSnapshot target) throws IOException {
+        NavigableSet<String> added = new TreeSet<>();
+        NavigableSet<String> removed = new TreeSet<>();
+        NavigableSet<String> changed = new TreeSet<>();
+        List<String> contentCandidates = new ArrayList<>();
+
+        source.getEntries().forEach((path, sourceEntry) -> {
+            TreeSnapshot.Entry targetEntry = target.getEntries().get(path);
+            if (targetEntry == null) {
+                added.add(path);
+            } else if (sourceEntry.isDirectory() != targetEntry.isDirectory()) {
+                added.add(path);
+                removed.add(path);
+            } else if (!sourceEntry.isDirectory()) {
+                if (sourceEntry.getSize() != targetEntry.getSize())
+                    changed.add(path);
+                else if (sourceEntry.getLastModified() != targetEntry.getLastModified())
+                    contentCandidates.add(path);
+            }
+        });
+        Set<String> unreadable = source.getFailures().keySet();
+        target.getEntries().keySet().forEach(path -> {
+            if (!source.getEntries().containsKey(path) && !TreeSnapshot.isWithin(path, unreadable))
+                removed.add(path);
+        });
+
+        Map<Long, List<String>> removedFilesBySize = filesBySize(target, removed);
+        List<String> moveCandidates = new ArrayList<>();
+        for (String path : added) {
+            TreeSnapshot.Entry entry = source.getEntries().get(path);
+            if (!entry.isDirectory() && removedFilesBySize.containsKey(entry.getSize()))
+                moveCandidates.add(path);
+        }
+        List<String> movedFromCandidates = new ArrayList<>();
+        removedFilesBySize.values().forEach(movedFromCandidates::addAll);
+
+        Map<String, byte[]> sourceHashes;
+        Map<String, byte[]> targetHashes;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), IoExecutors.daemonThreadFactory("jfilegoodies-hash"));
+        try {
+            List<String> sourcePaths = new ArrayList<>(contentCandidates);
+            sourcePaths.addAll(moveCandidates);
+            List<String> targetPaths = new ArrayList<>(contentCandidates);
+            if (!moveCandidates.isEmpty())
+                targetPaths.addAll(movedFromCandidates);
+
+            Map<String, Future<byte[]>> sourceFutures = submitHashes(source, sourcePaths, executor);
+            Map<String, Future<byte[]>> targetFutures = submitHashes(target, targetPaths, executor);
+            sourceHashes = await(sourceFutures);
+            targetHashes = await(targetFutures);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (String path : contentCandidates) {
+            byte[] sourceHash = sourceHashes.get(path);
+            byte[] targetHash = targetHashes.get(path);
+            if (sourceHash == null || targetHash == null || !Arrays.equals(sourceHash, targetHash))
+                changed.add(path);
+        }
+
+        Map<String, String> moved = new LinkedHashMap<>();
+        Set<String> usedSources = new HashSet<>();
+        for (String path : moveCandidates) {
+            byte[] hash = sourceHashes.get(path);
+            if (hash == null)
+                continue;
+            for (String from : removedFilesBySize.get(source.getEntries().get(path).getSize())) {
+                if (!usedSources.contains(from) && Arrays.equals(hash, targetHashes.get(from))) {
+                    usedSources.add(from);
+                    moved.put(from, path);
+                    break;
+                }
+            }
+        }
+        added.removeAll(moved.values());
+        removed.removeAll(moved.keySet());
+
+        return new TreeDiff(source, target, added, removed, changed, moved);
+    }
+
+    private static Map<Long, List<String>> filesBySize(TreeSnapshot snapshot, Collection<String> paths) {
+        Map<Long, List<String>> result = new HashMap<>();
+        for (String path : paths) {
+            TreeSnapshot.Entry entry = snapshot.getEntries().get(path);
+            if (!entry.isDirectory())
+                result.computeIfAbsent(entry.getSize(), size -> new ArrayList<>()).add(path);
+        }
+        return result;
+    }
+
+    private static Map<String, Future<byte[]>> submitHashes(TreeSnapshot snapshot, Collection<String> paths, ExecutorService executor) {
+        Map<String, Future<byte[]>> futures = new HashMap<>();
+        for (String path : paths)
+            futures.computeIfAbsent(path, key -> executor.submit(() -> snapshot.hashOf(key)));
+        return futures;
+    }
+
+    private static Map<String, byte[]> await(Map<String, Future<byte[]>> futures) throws IOException {
+        Map<String, byte[]> hashes = new HashMap<>();
+        for (Map.Entry<String, Future<byte[]>> entry : futures.entrySet()) {
+            try {
+                byte[] hash = entry.getValue().get();
+                if (hash != null)
+                    hashes.put(entry.getKey(), hash);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while hashing the files");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the snapshot of the source tree.
+     */
+    public TreeSnapshot getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the snapshot of the target tree.
+     */
+    public TreeSnapshot getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the paths that exist only in the source.
+     */
+    public NavigableSet<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the paths that exist only in the target.
+     */
+    public NavigableSet<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the paths of the files whose content differs.
+     */
+    public NavigableSet<String> getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the files that only have to be moved within the target: the keys are the
+     * current paths in the target, the values are the new paths.
+     */
+    public Map<String, String> getMoved() {
+        return moved;
+    }
+
+    /**
+     * @return {@code true} if the trees are equal; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && moved.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreeDiff{added=%d, removed=%d, changed=%d, moved=%d}",
+                added.size(), removed.size(), changed.size(), moved.size());
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable record of the files and directories of a directory tree: their relative paths,
+ * types, sizes, last-modified times and (optionally) content hashes.
+ *
+ * <p>
+ * A snapshot can be {@link #capture(Path) captured} from a live tree (the directories are walked in parallel),
+ * {@link #save(Path) saved} into a compact file and {@link #load(Path) loaded} later, so a tree can be compared
+ * against its earlier state by a {@link TreeDiff}.
+ *
+ * <p>
+ * The relative paths use '/' as the separator on every OS. Symbolic links are neither followed nor recorded.
+ * The entries that can't be read while capturing don't stop the capture; they are reported by {@link #getFailures()}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x4A464753; // "JFGS"
+    private static final int VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The record of one file or directory.
+     */
+    public static final class Entry {
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+        private final byte[] hash;
+
+        private Entry(boolean directory, long size, long lastModified, byte[] hash) {
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        /**
+         * @return {@code true} if the entry is a directory; {@code false} if it's a regular file
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * Returns the size of the file in bytes (0 for directories).
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the last-modified time in milliseconds.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return {@code true} if the content hash of the file has been recorded
+         */
+        public boolean hasHash() {
+            return hash != null;
+        }
+
+        private Entry withHash(byte[] hash) {
+            return new Entry(directory, size, lastModified, hash);
+        }
+    }
+
+    private final Path root;
+    private final boolean live;
+    private final NavigableMap<String, Entry> entries;
+    private final Map<String, IOException> failures;
+
+    private TreeSnapshot(Path root, boolean live, NavigableMap<String, Entry> entries, Map<String, IOException> failures) {
+        this.root = root;
+        this.live = live;
+        this.entries = Collections.unmodifiableNavigableMap(entries);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Captures the current state of a directory tree, without hashing the files.
+     *
+     * @param root the root directory
+     * @return the snapshot
+     * @throws IOException if the root directory can't be listed
+     */
+    public static TreeSnapshot capture(Path root) throws IOException {
+        return capture(root, false);
+    }
+
+    /**
+     * Captures the current state of a directory tree. The directories are walked in parallel.
+     *
+     * @param root       the root directory
+     * @param withHashes {@code true} if the content of every file should be hashed (needed if the snapshot
+     *                   is saved and the tree is compared against it later by content)
+     * @return the snapshot
+     * @throws IOException if the root directory can't be listed
+     */
+    public static TreeSnapshot capture(Path root, boolean withHashes) throws IOException {
+        Path absoluteRoot = root.toAbsolutePath();
+        if (!Files.isDirectory(absoluteRoot))
+            throw new IOException(String.format("'%s' is not a directory", absoluteRoot));
+
+        ConcurrentMap<String, Entry> collected = new ConcurrentHashMap<>();
+        ConcurrentMap<String, IOException> failures = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        try {
+            pool.invoke(new WalkTask(absoluteRoot, absoluteRoot, collected, failures, withHashes));
+        } catch (UncheckedIOException e) {
+            //the fork-join framework may rethrow a copy of the exception that wraps the original one
+            Throwable cause = e;
+            while (cause instanceof UncheckedIOException)
+                cause = cause.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        return new TreeSnapshot(absoluteRoot, true, new TreeMap<>(collected), new TreeMap<>(failures));
+    }
+
+    /**
+     * Loads a snapshot saved by {@link #save(Path)}.
+     *
+     * @param file the file of the snapshot
+     * @return the snapshot
+     * @throws IOException if the file can't be read or it's not a snapshot file
+     */
+    public static TreeSnapshot load(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IOException(String.format("'%s' is not a snapshot file", file));
+
+            Path root = Paths.get(input.readUTF());
+            int count = input.readInt();
+            NavigableMap<String, Entry> entries = new TreeMap<>();
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int sharedPrefix = input.readUnsignedShort();
+                String path = previous.substring(0, sharedPrefix) + input.readUTF();
+                boolean directory = input.readBoolean();
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                byte[] hash = null;
+                int hashLength = input.readUnsignedByte();
+                if (hashLength > 0) {
+                    hash = new byte[hashLength];
+                    input.readFully(hash);
+                }
+                entries.put(path, new Entry(directory, size, lastModified, hash));
+                previous = path;
+            }
+            return new TreeSnapshot(root, false, entries, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Saves the snapshot into a compact binary file (the common prefixes of consecutive paths are stored once).
+     *
+     * @param file the target file
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(root.toString());
+            output.writeInt(entries.size());
+            String previous = "";
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                String path = mapEntry.getKey();
+                int sharedPrefix = Math.min(sharedPrefixLength(previous, path), 0xFFFF);
+                output.writeShort(sharedPrefix);
+                output.writeUTF(path.substring(sharedPrefix));
+
+                Entry entry = mapEntry.getValue();
+                output.writeBoolean(entry.directory);
+                output.writeLong(entry.size);
+                output.writeLong(entry.lastModified);
+                output.writeByte(entry.hash == null ? 0 : entry.hash.length);
+                if (entry.hash != null)
+                    output.write(entry.hash);
+                previous = path;
+            }
+        }
+    }
+
+    /**
+     * Returns the absolute path of the root directory the snapshot was captured from.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the entries keyed by their relative paths, in the order of the paths.
+     */
+    public NavigableMap<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the relative paths that couldn't be read while capturing, with their errors. The content of
+     * a directory listed here is missing from the snapshot. The failures are not saved by {@link #save(Path)}.
+     */
+    public Map<String, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of files and directories in the snapshot
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Resolves a relative path of the snapshot against its root.
+     */
+    Path resolve(String relativePath) {
+        return root.resolve(relativePath.replace('/', root.getFileSystem().getSeparator().charAt(0)));
+    }
+
+    /**
+     * Returns the content hash of a file: the recorded one if there is one, or (if the snapshot has been captured
+     * in this process) the hash of the file's current content. Returns {@code null} if neither is available.
+     */
+    byte[] hashOf(String relativePath) throws IOException {
+        Entry entry = entries.get(relativePath);
+        if (entry == null || entry.directory)
+            return null;
+        if (entry.hash != null)
+            return entry.hash;
+        return live ? hash(resolve(relativePath)) : null;
+    }
+
+    static byte[] hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    static String relativize(Path root, Path path) {
+        String relative = root.relativize(path).toString();
+        String separator = root.getFileSystem().getSeparator();
+        return separator.equals("/") ? relative : relative.replace(separator, "/");
+    }
+
+    /**
+     * @return {@code true} if the relative path or one of its ancestors is among the given paths
+     */
+    static boolean isWithin(String relativePath, Set<String> paths) {
+        for (String current = relativePath; ; current = current.substring(0, current.lastIndexOf('/'))) {
+            if (paths.contains(current))
+                return true;
+            if (current.indexOf('/') < 0)
+                return false;
+        }
+    }
+
+    private static int sharedPrefixLength(String first, String second) {
+        int limit = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < limit && first.charAt(i) == second.charAt(i))
+            i++;
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreeSnapshot{root=%s, entries=%d}", root, entries.size());
+    }
+
+    /**
+     * Lists one directory and forks a task for each of its subdirectories.
+     */
+    private static final class WalkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path directory;
+        private final ConcurrentMap<String, Entry> collected;
+        private final ConcurrentMap<String, IOException> failures;
+        private final boolean withHashes;
+
+        private WalkTask(Path root, Path directory, ConcurrentMap<String, Entry> collected,
+                         ConcurrentMap<String, IOException> failures, boolean withHashes) {
+            this.root = root;
+            this.directory = directory;
+            this.collected = collected;
+            this.failures = failures;
+            this.withHashes = withHashes;
+        }
+
+        @Override
+        protected void compute() {
+            List<WalkTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children)
+                    visit(child, subtasks);
+            } catch (IOException | DirectoryIteratorException e) {
+                IOException failure = e instanceof DirectoryIteratorException ? ((DirectoryIteratorException) e).getCause() : (IOException) e;
+                //only an unreadable root fails the whole capture
+                if (directory.equals(root))
+                    throw new UncheckedIOException(failure);
+                failures.put(relativize(root, directory), failure);
+            }
+            invokeAll(subtasks);
+        }
+
+        private void visit(Path child, List<WalkTask> subtasks) {
+            String relative = relativize(root, child);
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    collected.put(relative, new Entry(true, 0, attributes.lastModifiedTime().toMillis(), null));
+                    subtasks.add(new WalkTask(root, child, collected, failures, withHashes));
+                } else if (attributes.isRegularFile()) {
+                    Entry entry = new Entry(false, attributes.size(), attributes.lastModifiedTime().toMillis(), null);
+                    collected.put(relative, entry);
+                    if (withHashes)
+                        collected.put(relative, entry.withHash(hash(child)));
+                }
+            } catch (IOException e) {
+                failures.put(relative, e);
+            }
+        }
+    }
+}
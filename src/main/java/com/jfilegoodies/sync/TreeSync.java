@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.sync;
+
+import com.jfilegoodies.util.IoExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes a target directory tree equal to a source tree with the minimal set of operations
+ * computed by a {@link TreeDiff}.
+ *
+ * <p>
+ * The operations are applied in this order: files are moved within the target, removed entries are
+ * deleted (children before their directories), missing directories are created, then added files are
+ * copied and changed files are updated in parallel. A move whose destination is (or is under) an entry to be
+ * deleted, e.g. because a file has become a directory, is done after the deletions; a move that fails is
+ * replaced by a copy from the source. The last-modified times are copied from the source, so the next
+ * comparison can skip the unchanged files without hashing them.
+ *
+ * <p>
+ * A changed file that is larger than the {@code blockUpdateThreshold} is not copied as a whole: the blocks
+ * of the two files are compared at the same offsets and only the differing blocks are rewritten in place.
+ * This saves most of the writes if the file has been modified in place (e.g. a database or a disk image),
+ * but there are no rolling checksums: if bytes have been inserted or removed, every block after that point
+ * differs and is rewritten.
+ *
+ * <pre>{@code
+ * SyncReport report = new TreeSync().sync(Paths.get("source"), Paths.get("mirror"));
+ * }</pre>
+ *
+ * <p>
+ * A failed operation doesn't stop the synchronization; the failures are collected into the {@link SyncReport}.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class TreeSync {
+
+    /**
+     * The default size of the compared blocks.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The default size from which the changed files are updated block by block.
+     */
+    public static final long DEFAULT_BLOCK_UPDATE_THRESHOLD = 8 * 1024 * 1024;
+
+    private final int blockSize;
+    private final long blockUpdateThreshold;
+
+    /**
+     * Creates a {@link TreeSync} with the default block size and block update threshold.
+     */
+    public TreeSync() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_UPDATE_THRESHOLD);
+    }
+
+    /**
+     * @param blockSize            the size of the compared blocks
+     * @param blockUpdateThreshold the size from which the changed files are updated block by block
+     * @throws IllegalArgumentException if the {@code blockSize} is not positive
+     */
+    public TreeSync(int blockSize, long blockUpdateThreshold) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be positive");
+        this.blockSize = blockSize;
+        this.blockUpdateThreshold = blockUpdateThreshold;
+    }
+
+    /**
+     * Compares the two trees and makes the target equal to the source.
+     *
+     * @param source the tree that holds the desired state
+     * @param target the tree to update; must exist
+     * @return the report of the performed operations
+     * @throws IOException if the trees can't be compared
+     */
+    public SyncReport sync(Path source, Path target) throws IOException {
+        return apply(TreeDiff.compare(source, target));
+    }
+
+    /**
+     * Applies a previously computed diff: the source snapshot's files are copied into the
+     * target snapshot's root.
+     *
+     * @param diff the differences of the trees
+     * @return the report of the performed operations
+     * @throws InterruptedIOException if the thread has been interrupted
+     */
+    public SyncReport apply(TreeDiff diff) throws InterruptedIOException {
+        TreeSnapshot source = diff.getSource();
+        TreeSnapshot target = diff.getTarget();
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        long moved = 0;
+        long deleted = 0;
+
+        //a destination that is (or is under) an entry to be deleted is only free after the deletions
+        Map<String, String> deferredMoves = new LinkedHashMap<>();
+        Map<String, String> failedMoves = new LinkedHashMap<>();
+        for (Map.Entry<String, String> move : diff.getMoved().entrySet()) {
+            if (TreeSnapshot.isWithin(move.getValue(), diff.getRemoved()))
+                deferredMoves.put(move.getKey(), move.getValue());
+            else if (move(source, target, move.getKey(), move.getValue()))
+                moved++;
+            else
+                failedMoves.put(move.getKey(), move.getValue());
+        }
+
+        //in reverse order the children precede their directories
+        Map<String, IOException> deletionFailures = new LinkedHashMap<>();
+        deleted += delete(target, diff.getRemoved().descendingSet(), deletionFailures);
+
+        for (Map.Entry<String, String> move : deferredMoves.entrySet()) {
+            if (move(source, target, move.getKey(), move.getValue()))
+                moved++;
+            else
+                failedMoves.put(move.getKey(), move.getValue());
+        }
+        //the failed moves are copied instead, their sources are removed like the other obsolete entries
+        NavigableSet<String> retried = new TreeSet<>(deletionFailures.keySet());
+        retried.addAll(failedMoves.keySet());
+        if (!retried.isEmpty()) {
+            deletionFailures.clear();
+            deleted += delete(target, retried.descendingSet(), deletionFailures);
+        }
+        failures.putAll(deletionFailures);
+
+        List<String> files = new ArrayList<>();
+        for (String path : diff.getAdded()) {
+            if (source.getEntries().get(path).isDirectory()) {
+                try {
+                    Files.createDirectories(target.resolve(path));
+                } catch (IOException e) {
+                    failures.put(path, e);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        files.addAll(failedMoves.values());
+        files.addAll(diff.getChanged());
+
+        AtomicLong copied = new AtomicLong();
+        AtomicLong updated = new AtomicLong();
+        AtomicLong bytesWritten = new AtomicLong();
+        Map<String, Future<?>> transfers = new LinkedHashMap<>();
+        ExecutorService executor = IoExecutors.newIoExecutor("jfilegoodies-sync");
+        try {
+            for (String path : files) {
+                boolean blockUpdate = diff.getChanged().contains(path)
+                        && source.getEntries().get(path).getSize() >= blockUpdateThreshold;
+                transfers.put(path, executor.submit(() -> {
+                    Path from = source.resolve(path);
+                    Path to = target.resolve(path);
+                    if (blockUpdate) {
+                        bytesWritten.addAndGet(updateBlocks(from, to));
+                        copyLastModified(source, path, to);
+                        updated.incrementAndGet();
+                    } else {
+                        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                        bytesWritten.addAndGet(source.getEntries().get(path).getSize());
+                        copied.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            for (Map.Entry<String, Future<?>> transfer : transfers.entrySet()) {
+                try {
+                    transfer.getValue().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(transfer.getKey(), cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The synchronization has been interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new SyncReport(copied.get(), updated.get(), moved, deleted, bytesWritten.get(), failures);
+    }
+
+    /**
+     * Moves a file within the target.
+     *
+     * @return {@code true} if the file has been moved
+     */
+    private static boolean move(TreeSnapshot source, TreeSnapshot target, String from, String to) {
+        try {
+            Path destination = target.resolve(to);
+            Files.createDirectories(destination.getParent());
+            Files.move(target.resolve(from), destination);
+            copyLastModified(source, to, destination);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the given entries of the target in the given order.
+     *
+     * @return the number of deleted entries
+     */
+    private static long delete(TreeSnapshot target, Collection<String> paths, Map<String, IOException> failures) {
+        long deleted = 0;
+        for (String path : paths) {
+            try {
+                if (Files.deleteIfExists(target.resolve(path)))
+                    deleted++;
+            } catch (IOException e) {
+                failures.put(path, e);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Rewrites the blocks of the target that differ from the source at the same offsets.
+     *
+     * @return the number of written bytes
+     */
+    private long updateBlocks(Path source, Path target) throws IOException {
+        long written = 0;
+        ByteBuffer sourceBlock = ByteBuffer.allocate(blockSize);
+        ByteBuffer targetBlock = ByteBuffer.allocate(blockSize);
+        try (FileChannel from = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel to = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = from.size();
+            for (long position = 0; position < size; position += blockSize) {
+                readBlock(from, sourceBlock, position);
+                readBlock(to, targetBlock, position);
+                if (!sourceBlock.equals(targetBlock)) {
+                    while (sourceBlock.hasRemaining())
+                        written += to.write(sourceBlock, position + sourceBlock.position());
+                }
+            }
+            if (to.size() > size)
+                to.truncate(size);
+        }
+        return written;
+    }
+
+    private static void readBlock(FileChannel channel, ByteBuffer block, long position) throws IOException {
+        block.clear();
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0)
+                break;
+        }
+        block.flip();
+    }
+
+    private static void copyLastModified(TreeSnapshot source, String path, Path target) throws IOException {
+        Files.setLastModifiedTime(target, FileTime.fromMillis(source.getEntries().get(path).getLastModified()));
+    }
+}
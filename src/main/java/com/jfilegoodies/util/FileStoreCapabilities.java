@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.util;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The traits of a {@link FileStore} (volume) that decide which operations are cheap and correct on it.
+ *
+ * <p>
+ * The traits are probed by {@link OsUtils#getCapabilities(Path)} (once per file store of the default
+ * file system): a hidden temporary directory is created, and a few files are created, linked and moved
+ * in it. The probe directory is created in the default temporary directory ({@code java.io.tmpdir}) if
+ * that's on the same file store, so the directories of the callers are left alone; otherwise it's created
+ * in the examined directory. If neither is writable, only the attribute views are examined, the other
+ * traits get optimistic defaults (see {@link #isProbed()}), so callers still attempt the operations
+ * and fall back when they fail.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class FileStoreCapabilities {
+
+    /**
+     * The longest file name that is probed; longer names may be allowed by the file store.
+     */
+    public static final int MAX_PROBED_NAME_LENGTH = 1024;
+
+    private static final int DEFAULT_MAX_NAME_LENGTH = 255;
+
+    private final String name;
+    private final String type;
+    private final boolean probed;
+    private final boolean caseSensitive;
+    private final Set<String> attributeViews;
+    private final int maxNameLength;
+    private final boolean atomicMoveSupported;
+    private final boolean hardLinkSupported;
+
+    private FileStoreCapabilities(String name, String type, boolean probed, boolean caseSensitive, Set<String> attributeViews,
+                                  int maxNameLength, boolean atomicMoveSupported, boolean hardLinkSupported) {
+        this.name = name;
+        this.type = type;
+        this.probed = probed;
+        this.caseSensitive = caseSensitive;
+        this.attributeViews = Collections.unmodifiableSet(attributeViews);
+        this.maxNameLength = maxNameLength;
+        this.atomicMoveSupported = atomicMoveSupported;
+        this.hardLinkSupported = hardLinkSupported;
+    }
+
+    /**
+     * Probes the traits of the file store, which holds the given directory.
+     */
+    static FileStoreCapabilities probe(FileStore store, Path directory) {
+        Set<String> attributeViews = new TreeSet<>();
+        for (String view : directory.getFileSystem().supportedFileAttributeViews()) {
+            if (store.supportsFileAttributeView(view))
+                attributeViews.add(view);
+        }
+
+        Path probeDirectory = createProbeDirectory(store, directory);
+        if (probeDirectory == null)
+            return defaults(store, attributeViews);
+
+        try {
+            Path file = Files.createFile(probeDirectory.resolve("CaseProbe"));
+            boolean caseSensitive = !Files.exists(probeDirectory.resolve("caseprobe"));
+            boolean hardLinkSupported = probeHardLink(file, probeDirectory.resolve("link"));
+            boolean atomicMoveSupported = probeAtomicMove(file, probeDirectory.resolve("moved"));
+            int maxNameLength = probeMaxNameLength(probeDirectory);
+            return new FileStoreCapabilities(store.name(), store.type(), true, caseSensitive,
+                    attributeViews, maxNameLength, atomicMoveSupported, hardLinkSupported);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return defaults(store, attributeViews);
+        } finally {
+            deleteProbe(probeDirectory);
+        }
+    }
+
+    private static Path createProbeDirectory(FileStore store, Path directory) {
+        List<Path> locations = new ArrayList<>(2);
+        if (directory.getFileSystem() == FileSystems.getDefault()) {
+            try {
+                Path temp = Paths.get(System.getProperty("java.io.tmpdir"));
+                if (Files.isDirectory(temp) && store.equals(Files.getFileStore(temp)))
+                    locations.add(temp);
+            } catch (IOException | InvalidPathException | SecurityException e) {
+                //no temporary directory on the store
+            }
+        }
+        locations.add(directory);
+
+        for (Path location : locations) {
+            try {
+                return Files.createTempDirectory(location, ".jfilegoodies-probe");
+            } catch (IOException | UnsupportedOperationException | SecurityException e) {
+                //trying the next location
+            }
+        }
+        return null;
+    }
+
+    private static FileStoreCapabilities defaults(FileStore store, Set<String> attributeViews) {
+        return new FileStoreCapabilities(store.name(), store.type(), false, !(OsUtils.isWindows() || OsUtils.isMac()),
+                attributeViews, DEFAULT_MAX_NAME_LENGTH, true, true);
+    }
+
+    private static boolean probeHardLink(Path existing, Path link) {
+        try {
+            Files.createLink(link, existing);
+            return Files.isSameFile(link, existing);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private static boolean probeAtomicMove(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the longest name of ASCII characters that can be created by binary search.
+     */
+    private static int probeMaxNameLength(Path directory) {
+        int low = 1;
+        int high = MAX_PROBED_NAME_LENGTH;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (canCreate(directory, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean canCreate(Path directory, int nameLength) {
+        char[] name = new char[nameLength];
+        Arrays.fill(name, 'n');
+        try {
+            Files.delete(Files.createFile(directory.resolve(new String(name))));
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static void deleteProbe(Path probeDirectory) {
+        try {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(probeDirectory)) {
+                for (Path entry : entries)
+                    Files.deleteIfExists(entry);
+            }
+            Files.deleteIfExists(probeDirectory);
+        } catch (IOException | RuntimeException ignored) {
+            //best effort, the directory is hidden and empty at worst
+        }
+    }
+
+    /**
+     * @return the name of the file store
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the type of the file store (e.g. "ext4", "NTFS", "apfs")
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return {@code true} if the traits have been probed on the file store; {@code false} if
+     * no writable directory of the file store has been found and the traits are optimistic defaults
+     * of the OS (these are not cached, so the next call probes again)
+     */
+    public boolean isProbed() {
+        return probed;
+    }
+
+    /**
+     * @return {@code true} if the names that differ only in case are different names on the file store
+     */
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * @return the names of the supported file attribute views (e.g. "basic", "posix", "dos")
+     */
+    public Set<String> getSupportedAttributeViews() {
+        return attributeViews;
+    }
+
+    /**
+     * @param view the name of the attribute view
+     * @return {@code true} if the attribute view is supported by the file store
+     */
+    public boolean supportsAttributeView(String view) {
+        return attributeViews.contains(view);
+    }
+
+    /**
+     * @return {@code true} if the POSIX attributes (permissions, owner, group) are supported
+     */
+    public boolean supportsPosixAttributes() {
+        return supportsAttributeView("posix");
+    }
+
+    /**
+     * Returns the maximum length of a file name that consists of ASCII characters; at most
+     * {@link #MAX_PROBED_NAME_LENGTH}. It's a limit of the file store, not of the probed directory:
+     * the long paths are accessed in their extended form on Windows, so the path length doesn't limit it.
+     */
+    public int getMaxNameLength() {
+        return maxNameLength;
+    }
+
+    /**
+     * @return {@code true} if files can be moved atomically within the file store
+     */
+    public boolean isAtomicMoveSupported() {
+        return atomicMoveSupported;
+    }
+
+    /**
+     * @return {@code true} if hard links can be created on the file store
+     */
+    public boolean isHardLinkSupported() {
+        return hardLinkSupported;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FileStoreCapabilities{name='%s', type='%s', probed=%s, caseSensitive=%s, attributeViews=%s, " +
+                        "maxNameLength=%d, atomicMove=%s, hardLinks=%s}", name, type, probed, caseSensitive, attributeViews,
+                maxNameLength, atomicMoveSupported, hardLinkSupported);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates {@link ExecutorService}s for I/O bound work.
+ *
+ * <p>
+ * On Java 21+ the executors run every task on its own virtual thread;
+ * on older runtimes a bounded pool of daemon platform threads is used instead.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class IoExecutors {
+
+    private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private IoExecutors() {
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if the running JVM supports virtual threads; {@code false} otherwise
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+    }
+
+    /**
+     * Creates an executor for I/O bound tasks.
+     *
+     * @param fallbackThreads the size of the platform thread pool that is used if virtual threads
+     *                        are not available; must be positive
+     * @param name            the prefix of the platform threads' names
+     * @return a virtual-thread-per-task executor or a fixed platform thread pool
+     * @throws IllegalArgumentException if {@code fallbackThreads} is not positive
+     */
+    public static ExecutorService newIoExecutor(int fallbackThreads, String name) {
+        if (fallbackThreads <= 0)
+            throw new IllegalArgumentException("fallbackThreads must be positive");
+
+        if (VIRTUAL_THREAD_EXECUTOR_FACTORY != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                //falling back to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(fallbackThreads, daemonThreadFactory(name));
+    }
+
+    /**
+     * Calls the {@link #newIoExecutor(int, String)} with a fallback pool sized
+     * to four threads per available processor.
+     *
+     * @see #newIoExecutor(int, String)
+     */
+    public static ExecutorService newIoExecutor(String name) {
+        return newIoExecutor(defaultPlatformThreads(), name);
+    }
+
+    /**
+     * @return the default size of the platform thread pools: four threads per available processor
+     */
+    public static int defaultPlatformThreads() {
+        return Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    /**
+     * Creates a {@link ThreadFactory} that produces daemon threads named {@code <name>-<n>}.
+     *
+     * @param name the prefix of the threads' names
+     * @return the thread factory
+     */
+    public static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
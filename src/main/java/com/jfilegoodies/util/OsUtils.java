@@ -1,7 +1,24 @@
 package com.jfilegoodies.util;
 
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public final class OsUtils {
 
+    private static final int MAX_CACHED_DIRECTORIES = 4096;
+
+    //only the default file system is cached: the keys would keep the other file systems reachable
+    private static final ConcurrentMap<FileStore, CompletableFuture<FileStoreCapabilities>> capabilitiesByStore = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Path, FileStoreCapabilities> capabilitiesByDirectory = new ConcurrentHashMap<>();
+
     private static final String os = System.getProperty("os.name");
 
     private static final boolean WINDOWS = os.startsWith("Windows");
@@ -25,6 +42,91 @@ public final class OsUtils {
         return SOLARIS;
     }
 
+    /**
+     * Returns the capabilities of the {@link FileStore} that holds the given path.
+     *
+     * <p>
+     * The capabilities are probed by creating, linking, moving and deleting a few files in a hidden
+     * temporary directory (see {@link FileStoreCapabilities}), so the first call on a file store writes
+     * into the default temporary directory if it's on the same file store, otherwise into the examined
+     * directory. On the default file system the capabilities are probed once per file store and cached,
+     * the file stores of the directories are cached as well, so the later calls are cheap; if no writable
+     * directory has been found, the defaults are not cached. The stores of other file systems (e.g.
+     * in-memory ones) are probed on every call, so the cache doesn't keep them reachable. If the path
+     * doesn't exist, its closest existing ancestor is examined.
+     *
+     * @param path the path of a file or a directory
+     * @return the capabilities of the file store
+     * @throws IOException if the file store can't be determined
+     * @since 1.3
+     */
+    public static FileStoreCapabilities getCapabilities(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().normalize();
+        boolean cacheable = directory.getFileSystem() == FileSystems.getDefault();
+        FileStoreCapabilities cached = capabilitiesByDirectory.get(directory);
+        if (cached != null)
+            return cached;
+
+        Path existing = directory;
+        while (existing != null && !Files.isDirectory(existing))
+            existing = existing.getParent();
+        if (existing == null)
+            throw new NoSuchFileException(path.toString());
+
+        FileStore store = Files.getFileStore(existing);
+        if (!cacheable)
+            return FileStoreCapabilities.probe(store, existing);
+
+        FileStoreCapabilities capabilities = probeOnce(store, existing);
+        if (!capabilities.isProbed())
+            return capabilities; //not cached, see probeOnce
+        if (capabilitiesByDirectory.size() >= MAX_CACHED_DIRECTORIES)
+            capabilitiesByDirectory.clear();
+        capabilitiesByDirectory.put(directory, capabilities);
+        return capabilities;
+    }
+
+    /**
+     * Probes the file store outside of the map's lock; the concurrent callers of the same store wait for the result.
+     * The defaults returned when no writable directory has been found are forgotten, so the store is probed again
+     * from the next (maybe writable) directory.
+     */
+    private static FileStoreCapabilities probeOnce(FileStore store, Path directory) {
+        CompletableFuture<FileStoreCapabilities> probe = new CompletableFuture<>();
+        CompletableFuture<FileStoreCapabilities> running = capabilitiesByStore.putIfAbsent(store, probe);
+        if (running == null) {
+            try {
+                probe.complete(FileStoreCapabilities.probe(store, directory));
+            } catch (RuntimeException | Error e) {
+                capabilitiesByStore.remove(store, probe);
+                probe.completeExceptionally(e);
+                throw e;
+            }
+            running = probe;
+        }
+        try {
+            FileStoreCapabilities capabilities = running.join();
+            if (!capabilities.isProbed())
+                capabilitiesByStore.remove(store, running);
+            return capabilities;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    /**
+     * Forgets the cached capabilities, so they are probed again (e.g. after volumes are remounted).
+     *
+     * @since 1.3
+     */
+    public static void clearCapabilities() {
+        capabilitiesByDirectory.clear();
+        capabilitiesByStore.clear();
+    }
+
     private OsUtils() {
     }
 }
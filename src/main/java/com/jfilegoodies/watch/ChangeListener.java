@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.watch;
+
+import com.jfilegoodies.cache.FileAttributeCache;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the coalesced batches of changes from a {@link ChangeTracker}.
+ *
+ * <p>
+ * The listeners are called on the tracker's poller thread, so they should return quickly.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    void onChanges(ChangeSet changes);
+
+    /**
+     * Creates a listener that keeps a {@link FileAttributeCache} up to date by invalidating
+     * the entries of the changed paths (and the whole tree of the deleted or rescanned directories).
+     *
+     * <pre>{@code
+     * FileAttributeCache cache = ...;
+     * changeTracker.addListener(ChangeListener.invalidating(cache));
+     * }</pre>
+     *
+     * @param cache the cache to keep up to date
+     * @return the listener
+     */
+    static ChangeListener invalidating(FileAttributeCache cache) {
+        return changes -> {
+            List<Path> trees = new ArrayList<>(changes.getRescannedDirectories());
+            changes.getChanges().forEach((path, kind) -> {
+                if (kind == ChangeSet.Kind.DELETED) {
+                    trees.add(path);
+                } else {
+                    cache.invalidate(path);
+                }
+                //creating or deleting an entry changes the modification time of its directory as well
+                if (kind != ChangeSet.Kind.MODIFIED && path.getParent() != null)
+                    cache.invalidate(path.getParent());
+            });
+            cache.invalidateTrees(trees);
+        };
+    }
+}
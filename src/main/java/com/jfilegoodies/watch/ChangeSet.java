@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.watch;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A coalesced batch of file system changes published by a {@link ChangeTracker}.
+ *
+ * <p>
+ * Every path appears at most once with its net change in the batch; e.g. a file that has been
+ * created and then modified is reported as {@link Kind#CREATED}, a file that has been created and
+ * then deleted is not reported at all.
+ *
+ * <p>
+ * If the tracker has lost events of a directory (the OS event queue overflowed), the directory is
+ * reported by {@link #getRescannedDirectories()}: anything under it may have changed.
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ChangeSet {
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Kind {
+        CREATED, MODIFIED, DELETED
+    }
+
+    private final Map<Path, Kind> changes;
+    private final Set<Path> rescannedDirectories;
+
+    private ChangeSet(Map<Path, Kind> changes, Set<Path> rescannedDirectories) {
+        this.changes = Collections.unmodifiableMap(changes);
+        this.rescannedDirectories = Collections.unmodifiableSet(rescannedDirectories);
+    }
+
+    /**
+     * Merges two consecutive change sets into one, as if their changes had been collected
+     * into the same batch.
+     *
+     * @param first  the earlier change set
+     * @param second the later change set
+     * @return the merged change set
+     */
+    public static ChangeSet merge(ChangeSet first, ChangeSet second) {
+        Builder builder = new Builder();
+        builder.addAll(first);
+        builder.addAll(second);
+        return builder.build();
+    }
+
+    /**
+     * Returns the changed paths mapped to their net change, in the order they first changed.
+     */
+    public Map<Path, Kind> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Returns the directories whose events were lost, so their content has been rescanned.
+     */
+    public Set<Path> getRescannedDirectories() {
+        return rescannedDirectories;
+    }
+
+    /**
+     * Returns the paths that have the given kind of change.
+     */
+    public Set<Path> getPaths(Kind kind) {
+        Set<Path> paths = new LinkedHashSet<>();
+        changes.forEach((path, change) -> {
+            if (change == kind)
+                paths.add(path);
+        });
+        return paths;
+    }
+
+    /**
+     * @return {@code true} if the batch contains no changes; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty() && rescannedDirectories.isEmpty();
+    }
+
+    /**
+     * @return the number of changed paths and rescanned directories
+     */
+    public int size() {
+        return changes.size() + rescannedDirectories.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChangeSet{changes=%s, rescanned=%s}", changes, rescannedDirectories);
+    }
+
+    /**
+     * Collects and coalesces the changes of one batch.
+     */
+    static final class Builder {
+        private final Map<Path, Kind> changes = new LinkedHashMap<>();
+        private final Set<Path> rescannedDirectories = new LinkedHashSet<>();
+
+        void add(Path path, Kind kind) {
+            Kind previous = changes.get(path);
+            Kind merged = merge(previous, kind);
+            if (merged == null)
+                changes.remove(path);
+            else
+                changes.put(path, merged);
+        }
+
+        void addAll(ChangeSet changeSet) {
+            changeSet.changes.forEach(this::add);
+            rescannedDirectories.addAll(changeSet.rescannedDirectories);
+        }
+
+        void rescanned(Path directory) {
+            rescannedDirectories.add(directory);
+        }
+
+        boolean isEmpty() {
+            return changes.isEmpty() && rescannedDirectories.isEmpty();
+        }
+
+        int size() {
+            return changes.size() + rescannedDirectories.size();
+        }
+
+        ChangeSet build() {
+            return new ChangeSet(new LinkedHashMap<>(changes), new LinkedHashSet<>(rescannedDirectories));
+        }
+
+        private static Kind merge(Kind previous, Kind next) {
+            if (previous == null)
+                return next;
+
+            switch (previous) {
+                case CREATED:
+                    //a file that didn't exist before the batch and doesn't exist after it: no change
+                    return next == Kind.DELETED ? null : Kind.CREATED;
+                case DELETED:
+                    //deleted and created again: the file has been replaced
+                    return next == Kind.DELETED ? Kind.DELETED : Kind.MODIFIED;
+                case MODIFIED:
+                default:
+                    return next == Kind.DELETED ? Kind.DELETED : Kind.MODIFIED;
+            }
+        }
+    }
+}
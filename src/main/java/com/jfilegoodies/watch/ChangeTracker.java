@@ -0,0 +1,349 @@
+/*
+ * Copyright 2020 DansoftOwner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jfilegoodies.watch;
+
+import com.jfilegoodies.util.IoExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the changes of directory trees through a {@link WatchService} and publishes them
+ * to {@link ChangeListener}s in coalesced batches ({@link ChangeSet}s).
+ *
+ * <p>
+ * All the registered directories share one {@link WatchService} and one poller thread.
+ * The events are collected until the {@code coalesceDelay} passes after the first event of a batch
+ * (or the batch reaches its maximum size), so a burst of changes is published as one {@link ChangeSet}.
+ * Newly created subdirectories are registered automatically. If the events of a directory are lost
+ * (the event queue overflowed), only that directory is rescanned and reported as rescanned.
+ *
+ * <pre>{@code
+ * FileAttributeCache cache = ...;
+ * try (ChangeTracker tracker = new ChangeTracker()) {
+ *     tracker.addListener(ChangeListener.invalidating(cache));
+ *     tracker.registerTree(Paths.get("path/to/dir"));
+ *     ...
+ * }
+ * }</pre>
+ *
+ * <p>
+ * <i>Note: on Linux every watched directory consumes an inotify watch; watching tens of thousands of directories
+ * may require raising the {@code fs.inotify.max_user_watches} limit.</i>
+ *
+ * @author Daniel Gyorffy
+ * @since 1.3
+ */
+public final class ChangeTracker implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeTracker.class);
+
+    /**
+     * The default maximum number of changes published in one {@link ChangeSet}.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 10_000;
+
+    private final WatchService watchService;
+    private final long coalesceDelayNanos;
+    private final int maxBatchSize;
+    private final Map<WatchKey, Path> directoriesByKey = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> keysByDirectory = new ConcurrentHashMap<>();
+    //a key may deliver events as soon as it's registered, so it's mapped under the same lock the poller looks it up under
+    private final Object registrationLock = new Object();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread poller;
+    private volatile boolean closed;
+
+    /**
+     * Creates a tracker on the default file system that coalesces the events of 100 milliseconds.
+     *
+     * @throws IOException if the watch service can't be created
+     */
+    public ChangeTracker() throws IOException {
+        this(100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a tracker on the default file system.
+     *
+     * @param coalesceDelay the time while the events are collected into one batch
+     * @param unit          the unit of the {@code coalesceDelay}
+     * @throws IOException if the watch service can't be created
+     */
+    public ChangeTracker(long coalesceDelay, TimeUnit unit) throws IOException {
+        this(FileSystems.getDefault(), coalesceDelay, unit, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param fileSystem    the file system of the directories that will be registered
+     * @param coalesceDelay the time while the events are collected into one batch
+     * @param unit          the unit of the {@code coalesceDelay}
+     * @param maxBatchSize  the maximum number of changes in one batch
+     * @throws IOException              if the watch service can't be created
+     * @throws IllegalArgumentException if the {@code coalesceDelay} is negative or the {@code maxBatchSize} is not positive
+     */
+    public ChangeTracker(FileSystem fileSystem, long coalesceDelay, TimeUnit unit, int maxBatchSize) throws IOException {
+        if (coalesceDelay < 0)
+            throw new IllegalArgumentException("coalesceDelay mustn't be negative");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+
+        this.watchService = fileSystem.newWatchService();
+        this.coalesceDelayNanos = unit.toNanos(coalesceDelay);
+        this.maxBatchSize = maxBatchSize;
+        this.poller = IoExecutors.daemonThreadFactory("jfilegoodies-change-tracker").newThread(this::poll);
+        this.poller.start();
+    }
+
+    /**
+     * Adds a listener that will receive the batches of changes.
+     *
+     * @param listener the listener; mustn't be null
+     */
+    public void addListener(ChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "The listener mustn't be null"));
+    }
+
+    /**
+     * Removes a previously added listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the given directory and all of its subdirectories.
+     * Symbolic links are not followed.
+     *
+     * @param root the root directory of the tree
+     * @throws IOException if the root can't be registered
+     */
+    public void registerTree(Path root) throws IOException {
+        registerTree(root.toAbsolutePath(), null);
+    }
+
+    /**
+     * Stops watching the given directory and all of its subdirectories.
+     *
+     * @param root the root directory of the tree
+     */
+    public void unregisterTree(Path root) {
+        Path absoluteRoot = root.toAbsolutePath();
+        synchronized (registrationLock) {
+            keysByDirectory.entrySet().removeIf(entry -> {
+                if (!entry.getKey().startsWith(absoluteRoot))
+                    return false;
+                entry.getValue().cancel();
+                directoriesByKey.remove(entry.getValue());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * @return the number of the currently watched directories
+     */
+    public int getWatchedDirectoryCount() {
+        return keysByDirectory.size();
+    }
+
+    /**
+     * Registers the directories of the tree; if the {@code pending} builder is given, every entry
+     * found under the tree is reported as created (their events may have been missed before the registration).
+     */
+    private void registerTree(Path root, ChangeSet.Builder pending) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                if (keysByDirectory.containsKey(directory))
+                    return FileVisitResult.CONTINUE;
+                register(directory);
+                if (pending != null && !directory.equals(root))
+                    pending.add(directory, ChangeSet.Kind.CREATED);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (pending != null)
+                    pending.add(file, ChangeSet.Kind.CREATED);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
+                if (file.equals(root))
+                    throw exception;
+                logger.debug("Couldn't register '{}'", file, exception);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path directory) throws IOException {
+        synchronized (registrationLock) {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            directoriesByKey.put(key, directory);
+            keysByDirectory.put(directory, key);
+        }
+    }
+
+    private void poll() {
+        ChangeSet.Builder pending = new ChangeSet.Builder();
+        long flushDeadline = 0;
+        while (!closed) {
+            WatchKey key;
+            try {
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long remaining = flushDeadline - System.nanoTime();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : watchService.poll();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            if (key != null) {
+                boolean wasEmpty = pending.isEmpty();
+                processEvents(key, pending);
+                if (wasEmpty)
+                    flushDeadline = System.nanoTime() + coalesceDelayNanos;
+            }
+
+            if (!pending.isEmpty() && (pending.size() >= maxBatchSize || System.nanoTime() - flushDeadline >= 0)) {
+                publish(pending.build());
+                pending = new ChangeSet.Builder();
+            }
+        }
+    }
+
+    private void processEvents(WatchKey key, ChangeSet.Builder pending) {
+        Path directory;
+        synchronized (registrationLock) {
+            directory = directoriesByKey.get(key);
+        }
+        if (directory == null) {
+            //unregistered in the meantime
+            key.cancel();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                rescan(directory, pending);
+                continue;
+            }
+
+            Path child = directory.resolve((Path) event.context());
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                pending.add(child, ChangeSet.Kind.CREATED);
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+                    registerQuietly(child, pending);
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.add(child, ChangeSet.Kind.DELETED);
+            } else {
+                pending.add(child, ChangeSet.Kind.MODIFIED);
+            }
+        }
+
+        if (!key.reset()) {
+            //the directory has been deleted or became inaccessible
+            synchronized (registrationLock) {
+                directoriesByKey.remove(key);
+                keysByDirectory.remove(directory, key);
+            }
+        }
+    }
+
+    /**
+     * Rescans one directory whose events have been lost: registers its new subdirectories
+     * and reports it as rescanned.
+     */
+    private void rescan(Path directory, ChangeSet.Builder pending) {
+        logger.debug("Events have been lost in '{}', rescanning", directory);
+        pending.rescanned(directory);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                if (!keysByDirectory.containsKey(child) && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+                    registerQuietly(child, pending);
+            }
+        } catch (IOException e) {
+            logger.debug("Couldn't rescan '{}'", directory, e);
+        }
+    }
+
+    private void registerQuietly(Path directory, ChangeSet.Builder pending) {
+        try {
+            registerTree(directory, pending);
+        } catch (IOException e) {
+            logger.debug("Couldn't register '{}'", directory, e);
+        }
+    }
+
+    private void publish(ChangeSet changes) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onChanges(changes);
+            } catch (RuntimeException e) {
+                logger.error("A change listener has thrown an exception", e);
+            }
+        }
+    }
+
+    /**
+     * Stops watching all the directories and stops the poller thread.
+     *
+     * @throws IOException if the watch service can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        directoriesByKey.clear();
+        keysByDirectory.clear();
+    }
+}
@@ -1,9 +1,14 @@
 package com.jfilegoodies;
 
+import com.jfilegoodies.memory.MemoryFileSystems;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,4 +51,38 @@ public class FileGoodiesTest {
        assertNotEquals(deprecated, original);
        assertTrue(deprecated.getName().matches("theFile_old\\d{4}\\.log"));
     }
+
+    @Test
+    public void testIsDeprecatedFile() {
+        assertTrue(FileGoodies.isDeprecatedFile(new File("theFile_old3102.log")));
+        assertTrue(FileGoodies.isDeprecatedFile(FileGoodies.deprecateFile(new File("archive.tar.gz"))));
+        assertFalse(FileGoodies.isDeprecatedFile(new File("theFile.log")));
+        assertFalse(FileGoodies.isDeprecatedFile(new File("theFile_older.log")));
+        assertFalse(FileGoodies.isDeprecatedFile(null));
+        assertFalse(FileGoodies.isDeprecatedPath(null));
+    }
+
+    @Test
+    public void testPathOverloadsOnMemoryFileSystem() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path directory = Files.createDirectories(fileSystem.getPath("/path/to"));
+            Path original = Files.write(directory.resolve("theFile.log"), new byte[]{1, 2, 3});
+
+            Path deprecated = FileGoodies.deprecatePath(original);
+            assertEquals(directory, deprecated.getParent());
+            assertTrue(FileGoodies.isDeprecatedPath(deprecated));
+            assertFalse(Files.exists(deprecated));
+            assertNull(FileGoodies.deprecatePath(directory));
+
+            Files.move(original, deprecated);
+            assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(deprecated));
+
+            assertFalse(FileGoodies.isOSExecutablePath(directory.resolve("notes.txt")));
+            assertFalse(FileGoodies.isOSExecutablePath(Files.createDirectory(directory.resolve("dir.exe"))));
+            assertFalse(FileGoodies.isOSExecutablePath(null));
+
+            assertTrue(FileGoodies.hasValidPath(fileSystem, "/a/b.txt"));
+            assertFalse(FileGoodies.hasValidPath(fileSystem, "a\u0000b"));
+        }
+    }
 }
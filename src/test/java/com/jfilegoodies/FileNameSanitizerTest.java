@@ -0,0 +1,96 @@
+package com.jfilegoodies;
+
+import com.jfilegoodies.memory.MemoryFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileNameSanitizerTest {
+
+    @Test
+    public void testSanitizeWindows() {
+        FileNameSanitizer sanitizer = FileNameSanitizer.forTarget(FileNameSanitizer.Target.WINDOWS);
+        assertEquals("what_.txt", sanitizer.sanitize("what?.txt"));
+        assertEquals("a_b_c", sanitizer.sanitize("a/b\\c"));
+        assertEquals("con_.txt", sanitizer.sanitize("con.txt"));
+        assertEquals("LPT1_", sanitizer.sanitize("LPT1"));
+        assertEquals("console.txt", sanitizer.sanitize("console.txt"));
+        assertEquals("name", sanitizer.sanitize("name. . "));
+        assertEquals("_", sanitizer.sanitize(""));
+        assertEquals("_", sanitizer.sanitize(".."));
+        assertEquals("tab_", sanitizer.sanitize("tab\t"));
+
+        String valid = "valid name.txt";
+        assertSame(valid, sanitizer.sanitize(valid));
+    }
+
+    @Test
+    public void testSanitizeUnix() {
+        FileNameSanitizer sanitizer = FileNameSanitizer.forTarget(FileNameSanitizer.Target.UNIX);
+        assertEquals("what?.txt", sanitizer.sanitize("what?.txt"));
+        assertEquals("con.txt", sanitizer.sanitize("con.txt"));
+        assertEquals("a_b", sanitizer.sanitize("a/b"));
+        assertEquals("__", sanitizer.sanitize(".."));
+        assertEquals(".hidden", sanitizer.sanitize(".hidden"));
+        assertEquals("-", FileNameSanitizer.forTarget(FileNameSanitizer.Target.UNIX).withReplacement('-').sanitize("/"));
+        assertThrows(IllegalArgumentException.class, () -> sanitizer.withReplacement('/'));
+    }
+
+    @Test
+    public void testTruncate() {
+        FileNameSanitizer sanitizer = FileNameSanitizer.forTarget(FileNameSanitizer.Target.UNIX).withMaxLength(20);
+        assertEquals("abcdefghijklmnop.txt", sanitizer.sanitize("abcdefghijklmnopqrstuvwxyz.txt"));
+
+        //a two-byte character is not split
+        String truncated = sanitizer.sanitize("abcdefghijklmno\u0151\u0151.txt");
+        assertEquals("abcdefghijklmno.txt", truncated);
+        assertTrue(truncated.getBytes(StandardCharsets.UTF_8).length <= 20);
+
+        //an extension that doesn't fit is truncated with the name
+        assertEquals("a.bcdefghijklmnopqrs", sanitizer.sanitize("a.bcdefghijklmnopqrstuvwxyz"));
+    }
+
+    @Test
+    public void testBatch() {
+        FileNameSanitizer sanitizer = FileNameSanitizer.forTarget(FileNameSanitizer.Target.WINDOWS);
+        List<String> names = sanitizer.sanitizeAll(Arrays.asList("a?.txt", "a*.txt", "A_.TXT", "b", "b_1"));
+        assertEquals(Arrays.asList("a_.txt", "a__1.txt", "A__2.TXT", "b", "b_1"), names);
+
+        FileNameSanitizer.Batch batch = FileNameSanitizer.forTarget(FileNameSanitizer.Target.UNIX).newBatch();
+        assertTrue(batch.reserve("report.pdf"));
+        assertFalse(batch.reserve("report.pdf"));
+        assertEquals("report_1.pdf", batch.sanitize("report.pdf"));
+        assertEquals("Report.pdf", batch.sanitize("Report.pdf"));
+        for (int i = 0; i < 1000; i++)
+            batch.sanitize("many");
+        assertEquals("many_1000", batch.sanitize("many"));
+        assertEquals(1004, batch.size());
+        //the numbering goes on where it stopped, but the reserved names are still skipped
+        assertTrue(batch.reserve("many_1002"));
+        assertEquals("many_1001", batch.sanitize("many"));
+        assertEquals("many_1003", batch.sanitize("many"));
+    }
+
+    @Test
+    public void testForDirectory() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path directory = Files.createDirectories(fileSystem.getPath("/uploads"));
+            FileNameSanitizer.Batch batch = FileNameSanitizer.forDirectory(directory).newBatch();
+
+            //the in-memory file system is case sensitive and allows long names
+            assertEquals("Report.pdf", batch.sanitize("Report.pdf"));
+            assertEquals("report.pdf", batch.sanitize("report.pdf"));
+            char[] longName = new char[600];
+            Arrays.fill(longName, 'x');
+            assertEquals(600, batch.sanitize(new String(longName)).length());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.jfilegoodies.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelZipWriterTest {
+
+    @Test
+    public void testWriteDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("zip-source");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++)
+            text.append("line ").append(i).append('\n');
+        byte[] large = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] random = new byte[200_000];
+        new Random(1).nextBytes(random);
+        random[0] = 'P';
+        random[1] = 'K';
+        random[2] = 3;
+        random[3] = 4;
+
+        Files.write(directory.resolve("small.txt"), "small".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("large.txt"), large);
+        Files.write(directory.resolve("packed.bin"), random);
+        Files.write(directory.resolve("image.png"), "not really an image".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("empty.txt"), new byte[0]);
+        Files.createDirectories(directory.resolve("sub/empty"));
+        Files.write(directory.resolve("sub/nested.txt"), "nested \u0151".getBytes(StandardCharsets.UTF_8));
+
+        Path archive = Files.createTempFile("archive", ".zip");
+        try (ParallelZipWriter writer = new ParallelZipWriter(Files.newOutputStream(archive), 4,
+                Deflater.DEFAULT_COMPRESSION, 64 * 1024)) {
+            writer.addDirectory(directory, "backup");
+            writer.addFile(directory.resolve("small.txt"), "\\copies\\small.txt");
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(10, zip.size());
+            assertArrayEquals(large, read(zip, "backup/large.txt"));
+            assertArrayEquals(random, read(zip, "backup/packed.bin"));
+            assertEquals("small", new String(read(zip, "copies/small.txt"), StandardCharsets.UTF_8));
+            assertEquals("nested \u0151", new String(read(zip, "backup/sub/nested.txt"), StandardCharsets.UTF_8));
+            assertEquals(0, read(zip, "backup/empty.txt").length);
+            assertTrue(zip.getEntry("backup/sub/empty/").isDirectory());
+
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("backup/large.txt").getMethod());
+            assertTrue(zip.getEntry("backup/large.txt").getCompressedSize() < large.length / 2);
+            assertEquals(ZipEntry.STORED, zip.getEntry("backup/packed.bin").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("backup/image.png").getMethod());
+        }
+
+        //the streaming readers need the data descriptors of the chunked entries
+        int count = 0;
+        try (ZipInputStream input = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                byte[] content = readAll(input);
+                if (entry.getName().equals("backup/large.txt"))
+                    assertArrayEquals(large, content);
+                count++;
+            }
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testDuplicateEntry() throws IOException {
+        Path file = Files.createTempFile("zip-entry", ".txt");
+        try (ParallelZipWriter writer = new ParallelZipWriter(new ByteArrayOutputStream())) {
+            writer.addFile(file, "entry.txt");
+            assertThrows(ZipException.class, () -> writer.addFile(file, "/entry.txt"));
+        }
+    }
+
+    @Test
+    public void testCrc32Combine() {
+        byte[] data = new byte[100_000];
+        new Random(2).nextBytes(data);
+        CRC32 whole = new CRC32();
+        whole.update(data, 0, data.length);
+        CRC32 first = new CRC32();
+        first.update(data, 0, 30_000);
+        CRC32 second = new CRC32();
+        second.update(data, 30_000, 70_000);
+
+        assertEquals(whole.getValue(), Crc32Combiner.combine(first.getValue(), second.getValue(), 70_000));
+        assertEquals(first.getValue(), Crc32Combiner.combine(first.getValue(), 0, 0));
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        try (InputStream input = zip.getInputStream(zip.getEntry(name))) {
+            return readAll(input);
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) > 0)
+            content.write(buffer, 0, read);
+        return content.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package com.jfilegoodies.bulk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkFileOperationsTest {
+
+    @Test
+    public void testCreateTouchDeprecateDelete() throws IOException {
+        File root = Files.createTempDirectory("bulk").toFile();
+        List<File> directories = IntStream.range(0, 50)
+                .mapToObj(i -> new File(root, "dir" + i + "/sub"))
+                .collect(Collectors.toList());
+        List<File> files = IntStream.range(0, 50)
+                .mapToObj(i -> new File(root, "dir" + i + "/file.txt"))
+                .collect(Collectors.toList());
+
+        try (BulkFileOperations operations = new BulkFileOperations(4, 4)) {
+            assertTrue(operations.createDirectories(directories).isSuccessful());
+            directories.forEach(directory -> assertTrue(directory.isDirectory()));
+
+            BulkResult<Boolean> touched = operations.touchAll(files).throwIfFailed();
+            assertTrue(touched.getSucceeded().values().stream().allMatch(Boolean::booleanValue));
+
+            BulkResult<File> deprecated = operations.deprecateAll(files).throwIfFailed();
+            deprecated.getSucceeded().forEach((original, renamed) -> {
+                assertFalse(original.exists());
+                assertTrue(renamed.exists());
+                assertTrue(renamed.getName().matches("file_old\\d+\\.txt"));
+            });
+
+            BulkResult<File> failed = operations.deprecateAll(Arrays.asList(directories.get(0), files.get(0)));
+            assertEquals(2, failed.getFailures().size());
+            assertThrows(IOException.class, failed::throwIfFailed);
+
+            BulkResult<Integer> deleted = operations.deleteAll(Arrays.asList(root, new File(root, "missing")));
+            assertTrue(deleted.isSuccessful());
+            assertEquals(1 + 50 * 3, (int) deleted.getSucceeded().get(root));
+            assertFalse(root.exists());
+        }
+    }
+
+    @Test
+    public void testConcurrencyPerStore() throws IOException {
+        File root = Files.createTempDirectory("bulk").toFile();
+        List<File> files = IntStream.range(0, 40)
+                .mapToObj(i -> new File(root, "file" + i))
+                .collect(Collectors.toList());
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (BulkFileOperations operations = new BulkFileOperations(3, 8)) {
+            BulkResult<String> result = operations.execute(files, file -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    running.decrementAndGet();
+                }
+                return file.getName();
+            }).throwIfFailed();
+            assertEquals(40, result.getSucceeded().size());
+        }
+        assertTrue(maxRunning.get() <= 3);
+        assertTrue(root.delete());
+    }
+}
@@ -0,0 +1,102 @@
+package com.jfilegoodies.bulk;
+
+import com.jfilegoodies.memory.MemoryFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreeDeleterTest {
+
+    @Test
+    public void testDeleteLargeTree() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem();
+             TreeDeleter deleter = new TreeDeleter(4, 0)) {
+            Path root = fileSystem.getPath("/backups");
+            int entries = 1; //the root
+            for (int i = 0; i < 20; i++) {
+                Path directory = Files.createDirectories(root.resolve("day" + i + "/logs"));
+                entries += 2;
+                for (int j = 0; j < 150; j++) {
+                    Files.write(directory.resolve("log" + j + ".txt"), new byte[]{(byte) j});
+                    entries++;
+                }
+                Files.createFile(root.resolve("day" + i + "/index"));
+                entries++;
+            }
+
+            DeleteReport report = deleter.deleteAll(Arrays.asList(root, fileSystem.getPath("/missing")));
+            assertTrue(report.isSuccessful());
+            assertEquals(entries, report.getDeletedEntries());
+            assertFalse(Files.exists(root));
+        }
+    }
+
+    @Test
+    public void testDeleteContentsAndFailures() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem();
+             TreeDeleter deleter = new TreeDeleter()) {
+            Path scratch = Files.createDirectories(fileSystem.getPath("/scratch/session/nested"));
+            Files.createFile(scratch.resolve("1.tmp"));
+
+            DeleteReport report = deleter.deleteContents(fileSystem.getPath("/scratch"));
+            assertEquals(3, report.getDeletedEntries());
+            assertTrue(Files.isDirectory(fileSystem.getPath("/scratch")));
+            try (Stream<Path> entries = Files.list(fileSystem.getPath("/scratch"))) {
+                assertEquals(0, entries.count());
+            }
+
+            Path file = Files.createFile(fileSystem.getPath("/scratch/file"));
+            DeleteReport failed = deleter.deleteContents(file);
+            assertFalse(failed.isSuccessful());
+            assertEquals(Arrays.asList(file), failed.getFailedPaths());
+            assertTrue(failed.getFailures().get(file) instanceof NotDirectoryException);
+            assertThrows(IOException.class, failed::throwIfFailed);
+        }
+    }
+
+    @Test
+    public void testSymbolicLinksAreNotFollowed() throws IOException {
+        Path outside = Files.createTempDirectory("outside");
+        Path root = Files.createTempDirectory("tree");
+        try (TreeDeleter deleter = new TreeDeleter()) {
+            Path kept = Files.createFile(outside.resolve("kept.txt"));
+            Files.createDirectories(root.resolve("a/b"));
+            try {
+                Files.createSymbolicLink(root.resolve("a/b/link"), outside);
+            } catch (UnsupportedOperationException | IOException e) {
+                return; //the file system doesn't support symbolic links
+            }
+
+            DeleteReport report = deleter.delete(root).throwIfFailed();
+            assertEquals(4, report.getDeletedEntries());
+            assertFalse(Files.exists(root));
+            assertTrue(Files.exists(kept));
+        } finally {
+            try (TreeDeleter deleter = new TreeDeleter()) {
+                deleter.delete(outside);
+            }
+        }
+    }
+
+    @Test
+    public void testThrottle() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem();
+             TreeDeleter deleter = new TreeDeleter(4, 500)) {
+            Path root = Files.createDirectories(fileSystem.getPath("/throttled"));
+            for (int i = 0; i < 50; i++)
+                Files.createFile(root.resolve("file" + i));
+
+            long start = System.nanoTime();
+            assertEquals(51, deleter.delete(root).getDeletedEntries());
+            assertTrue(System.nanoTime() - start >= 90_000_000L);
+        }
+    }
+}
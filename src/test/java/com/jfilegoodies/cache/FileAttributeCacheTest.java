@@ -0,0 +1,67 @@
+package com.jfilegoodies.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileAttributeCacheTest {
+
+    @Test
+    public void testExpirationAndInvalidation() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        FileAttributeCache cache = new FileAttributeCache(1, TimeUnit.SECONDS, 100, clock::get);
+
+        File directory = Files.createTempDirectory("attribute-cache").toFile();
+        File file = new File(directory, "file.txt");
+        assertFalse(cache.exists(file));
+
+        assertTrue(file.createNewFile());
+        assertFalse(cache.exists(file)); //served from the cache
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertTrue(cache.exists(file));
+        assertTrue(cache.isFile(file));
+
+        assertTrue(file.delete());
+        cache.invalidateTree(directory.toPath());
+        assertFalse(cache.exists(file));
+        assertTrue(cache.isDirectory(directory));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws IOException {
+        FileAttributeCache cache = new FileAttributeCache(1, TimeUnit.HOURS, 2);
+        File directory = Files.createTempDirectory("attribute-cache").toFile();
+
+        cache.exists(new File(directory, "a"));
+        cache.exists(new File(directory, "b"));
+        cache.exists(new File(directory, "a"));
+        cache.exists(new File(directory, "c"));
+        assertEquals(2, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNormalizedKeys() throws IOException {
+        FileAttributeCache cache = new FileAttributeCache(1, TimeUnit.HOURS, 100);
+        File directory = Files.createTempDirectory("attribute-cache").toFile();
+        File file = new File(directory, "file.txt");
+        File denormalized = new File(new File(new File(directory, "sub"), ".."), "file.txt");
+
+        assertFalse(cache.exists(denormalized));
+        assertTrue(file.createNewFile());
+        assertFalse(cache.exists(file)); //the same entry
+        assertEquals(1, cache.size());
+
+        cache.invalidate(file);
+        assertTrue(cache.exists(denormalized));
+    }
+}
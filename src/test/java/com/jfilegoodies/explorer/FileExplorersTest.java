@@ -0,0 +1,50 @@
+package com.jfilegoodies.explorer;
+
+import com.jfilegoodies.memory.MemoryFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileExplorersTest {
+
+    @Test
+    public void testRecordingExplorer() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path directory = Files.createDirectories(fileSystem.getPath("/home/user/docs"));
+            Path file = Files.createFile(directory.resolve("notes.txt"));
+
+            FileExplorers.RecordingExplorer explorer = FileExplorers.recording(new LinuxFileExplorer());
+            assertTrue(explorer.open());
+            assertTrue(explorer.openDirPath(directory));
+            assertFalse(explorer.openDirPath(file));
+            assertTrue(explorer.openSelectPath(file));
+            assertFalse(explorer.openSelectPath(directory.resolve("missing.txt")));
+            assertFalse(explorer.openDirPath(null));
+
+            assertEquals(Arrays.asList("nautilus", "xdg-open /home/user/docs", "nautilus /home/user/docs/notes.txt"),
+                    explorer.getCommands());
+
+            for (int i = 0; i < 10_000; i++)
+                explorer.openSelectPath(file);
+            assertEquals(10_003, explorer.getCommandCount());
+
+            explorer.clear();
+            assertTrue(explorer.getCommands().isEmpty());
+            assertEquals(10_003, explorer.getCommandCount());
+        }
+    }
+
+    @Test
+    public void testRecordingExplorerWithoutCommands() throws IOException {
+        FileExplorers.RecordingExplorer explorer = FileExplorers.recording(FileExplorers.getLazy());
+        assertFalse(explorer.open());
+        assertTrue(explorer.getCommands().isEmpty());
+        assertThrows(NullPointerException.class, () -> FileExplorers.recording(null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.jfilegoodies.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncFilesTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Path directory = Files.createTempDirectory("async");
+        byte[] content = new byte[300_000];
+        new Random(4).nextBytes(content);
+
+        try (AsyncFiles files = new AsyncFiles()) {
+            Path file = directory.resolve("data.bin");
+            files.write(file, content).get();
+            assertArrayEquals(content, Files.readAllBytes(file));
+            assertArrayEquals(content, files.readAllBytes(file).get());
+
+            files.write(file, new byte[]{1, 2, 3}).get();
+            assertArrayEquals(new byte[]{1, 2, 3}, files.readAllBytes(file).get());
+
+            ExecutionException missing = assertThrows(ExecutionException.class,
+                    () -> files.readAllBytes(directory.resolve("missing")).get());
+            assertTrue(missing.getCause() instanceof NoSuchFileException);
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        Path file = Files.createTempDirectory("async").resolve("events.log");
+        Files.write(file, "start\n".getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder expected = new StringBuilder("start\n");
+        List<CompletableFuture<Void>> appends = new ArrayList<>();
+        try (AsyncFiles files = new AsyncFiles()) {
+            for (int i = 0; i < 2000; i++) {
+                String line = "event " + i + "\n";
+                expected.append(line);
+                appends.add(files.append(file, line.getBytes(StandardCharsets.UTF_8)));
+            }
+            CompletableFuture.allOf(appends.toArray(new CompletableFuture[0])).join();
+        }
+        assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,44 @@
+package com.jfilegoodies.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineChunksTest {
+
+    @Test
+    public void testParallelLinesMatchSequentialRead() throws IOException {
+        Path file = Files.createTempFile("chunks", ".txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("line ").append(i).append(" \u0151");
+            for (int j = 0; j < i % 17; j++)
+                content.append('x');
+            content.append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        content.append("last line without line feed");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> expected = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        try (LineChunks chunks = LineChunks.open(file, StandardCharsets.UTF_8, 1024)) {
+            assertEquals(expected, chunks.lines().parallel().collect(Collectors.toList()));
+
+            List<LineChunks.Chunk> split = chunks.split(10_000);
+            assertTrue(split.size() > 10);
+            assertEquals(chunks.size(), split.get(split.size() - 1).getEnd());
+            assertEquals(expected, split.stream().flatMap(LineChunks.Chunk::lines).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testUnsupportedCharset() {
+        assertThrows(IllegalArgumentException.class, () -> LineChunks.open(Files.createTempFile("chunks", ".txt"), StandardCharsets.UTF_16));
+    }
+}
@@ -0,0 +1,92 @@
+package com.jfilegoodies.io;
+
+import com.jfilegoodies.FileGoodies;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogFollowerTest {
+
+    @Test
+    public void testPollAndLastLines() throws IOException {
+        Path log = Files.createTempFile("follower", ".log");
+        append(log, "first\r\nsecond\nthi");
+
+        try (LogFollower follower = new LogFollower(log, StandardCharsets.UTF_8, 8)) {
+            assertEquals(Arrays.asList("first", "second"), follower.poll());
+            assertEquals(Collections.emptyList(), follower.poll());
+
+            append(log, "rd\nfourth\n");
+            assertEquals(Arrays.asList("third", "fourth"), follower.poll());
+            assertEquals(Arrays.asList("third", "fourth"), follower.lastLines(2));
+            assertEquals(Arrays.asList("first", "second", "third", "fourth"), follower.lastLines(10));
+        }
+    }
+
+    @Test
+    public void testReadLinesThroughIndex() throws IOException {
+        Path log = Files.createTempFile("follower", ".log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            content.append("line ").append(i).append('\n');
+        append(log, content.toString());
+
+        try (LogFollower follower = new LogFollower(log, StandardCharsets.UTF_8, 4096)) {
+            assertEquals(5000, follower.poll().size());
+            assertEquals(Arrays.asList("line 3071", "line 3072", "line 3073"), follower.readLines(3071, 3));
+            assertEquals(Collections.singletonList("line 4999"), follower.readLines(4999, 10));
+        }
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        Path log = Files.createTempFile("follower", ".log");
+        append(log, "old 1\n");
+
+        try (LogFollower follower = new LogFollower(log)) {
+            follower.skipToEnd();
+            append(log, "old 2\nold 3");
+
+            File deprecated = FileGoodies.deprecateFile(log.toFile());
+            Files.move(log, deprecated.toPath());
+            append(log, "new 1\n");
+
+            assertEquals(Arrays.asList("old 2", "old 3", "new 1"), follower.poll());
+            assertEquals(1, follower.getLineCount());
+        }
+    }
+
+    @Test
+    public void testRotationWhileTheOldFileIsWritten() throws IOException {
+        Path log = Files.createTempFile("follower", ".log");
+
+        try (LogFollower follower = new LogFollower(log);
+             FileChannel writer = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            writer.write(StandardCharsets.UTF_8.encode("old 1\n"));
+            assertEquals(Collections.singletonList("old 1"), follower.poll());
+
+            //the writer still has the old file open after the rename, and writes into it
+            writer.write(StandardCharsets.UTF_8.encode("old 2\n"));
+            Files.move(log, log.resolveSibling(log.getFileName() + ".1"));
+            append(log, "new 1\n");
+            writer.write(StandardCharsets.UTF_8.encode("old 3\nold 4"));
+
+            assertEquals(Arrays.asList("old 2", "old 3", "old 4", "new 1"), follower.poll());
+            assertEquals(Collections.emptyList(), follower.poll());
+        }
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jfilegoodies.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SafeFileWriterTest {
+
+    @Test
+    public void testImmediateWriteKeepsPrevious() throws IOException {
+        File directory = Files.createTempDirectory("safe-write").toFile();
+        File target = new File(directory, "config.properties");
+
+        try (SafeFileWriter writer = SafeFileWriter.immediate()) {
+            assertNull(writer.write(target, bytes("first"), true));
+            File previous = writer.write(target, bytes("second"), true);
+
+            assertEquals("second", read(target));
+            assertNotNull(previous);
+            assertEquals("first", read(previous));
+            assertEquals(2, directory.list().length);
+        }
+    }
+
+    @Test
+    public void testPermissionsAreKept() throws IOException {
+        Path directory = Files.createTempDirectory("safe-write");
+        if (!Files.getFileStore(directory).supportsFileAttributeView("posix"))
+            return;
+        Path target = directory.resolve("config.properties");
+        Files.write(target, bytes("first"));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(target, permissions);
+
+        try (SafeFileWriter writer = SafeFileWriter.immediate()) {
+            writer.write(target.toFile(), bytes("second"));
+        }
+
+        assertEquals("second", read(target.toFile()));
+        assertEquals(permissions, Files.getPosixFilePermissions(target));
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        File directory = Files.createTempDirectory("group-commit").toFile();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try (SafeFileWriter writer = SafeFileWriter.groupCommit(64, 20, TimeUnit.MILLISECONDS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                File target = new File(directory, "file" + i + ".txt");
+                String content = "content" + i;
+                futures.add(callers.submit(() -> {
+                    writer.write(target, bytes(content));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            callers.shutdown();
+        }
+
+        assertEquals(200, directory.list().length);
+        assertEquals("content42", read(new File(directory, "file42.txt")));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
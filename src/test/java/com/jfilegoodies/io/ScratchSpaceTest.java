@@ -0,0 +1,137 @@
+package com.jfilegoodies.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScratchSpaceTest {
+
+    @Test
+    public void testReuse() throws IOException {
+        Path directory = Files.createTempDirectory("scratch");
+        try (ScratchSpace space = ScratchSpace.open(directory, 2, 100)) {
+            assertEquals(2, space.getIdleCount());
+
+            Path reused;
+            try (ScratchFile file = space.acquire()) {
+                reused = file.getPath();
+                file.getChannel().write(ByteBuffer.wrap(new byte[60]));
+                assertEquals(60, space.getDiskUsage());
+            }
+            assertEquals(2, space.getIdleCount());
+
+            ScratchFile first = space.acquire();
+            assertEquals(reused, first.getPath());
+            assertEquals(0, first.size());
+            first.getChannel().write(ByteBuffer.wrap(new byte[100]));
+            assertThrows(IOException.class, space::acquire);
+
+            first.getChannel().truncate(10);
+            ScratchFile third = space.acquire();
+            ScratchFile fourth = space.acquire();
+            assertEquals(3, space.getLeasedCount());
+            assertEquals(0, space.getIdleCount());
+
+            first.close();
+            third.close();
+            fourth.close();
+            //the pool keeps at most two idle files
+            assertEquals(2, space.getIdleCount());
+            assertEquals(3, countFiles(space.getSessionDirectory()));
+        }
+        assertEquals(0, countFiles(directory));
+    }
+
+    @Test
+    public void testClosingReleasedLease() throws IOException {
+        Path directory = Files.createTempDirectory("scratch");
+        try (ScratchSpace space = ScratchSpace.open(directory, 1, Long.MAX_VALUE)) {
+            ScratchFile first = space.acquire();
+            first.close();
+            ScratchFile second = space.acquire();
+            assertEquals(first.getPath(), second.getPath());
+            second.getChannel().write(ByteBuffer.wrap(new byte[10]));
+
+            //the first lease is closed again, the file of the second lease is not released
+            first.close();
+            assertEquals(1, space.getLeasedCount());
+            assertEquals(10, second.size());
+            assertThrows(IllegalStateException.class, first::getChannel);
+            second.close();
+            assertEquals(1, space.getIdleCount());
+        }
+    }
+
+    @Test
+    public void testRemoveStaleSessions() throws IOException {
+        Path directory = Files.createTempDirectory("scratch");
+        Path crashed = Files.createDirectory(directory.resolve(ScratchSpace.SESSION_PREFIX + "crashed"));
+        Files.createFile(crashed.resolve(".lock"));
+        Files.createFile(crashed.resolve("0.tmp"));
+        Path unlocked = Files.createDirectory(directory.resolve(ScratchSpace.SESSION_PREFIX + "old"));
+        Files.setLastModifiedTime(unlocked, FileTime.fromMillis(0));
+        Path young = Files.createDirectory(directory.resolve(ScratchSpace.SESSION_PREFIX + "young"));
+
+        try (ScratchSpace running = ScratchSpace.open(directory, 1, Long.MAX_VALUE)) {
+            assertEquals(2, running.getRemovedStaleSessions());
+            assertFalse(Files.exists(crashed));
+            assertFalse(Files.exists(unlocked));
+            assertTrue(Files.exists(young));
+
+            //the session of a running space is kept
+            try (ScratchSpace other = ScratchSpace.open(directory, 1, Long.MAX_VALUE)) {
+                assertEquals(0, other.getRemovedStaleSessions());
+                assertTrue(Files.exists(running.getSessionDirectory()));
+            }
+        }
+    }
+
+    @Test
+    public void testLiveSessionsSurviveOtherProcesses() throws Exception {
+        Path directory = Files.createTempDirectory("scratch");
+        try (ScratchSpace first = ScratchSpace.open(directory, 1, Long.MAX_VALUE);
+             ScratchSpace second = ScratchSpace.open(directory, 1, Long.MAX_VALUE)) {
+            assertEquals(0, second.getRemovedStaleSessions());
+
+            //the probe of the second open mustn't have released the lock of the first session
+            Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+            Process child = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                    OpenInChild.class.getName(), directory.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            assertTrue(child.waitFor(30, TimeUnit.SECONDS));
+            byte[] output = new byte[16];
+            int length = Math.max(0, child.getInputStream().read(output));
+            assertEquals("0", new String(output, 0, length, StandardCharsets.US_ASCII).trim());
+            assertTrue(Files.exists(first.getSessionDirectory()));
+            assertTrue(Files.exists(second.getSessionDirectory()));
+        }
+    }
+
+    /**
+     * Opens a scratch space in another process and prints the number of the removed stale sessions.
+     */
+    public static final class OpenInChild {
+        public static void main(String[] args) throws IOException {
+            try (ScratchSpace space = ScratchSpace.open(Paths.get(args[0]), 0, Long.MAX_VALUE)) {
+                System.out.print(space.getRemovedStaleSessions());
+            }
+        }
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jfilegoodies.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathLocksTest {
+
+    @Test
+    public void testInProcessLocking() throws Exception {
+        PathLocks locks = new PathLocks();
+        Path path = Files.createTempDirectory("locks").resolve("file.txt");
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            try (PathLock lock = locks.lock(path)) {
+                assertTrue(lock.isHeld());
+                //the same path in another form
+                Future<PathLock> attempt = other.submit(() -> locks.tryLock(path.resolve("../file.txt"), 20, TimeUnit.MILLISECONDS));
+                assertNull(attempt.get());
+
+                //reentrant for the holder
+                try (PathLock nested = locks.lock(path)) {
+                    assertEquals(path.toAbsolutePath().normalize(), nested.getPaths().get(0));
+                }
+            }
+
+            Future<Boolean> attempt = other.submit(() -> {
+                PathLock lock = locks.tryLock(path);
+                if (lock == null)
+                    return false;
+                lock.close();
+                return true;
+            });
+            assertTrue(attempt.get());
+        } finally {
+            other.shutdownNow();
+        }
+
+        LockStatistics statistics = locks.getStatistics();
+        assertEquals(3, statistics.getAcquisitions());
+        assertEquals(1, statistics.getFailedAttempts());
+        assertEquals(1, statistics.getContendedAcquisitions());
+    }
+
+    @Test
+    public void testCrossProcessLocking() throws IOException {
+        PathLocks locks = new PathLocks(16, true);
+        Path directory = Files.createTempDirectory("locks");
+        Path first = directory.resolve("first.txt");
+        Path second = directory.resolve("second.txt");
+
+        try (PathLock lock = locks.lockAll(Arrays.asList(second, first, first))) {
+            assertEquals(2, lock.getPaths().size());
+            assertTrue(Files.exists(PathLocks.lockFileOf(first)));
+            assertTrue(Files.exists(directory.resolve("second.txt.lock")));
+            try (PathLock nested = locks.lock(first)) {
+                assertTrue(nested.isHeld());
+            }
+        }
+        try (PathLock lock = locks.tryLock(first)) {
+            assertNotNull(lock);
+        }
+        assertEquals(4, locks.getStatistics().getAcquisitions());
+    }
+}
@@ -0,0 +1,148 @@
+package com.jfilegoodies.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryFileSystemTest {
+
+    @Test
+    public void testPaths() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path path = fileSystem.getPath("/a", "b/", "c.txt");
+            assertEquals("/a/b/c.txt", path.toString());
+            assertEquals(3, path.getNameCount());
+            assertEquals("c.txt", path.getFileName().toString());
+            assertEquals(fileSystem.getPath("/a/b"), path.getParent());
+            assertEquals(fileSystem.getPath("/"), path.getRoot());
+            assertTrue(path.startsWith("/a/b"));
+            assertTrue(path.endsWith("b/c.txt"));
+            assertEquals(fileSystem.getPath("/a/c.txt"), fileSystem.getPath("/a/./b/../c.txt").normalize());
+            assertEquals(fileSystem.getPath("../x"), fileSystem.getPath("/a/b").relativize(fileSystem.getPath("/a/x")));
+            assertEquals(path, fileSystem.getPath("/a").resolve("b/c.txt"));
+            assertEquals(path, fileSystem.provider().getPath(path.toUri()));
+            assertTrue(MemoryFileSystems.isMemoryFileSystem(path.getFileSystem()));
+            assertThrows(UnsupportedOperationException.class, path::toFile);
+        }
+    }
+
+    @Test
+    public void testFilesAndDirectories() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path directory = Files.createDirectories(fileSystem.getPath("/data/logs"));
+            Path file = directory.resolve("app.log");
+            Files.write(file, Arrays.asList("first", "second"), StandardCharsets.UTF_8);
+            Files.write(file, Collections.singletonList("third"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+            assertEquals(Arrays.asList("first", "second", "third"), Files.readAllLines(file, StandardCharsets.UTF_8));
+            assertTrue(Files.isRegularFile(file));
+            assertTrue(Files.isDirectory(directory));
+            assertEquals(19, Files.size(file));
+            assertThrows(FileAlreadyExistsException.class, () -> Files.createFile(file));
+            assertThrows(NoSuchFileException.class, () -> Files.readAllBytes(directory.resolve("missing")));
+            assertThrows(DirectoryNotEmptyException.class, () -> Files.delete(directory));
+
+            Path copy = Files.copy(file, directory.resolve("copy.log"));
+            Files.write(copy, new byte[]{42});
+            assertEquals(19, Files.size(file));
+
+            Path moved = Files.move(copy, fileSystem.getPath("/data/moved.log"), StandardCopyOption.ATOMIC_MOVE);
+            assertFalse(Files.exists(copy));
+            assertArrayEquals(new byte[]{42}, Files.readAllBytes(moved));
+
+            Path link = Files.createLink(fileSystem.getPath("/data/link.log"), file);
+            assertTrue(Files.isSameFile(link, file));
+
+            List<String> names = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileSystem.getPath("/data"), "*.log")) {
+                stream.forEach(entry -> names.add(entry.getFileName().toString()));
+            }
+            assertEquals(Arrays.asList("link.log", "moved.log"), names);
+
+            FileTime time = FileTime.fromMillis(1_000_000L);
+            Files.setLastModifiedTime(file, time);
+            assertEquals(time, Files.getLastModifiedTime(link));
+            assertEquals(19L, Files.getAttribute(file, "basic:size"));
+
+            List<Path> visited = new ArrayList<>();
+            Files.walkFileTree(fileSystem.getPath("/"), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    visited.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            assertEquals(3, visited.size());
+
+            Path temp = Files.createTempFile(directory, "scratch", ".tmp");
+            assertTrue(Files.exists(temp));
+        }
+    }
+
+    @Test
+    public void testChannels() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path file = fileSystem.getPath("/sparse.bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{7}), 9);
+                assertEquals(10, channel.size());
+
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                assertEquals(10, channel.read(buffer, 0));
+                assertEquals(0, buffer.get(5));
+                assertEquals(7, buffer.get(9));
+
+                channel.truncate(4);
+                assertEquals(4, channel.size());
+
+                FileLock lock = channel.lock();
+                assertThrows(OverlappingFileLockException.class, channel::tryLock);
+                lock.release();
+                channel.tryLock().release();
+            }
+
+            FileChannel temporary = FileChannel.open(fileSystem.getPath("/temp"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            assertTrue(Files.exists(fileSystem.getPath("/temp")));
+            temporary.close();
+            assertFalse(Files.exists(fileSystem.getPath("/temp")));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        FileSystem fileSystem = MemoryFileSystems.newFileSystem("closing");
+        Path file = Files.createFile(fileSystem.getPath("/file"));
+        fileSystem.close();
+        assertFalse(fileSystem.isOpen());
+        assertThrows(ClosedFileSystemException.class, () -> Files.exists(file));
+
+        //the name can be reused after closing
+        MemoryFileSystems.newFileSystem("closing").close();
+    }
+}
@@ -0,0 +1,162 @@
+package com.jfilegoodies.reactive;
+
+import com.jfilegoodies.FormattedFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryPublisherTest {
+
+    @Test
+    public void testRecursiveScanOneByOne() throws Exception {
+        Path root = Files.createTempDirectory("publisher");
+        for (int i = 0; i < 10; i++) {
+            Path directory = Files.createDirectory(root.resolve("dir" + i));
+            for (int j = 0; j < 10; j++)
+                Files.createFile(directory.resolve("file" + j + ".txt"));
+        }
+
+        List<FormattedFile> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        DirectoryPublisher.recursive(root).subscribe(new Subscriber<FormattedFile>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(FormattedFile item) {
+                received.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completion.complete(null);
+            }
+        });
+
+        completion.get(10, TimeUnit.SECONDS);
+        assertEquals(110, received.size());
+        assertEquals(100, received.stream().filter(file -> file.getExtension().equals("txt")).count());
+    }
+
+    @Test
+    public void testInvalidRequest() throws IOException {
+        Path root = Files.createTempDirectory("publisher");
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        DirectoryPublisher.of(root).subscribe(new Subscriber<FormattedFile>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(FormattedFile item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.complete(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        assertTrue(error.join() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testExactRequestCompletes() throws Exception {
+        Path root = Files.createTempDirectory("publisher");
+        for (int i = 0; i < 5; i++)
+            Files.createFile(root.resolve("file" + i + ".txt"));
+
+        List<FormattedFile> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        DirectoryPublisher.of(root).subscribe(new Subscriber<FormattedFile>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(5);
+            }
+
+            @Override
+            public void onNext(FormattedFile item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completion.complete(null);
+            }
+        });
+
+        completion.get(10, TimeUnit.SECONDS);
+        assertEquals(5, received.size());
+    }
+
+    @Test
+    public void testPausesWithoutDemand() throws Exception {
+        Path root = Files.createTempDirectory("publisher");
+        for (int i = 0; i < 10; i++)
+            Files.createFile(root.resolve("file" + i + ".txt"));
+
+        List<FormattedFile> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Subscription> subscribed = new CompletableFuture<>();
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        DirectoryPublisher.of(root).subscribe(new Subscriber<FormattedFile>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(3);
+                subscribed.complete(subscription);
+            }
+
+            @Override
+            public void onNext(FormattedFile item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completion.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completion.complete(null);
+            }
+        });
+
+        Subscription subscription = subscribed.get(10, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        assertEquals(3, received.size());
+        assertFalse(completion.isDone());
+
+        subscription.request(7);
+        completion.get(10, TimeUnit.SECONDS);
+        assertEquals(10, received.size());
+    }
+}
@@ -0,0 +1,63 @@
+package com.jfilegoodies.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentSearchTest {
+
+    @Test
+    public void testOverlappingLiterals() throws IOException {
+        Path file = Files.createTempFile("search", ".txt");
+        Files.write(file, "ushers\nshe said HIS\r\nhers".getBytes(StandardCharsets.UTF_8));
+
+        List<ContentMatch> matches = ContentSearch.forLiterals("he", "she", "his", "hers")
+                .ignoringCase()
+                .searchFile(file);
+
+        assertEquals(Arrays.asList("she", "he", "hers", "she", "he", "his", "he", "hers"),
+                matches.stream().map(ContentMatch::getLiteral).collect(Collectors.toList()));
+        assertEquals(1, matches.get(0).getOffset());
+        assertEquals(2, matches.get(5).getLineNumber());
+        assertEquals("she said HIS", matches.get(5).getLine());
+        assertEquals(3, matches.get(7).getLineNumber());
+
+        //a literal spanning lines is on the line where it starts
+        List<ContentMatch> multiLine = ContentSearch.forLiterals("HIS\r\nhe").searchFile(file);
+        assertEquals(1, multiLine.size());
+        assertEquals(2, multiLine.get(0).getLineNumber());
+    }
+
+    @Test
+    public void testTreeSearchWithFilters() throws IOException {
+        Path root = Files.createTempDirectory("search");
+        for (int i = 0; i < 40; i++) {
+            Path directory = Files.createDirectories(root.resolve("dir" + (i % 4)));
+            Files.write(directory.resolve("source" + i + ".java"), ("class A {}\n// TODO " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("notes" + i + ".txt"), "TODO".getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(root.resolve("binary.java"), new byte[]{'T', 'O', 'D', 'O', 0, 1, 2});
+
+        List<ContentMatch> matches = ContentSearch.forLiterals("TODO")
+                .withExtensions("JAVA")
+                .ordered()
+                .withParallelism(3)
+                .search(root);
+        assertEquals(40, matches.size());
+        matches.forEach(match -> assertEquals("java", match.getFile().getExtension()));
+
+        SearchSummary summary = ContentSearch.forLiterals("TODO").search(root, match -> {
+        });
+        assertEquals(80, summary.getMatches());
+        assertEquals(1, summary.getSkippedBinaryFiles());
+        assertTrue(summary.getFailures().isEmpty());
+    }
+}
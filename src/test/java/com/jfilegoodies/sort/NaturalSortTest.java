@@ -0,0 +1,54 @@
+package com.jfilegoodies.sort;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NaturalSortTest {
+
+    @Test
+    public void testNaturalKey() {
+        assertTrue(NaturalKey.of("file2.txt").compareTo(NaturalKey.of("file10.txt")) < 0);
+        assertTrue(NaturalKey.of("File3").compareTo(NaturalKey.of("file20")) < 0);
+        assertTrue(NaturalKey.of("a.txt").compareTo(NaturalKey.of("a b.doc")) < 0);
+        assertTrue(NaturalKey.of("report.doc").compareTo(NaturalKey.of("report.txt")) < 0);
+        assertTrue(NaturalKey.of("v1.10.zip").compareTo(NaturalKey.of("v1.9.zip")) > 0);
+        assertTrue(NaturalKey.of("img007").compareTo(NaturalKey.of("img7")) != 0);
+        assertEquals(0, NaturalKey.of("same.txt").compareTo(NaturalKey.of(new File("dir", "same.txt"))));
+        assertTrue(NaturalKey.of("99999999999999999999").compareTo(NaturalKey.of("100000000000000000000")) < 0);
+    }
+
+    @Test
+    public void testSort() {
+        List<File> files = new ArrayList<>();
+        for (String name : new String[]{"file10.txt", "file2.txt", "File1.txt", "file2.log", "abc", "file"})
+            files.add(new File(name));
+
+        NaturalSort.sort(files);
+        List<String> names = new ArrayList<>();
+        for (File file : files)
+            names.add(file.getName());
+        assertEquals(Arrays.asList("abc", "file", "File1.txt", "file2.log", "file2.txt", "file10.txt"), names);
+    }
+
+    @Test
+    public void testParallelSort() {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < NaturalSort.PARALLEL_THRESHOLD * 2; i++)
+            files.add(new File("item" + i + ".dat"));
+        List<File> expected = new ArrayList<>(files);
+        Collections.shuffle(files, new Random(3));
+
+        assertEquals(expected, NaturalSort.sorted(files));
+        File[] array = files.toArray(new File[0]);
+        NaturalSort.sort(array);
+        assertEquals(expected, Arrays.asList(array));
+    }
+}
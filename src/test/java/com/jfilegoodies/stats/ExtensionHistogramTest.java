@@ -0,0 +1,91 @@
+package com.jfilegoodies.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtensionHistogramTest {
+
+    @Test
+    public void testRecord() throws InterruptedException {
+        ExtensionHistogram histogram = new ExtensionHistogram();
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            workers.execute(() -> {
+                ExtensionHistogram.Recorder recorder = histogram.newRecorder();
+                for (int i = 0; i < 1000; i++) {
+                    recorder.record("photo" + i + ".JPG", 1000);
+                    recorder.record("notes.txt", 10);
+                    recorder.record("install.sh", 100);
+                    recorder.record("README", 1);
+                    recorder.record("name.with a very long part that is no extension at all", 5);
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(10, TimeUnit.SECONDS));
+
+        ExtensionStatistics statistics = histogram.snapshot();
+        assertEquals(20_000, statistics.getTotalFiles());
+        assertEquals(4000, statistics.getFiles("jpg"));
+        assertEquals(4_000_000, statistics.getBytes("Jpg"));
+        assertEquals(4000, statistics.getFiles(""));
+        assertEquals(4000, statistics.getFiles(ExtensionStatistics.OTHER));
+        assertEquals(0, statistics.getFiles("exe"));
+
+        assertEquals("jpg", statistics.getTopByBytes(1).get(0).getExtension());
+        assertEquals(5, statistics.getTopByFiles(10).size());
+        assertEquals(0.2, statistics.getExecutableShare(Arrays.asList("sh", "exe")), 1e-9);
+
+        assertEquals(1023, statistics.getSizePercentile("jpg", 50));
+        assertEquals(1, statistics.getSizePercentile(10));
+        long p90 = statistics.getSizePercentile(90);
+        assertTrue(p90 >= 1000 && p90 < 1125);
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        Path root = Files.createTempDirectory("stats");
+        Files.createDirectories(root.resolve("a/b"));
+        Files.write(root.resolve("a/one.log"), new byte[10]);
+        Files.write(root.resolve("a/b/two.LOG"), new byte[20]);
+        Files.write(root.resolve("three.bin"), new byte[30]);
+
+        ExtensionHistogram histogram = new ExtensionHistogram();
+        histogram.scan(root);
+        ExtensionStatistics statistics = histogram.snapshot();
+        assertEquals(3, statistics.getTotalFiles());
+        assertEquals(30, statistics.getBytes("log"));
+        assertEquals(0, statistics.getFailedDirectories());
+        assertTrue(statistics.getExtensions().contains("bin"));
+
+        histogram.scan(root);
+        statistics = histogram.snapshot();
+        assertEquals(6, statistics.getTotalFiles());
+        assertEquals(60, statistics.getBytes("log"));
+    }
+
+    @Test
+    public void testSizeBuckets() {
+        Random random = new Random(5);
+        for (SizeBuckets buckets : new SizeBuckets[]{SizeBuckets.FINE, SizeBuckets.COARSE}) {
+            for (int i = 0; i < 10_000; i++) {
+                long size = random.nextLong() >>> random.nextInt(64);
+                int index = buckets.index(size);
+                assertTrue(index < buckets.count());
+                assertTrue(size <= buckets.upperBound(index));
+                assertTrue(index == 0 || size > buckets.upperBound(index - 1));
+            }
+            assertEquals(Long.MAX_VALUE, buckets.upperBound(buckets.index(Long.MAX_VALUE)));
+        }
+    }
+}
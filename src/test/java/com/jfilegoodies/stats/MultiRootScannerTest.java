@@ -0,0 +1,89 @@
+package com.jfilegoodies.stats;
+
+import com.jfilegoodies.memory.MemoryFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiRootScannerTest {
+
+    @Test
+    public void testScan() throws IOException {
+        try (FileSystem memory = MemoryFileSystems.newFileSystem()) {
+            Path first = Files.createDirectories(memory.getPath("/first"));
+            Path second = Files.createDirectories(memory.getPath("/second"));
+            for (int i = 0; i < 20; i++) {
+                Path directory = Files.createDirectories(first.resolve("dir" + i + "/nested"));
+                Files.write(directory.resolve("photo" + i + ".jpg"), new byte[100]);
+                Files.write(directory.getParent().resolve("notes" + i + ".txt"), new byte[10]);
+            }
+            for (int i = 0; i < 600; i++)
+                Files.write(second.resolve("run" + i + ".exe"), new byte[1]);
+            Path local = Files.createTempDirectory("scan");
+            Files.write(local.resolve("data.bin"), new byte[50]);
+            Path missing = memory.getPath("/missing");
+
+            ForkJoinPool pool = new ForkJoinPool(2);
+            Map<Path, ExtensionStatistics> shards;
+            try {
+                shards = MultiRootScanner.create()
+                        .withVolumeConcurrency(2)
+                        .withVolumeConcurrency(local, 1)
+                        .withIoThreads(3)
+                        .withClassificationPool(pool)
+                        .scan(Arrays.asList(first, second, local, missing, first));
+            } finally {
+                pool.shutdown();
+            }
+
+            assertEquals(Arrays.asList(first, second, local, missing), Arrays.asList(shards.keySet().toArray()));
+            assertEquals(40, shards.get(first).getTotalFiles());
+            assertEquals(2000, shards.get(first).getBytes("jpg"));
+            assertEquals(20, shards.get(first).getFiles("txt"));
+            assertEquals(600, shards.get(second).getFiles("exe"));
+            assertEquals(1.0, shards.get(second).getExecutableShare(Arrays.asList("exe")), 1e-9);
+            assertEquals(50, shards.get(local).getBytes("bin"));
+            assertEquals(1, shards.get(missing).getFailedDirectories());
+
+            ExtensionStatistics merged = ExtensionStatistics.merge(shards.values());
+            assertEquals(641, merged.getTotalFiles());
+            assertEquals(2000 + 200 + 600 + 50, merged.getTotalBytes());
+            assertEquals(1, merged.getFailedDirectories());
+        }
+    }
+
+    @Test
+    public void testWriteAndMerge() throws IOException {
+        ExtensionHistogram histogram = new ExtensionHistogram();
+        for (int i = 0; i < 1000; i++)
+            histogram.record("file" + i + (i % 3 == 0 ? ".log" : ".dat"), i * 37L);
+        ExtensionStatistics statistics = histogram.snapshot();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        statistics.writeTo(output);
+        ExtensionStatistics read = ExtensionStatistics.readFrom(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(statistics.getTotalFiles(), read.getTotalFiles());
+        assertEquals(statistics.getBytes("log"), read.getBytes("log"));
+        assertEquals(statistics.getSizePercentile("dat", 50), read.getSizePercentile("dat", 50));
+
+        ExtensionStatistics doubled = ExtensionStatistics.merge(Arrays.asList(statistics, read));
+        assertEquals(2000, doubled.getTotalFiles());
+        assertEquals(2 * statistics.getBytes("dat"), doubled.getBytes("dat"));
+        assertEquals(statistics.getSizePercentile(90), doubled.getSizePercentile(90));
+
+        assertThrows(IOException.class, () -> ExtensionStatistics.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4})));
+        //a corrupt count of extensions is rejected before anything is allocated
+        byte[] hugeCount = {0x4A, 0x46, 0x47, 0x53, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(IOException.class, () -> ExtensionStatistics.readFrom(new ByteArrayInputStream(hugeCount)));
+    }
+}
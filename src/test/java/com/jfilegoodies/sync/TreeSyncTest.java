@@ -0,0 +1,101 @@
+package com.jfilegoodies.sync;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreeSyncTest {
+
+    @Test
+    public void testDiffAndSync() throws IOException {
+        Path source = Files.createTempDirectory("sync-source");
+        Path target = Files.createTempDirectory("sync-target");
+
+        write(source.resolve("same.txt"), "same");
+        write(target.resolve("same.txt"), "same");
+        Files.setLastModifiedTime(target.resolve("same.txt"), Files.getLastModifiedTime(source.resolve("same.txt")));
+
+        write(source.resolve("new/added.txt"), "added");
+        write(target.resolve("obsolete/removed.txt"), "removed");
+        write(source.resolve("small.txt"), "version 2");
+        write(target.resolve("small.txt"), "version 1");
+        write(source.resolve("moved/to.bin"), "moved content");
+        write(target.resolve("from.bin"), "moved content");
+
+        byte[] large = new byte[100_000];
+        Arrays.fill(large, (byte) 7);
+        Files.write(target.resolve("large.img"), large);
+        large[50_000] = 8;
+        Files.write(source.resolve("large.img"), large);
+
+        //same sizes: the contents are compared only if the times differ
+        Files.setLastModifiedTime(target.resolve("small.txt"), FileTime.fromMillis(0));
+        Files.setLastModifiedTime(target.resolve("large.img"), FileTime.fromMillis(0));
+
+        TreeDiff diff = TreeDiff.compare(source, target);
+        assertEquals(Arrays.asList("moved", "new", "new/added.txt"), Arrays.asList(diff.getAdded().toArray()));
+        assertEquals(Arrays.asList("obsolete", "obsolete/removed.txt"), Arrays.asList(diff.getRemoved().toArray()));
+        assertEquals(Arrays.asList("large.img", "small.txt"), Arrays.asList(diff.getChanged().toArray()));
+        assertEquals(Collections.singletonMap("from.bin", "moved/to.bin"), diff.getMoved());
+
+        SyncReport report = new TreeSync(4096, 10_000).apply(diff);
+        assertTrue(report.isSuccessful());
+        assertEquals(1, report.getMovedFiles());
+        assertEquals(2, report.getDeletedEntries());
+        assertEquals(2, report.getCopiedFiles());
+        assertEquals(1, report.getUpdatedFiles());
+        assertEquals(5 + 9 + 4096, report.getBytesWritten());
+
+        assertTrue(TreeDiff.compare(source, target).isEmpty());
+    }
+
+    @Test
+    public void testSavedSnapshot() throws IOException {
+        Path tree = Files.createTempDirectory("snapshot");
+        write(tree.resolve("a/b/c.txt"), "content");
+        write(tree.resolve("a/b/d.txt"), "content");
+
+        Path saved = Files.createTempFile("snapshot", ".bin");
+        TreeSnapshot.capture(tree, true).save(saved);
+        TreeSnapshot loaded = TreeSnapshot.load(saved);
+        assertEquals(4, loaded.size());
+        assertTrue(loaded.getEntries().get("a/b/c.txt").hasHash());
+
+        write(tree.resolve("a/b/c.txt"), "changed");
+        Files.setLastModifiedTime(tree.resolve("a/b/c.txt"), FileTime.fromMillis(0));
+        TreeDiff diff = TreeDiff.compare(TreeSnapshot.capture(tree), loaded);
+        assertEquals(Collections.singleton("a/b/c.txt"), diff.getChanged());
+    }
+
+    @Test
+    public void testMoveIntoReplacedEntry() throws IOException {
+        Path source = Files.createTempDirectory("sync-source");
+        Path target = Files.createTempDirectory("sync-target");
+
+        //'data' turns from a file into a directory, and a file is moved into it
+        write(source.resolve("data/moved.bin"), "moved content");
+        write(target.resolve("data"), "old file");
+        write(target.resolve("old.bin"), "moved content");
+
+        TreeDiff diff = TreeDiff.compare(source, target);
+        assertEquals(Collections.singletonMap("old.bin", "data/moved.bin"), diff.getMoved());
+
+        SyncReport report = new TreeSync().apply(diff);
+        assertTrue(report.isSuccessful(), report.getFailures().toString());
+        assertEquals(1, report.getMovedFiles());
+        assertTrue(TreeDiff.compare(source, target).isEmpty());
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
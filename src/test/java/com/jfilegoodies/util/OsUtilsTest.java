@@ -0,0 +1,59 @@
+package com.jfilegoodies.util;
+
+import com.jfilegoodies.memory.MemoryFileSystems;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OsUtilsTest {
+
+    @Test
+    public void testCapabilitiesOfMemoryFileSystem() throws IOException {
+        try (FileSystem fileSystem = MemoryFileSystems.newFileSystem()) {
+            Path directory = Files.createDirectories(fileSystem.getPath("/data"));
+            FileStoreCapabilities capabilities = OsUtils.getCapabilities(directory);
+
+            assertTrue(capabilities.isProbed());
+            assertEquals("memory", capabilities.getType());
+            assertTrue(capabilities.isCaseSensitive());
+            assertTrue(capabilities.isAtomicMoveSupported());
+            assertTrue(capabilities.isHardLinkSupported());
+            assertEquals(FileStoreCapabilities.MAX_PROBED_NAME_LENGTH, capabilities.getMaxNameLength());
+            assertTrue(capabilities.supportsAttributeView("basic"));
+            assertFalse(capabilities.supportsPosixAttributes());
+
+            //the probe leaves nothing behind, and the file system is not kept by the cache
+            try (Stream<Path> entries = Files.list(directory)) {
+                assertEquals(0, entries.count());
+            }
+            FileStoreCapabilities missing = OsUtils.getCapabilities(directory.resolve("missing/file.txt"));
+            assertNotSame(capabilities, missing);
+            assertEquals(capabilities.getType(), missing.getType());
+            assertEquals(capabilities.getMaxNameLength(), OsUtils.getCapabilities(fileSystem.getPath("/")).getMaxNameLength());
+        }
+    }
+
+    @Test
+    public void testCapabilitiesOfDefaultFileSystem() throws IOException {
+        Path directory = Files.createTempDirectory("capabilities");
+        try {
+            FileStoreCapabilities capabilities = OsUtils.getCapabilities(directory);
+            assertTrue(capabilities.getMaxNameLength() > 0);
+            assertTrue(capabilities.supportsAttributeView("basic"));
+            assertEquals(capabilities.supportsPosixAttributes(), Files.getFileStore(directory).supportsFileAttributeView("posix"));
+            if (capabilities.isProbed() && OsUtils.isLinux())
+                assertTrue(capabilities.isCaseSensitive() || capabilities.getType().contains("fat"));
+            assertSame(capabilities, OsUtils.getCapabilities(directory.resolve("missing/file.txt")));
+        } finally {
+            Files.delete(directory);
+        }
+
+        OsUtils.clearCapabilities();
+    }
+}
@@ -0,0 +1,70 @@
+package com.jfilegoodies.watch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeTrackerTest {
+
+    @Test
+    public void testCoalescing() {
+        Path created = Paths.get("created");
+        Path transient_ = Paths.get("transient");
+        Path replaced = Paths.get("replaced");
+
+        ChangeSet.Builder builder = new ChangeSet.Builder();
+        builder.add(created, ChangeSet.Kind.CREATED);
+        builder.add(created, ChangeSet.Kind.MODIFIED);
+        builder.add(transient_, ChangeSet.Kind.CREATED);
+        builder.add(transient_, ChangeSet.Kind.DELETED);
+        builder.add(replaced, ChangeSet.Kind.DELETED);
+        builder.add(replaced, ChangeSet.Kind.CREATED);
+
+        ChangeSet changes = builder.build();
+        assertEquals(2, changes.size());
+        assertEquals(ChangeSet.Kind.CREATED, changes.getChanges().get(created));
+        assertEquals(ChangeSet.Kind.MODIFIED, changes.getChanges().get(replaced));
+        assertFalse(changes.getChanges().containsKey(transient_));
+    }
+
+    @Test
+    public void testTrackingNewSubdirectories() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("change-tracker").toRealPath();
+        BlockingQueue<ChangeSet> published = new LinkedBlockingQueue<>();
+
+        try (ChangeTracker tracker = new ChangeTracker(50, TimeUnit.MILLISECONDS)) {
+            tracker.addListener(published::add);
+            tracker.registerTree(root);
+            assertEquals(1, tracker.getWatchedDirectoryCount());
+
+            Path subdirectory = Files.createDirectory(root.resolve("sub"));
+            Path file = subdirectory.resolve("file.txt");
+
+            Map<Path, ChangeSet.Kind> seen = new HashMap<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            boolean fileWritten = false;
+            while (!seen.containsKey(file) && System.nanoTime() < deadline) {
+                ChangeSet changes = published.poll(100, TimeUnit.MILLISECONDS);
+                if (changes != null)
+                    seen.putAll(changes.getChanges());
+                if (!fileWritten && tracker.getWatchedDirectoryCount() == 2) {
+                    Files.write(file, new byte[]{1});
+                    fileWritten = true;
+                }
+            }
+
+            assertEquals(ChangeSet.Kind.CREATED, seen.get(subdirectory));
+            assertNotNull(seen.get(file));
+        }
+    }
+}